@@ -0,0 +1,269 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.SilentErrorPrintHandler;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Schemas and documents of the benchmarks. The schemas of all types describe the same vocabulary: a
+ * root element containing any number of the elements e00 to e49, each with documentation, a required
+ * ID attribute, a required enumerated attribute and an optional integer attribute. The Schematron
+ * schema checks the enumerated attribute only.
+ */
+class BenchmarkData {
+  public static final int ELEMENT_COUNT = 50;
+  public static final String ENUMERATED_ATTRIBUTE = "type";
+
+  private static final String[] SCHEMA_TYPES = {Constants.SCHEMA_TYPE_RNC, Constants.SCHEMA_TYPE_RNG,
+      Constants.SCHEMA_TYPE_XSD, Constants.SCHEMA_TYPE_SCH_ISO};
+  private static final String[] SCHEMA_FILE_NAMES = {"schema.rnc", "schema.rng", "schema.xsd", "schema.sch"};
+  private static final String[] VALUES = {"a", "b", "c"};
+  private static final String CHARSET = "UTF-8";
+
+  private final File directory;
+
+  /**
+   * Counts the errors reported to it. Benchmark setups use it to make sure that the measured work
+   * doesn't end in an error.
+   */
+  public static class ErrorCounter extends SilentErrorPrintHandler {
+    private int count;
+
+    @Override
+    public void error(SAXParseException exception) {
+      count++;
+    }
+
+    @Override
+    public void fatalError(SAXParseException exception) {
+      count++;
+    }
+
+    @Override
+    public void printException(Throwable e) {
+      count++;
+    }
+
+    @Override
+    public void print(String message) {
+      count++;
+    }
+
+    public int getCount() {
+      return count;
+    }
+  }
+
+  private BenchmarkData(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Writes the schemas to a new temporary directory.
+   */
+  public static BenchmarkData create() throws IOException {
+    File directory = File.createTempFile("xml-tools-benchmark", "");
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("Could not create directory " + directory);
+    }
+    BenchmarkData data = new BenchmarkData(directory);
+    data.write(SCHEMA_FILE_NAMES[0], createRnc());
+    data.write(SCHEMA_FILE_NAMES[1], createRng());
+    data.write(SCHEMA_FILE_NAMES[2], createXsd());
+    data.write(SCHEMA_FILE_NAMES[3], createSchematron());
+    return data;
+  }
+
+  public void delete() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  public SchemaProperties createSchemaProperties(String schemaType, RequestProperties requestProperties) {
+    return new SchemaProperties(schemaType + " " + getSchemaPath(schemaType), requestProperties);
+  }
+
+  public String getSchemaPath(String schemaType) {
+    for (int i = 0; i < SCHEMA_TYPES.length; i++) {
+      if (SCHEMA_TYPES[i].equals(schemaType)) {
+        return new File(directory, SCHEMA_FILE_NAMES[i]).getAbsolutePath();
+      }
+    }
+    throw new IllegalArgumentException("Unsupported schema type " + schemaType);
+  }
+
+  public String getDocumentPath() {
+    return new File(directory, "document.xml").getAbsolutePath();
+  }
+
+  /**
+   * Compiles the schema of a type, failing if the schema compiles with errors.
+   */
+  public Driver createDriver(SchemaProperties schemaProperties) {
+    ErrorCounter eh = new ErrorCounter();
+    Driver driver = SchemaFactory.createDriver(SchemaFactory.createPropertyMap(schemaProperties, eh),
+        schemaProperties);
+    if (driver == null || eh.getCount() > 0) {
+      throw new IllegalStateException("Could not compile " + schemaProperties.getPath());
+    }
+    return driver;
+  }
+
+  /**
+   * Returns a valid document of at least the given size in bytes.
+   */
+  public static byte[] createDocument(int size) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(size + 128);
+    os.write("<root>\n".getBytes(CHARSET));
+    for (int i = 0; os.size() < size; i++) {
+      String name = getElementName(i % ELEMENT_COUNT);
+      String line = "<" + name + " id=\"i" + i + "\" " + ENUMERATED_ATTRIBUTE + "=\"" + VALUES[i % VALUES.length] +
+          "\" n=\"" + i + "\">Text " + i + "</" + name + ">\n";
+      os.write(line.getBytes(CHARSET));
+    }
+    os.write("</root>\n".getBytes(CHARSET));
+    return os.toByteArray();
+  }
+
+  /**
+   * Returns the cursor position of a suggestion request in the middle of a document: the start of an
+   * element for element suggestions, the position after an element name for attribute name
+   * suggestions and the start of the value of an enumerated attribute for value suggestions.
+   */
+  public static int findCursor(byte[] document, String suggestionType) throws IOException {
+    String s = new String(document, CHARSET);
+    int middle = s.length() / 2;
+    if (Constants.SUGGESTION_TYPE_ATT_VALUE.equals(suggestionType)) {
+      String attributeStart = ENUMERATED_ATTRIBUTE + "=\"";
+      return s.indexOf(attributeStart, middle) + attributeStart.length();
+    }
+    int elementStart = s.indexOf("\n<", middle) + 1;
+    if (Constants.SUGGESTION_TYPE_ATT_NAME.equals(suggestionType)) {
+      return s.indexOf(' ', elementStart) + 1;
+    }
+    return elementStart;
+  }
+
+  /**
+   * Returns the fragment sent by clients with a suggestion request at {@link #findCursor}.
+   */
+  public static String getFragment(String suggestionType) {
+    return Constants.SUGGESTION_TYPE_ATT_VALUE.equals(suggestionType) ? ENUMERATED_ATTRIBUTE + " " : "";
+  }
+
+  private static String getElementName(int i) {
+    return i < 10 ? "e0" + i : "e" + i;
+  }
+
+  private void write(String fileName, String content) throws IOException {
+    OutputStream os = new FileOutputStream(new File(directory, fileName));
+    try {
+      os.write(content.getBytes(CHARSET));
+    } finally {
+      os.close();
+    }
+  }
+
+  private static String createRnc() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("start = element root { (");
+    for (int i = 0; i < ELEMENT_COUNT; i++) {
+      sb.append(i > 0 ? " | " : "").append(getElementName(i));
+    }
+    sb.append(")* }\n");
+    sb.append("atts = attribute id { xsd:ID }, attribute ").append(ENUMERATED_ATTRIBUTE).append(" { ");
+    for (int i = 0; i < VALUES.length; i++) {
+      sb.append(i > 0 ? " | " : "").append('"').append(VALUES[i]).append('"');
+    }
+    sb.append(" }, attribute n { xsd:integer }?\n");
+    for (int i = 0; i < ELEMENT_COUNT; i++) {
+      String name = getElementName(i);
+      sb.append("## Element ").append(i).append('\n');
+      sb.append(name).append(" = element ").append(name).append(" { atts, text }\n");
+    }
+    return sb.toString();
+  }
+
+  private static String createRng() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<grammar xmlns='http://relaxng.org/ns/structure/1.0'")
+        .append(" xmlns:a='http://relaxng.org/ns/compatibility/annotations/1.0'")
+        .append(" datatypeLibrary='http://www.w3.org/2001/XMLSchema-datatypes'>\n");
+    sb.append("  <start><element name='root'><zeroOrMore><choice>\n");
+    for (int i = 0; i < ELEMENT_COUNT; i++) {
+      sb.append("    <ref name='").append(getElementName(i)).append("'/>\n");
+    }
+    sb.append("  </choice></zeroOrMore></element></start>\n");
+    sb.append("  <define name='atts'>\n");
+    sb.append("    <attribute name='id'><data type='ID'/></attribute>\n");
+    sb.append("    <attribute name='").append(ENUMERATED_ATTRIBUTE).append("'><choice>");
+    for (String value : VALUES) {
+      sb.append("<value>").append(value).append("</value>");
+    }
+    sb.append("</choice></attribute>\n");
+    sb.append("    <optional><attribute name='n'><data type='integer'/></attribute></optional>\n");
+    sb.append("  </define>\n");
+    for (int i = 0; i < ELEMENT_COUNT; i++) {
+      String name = getElementName(i);
+      sb.append("  <define name='").append(name).append("'><element name='").append(name).append("'>")
+          .append("<a:documentation>Element ").append(i).append("</a:documentation>")
+          .append("<ref name='atts'/><text/></element></define>\n");
+    }
+    sb.append("</grammar>\n");
+    return sb.toString();
+  }
+
+  private static String createXsd() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n");
+    sb.append("  <xs:element name='root'><xs:complexType>\n");
+    sb.append("    <xs:choice minOccurs='0' maxOccurs='unbounded'>\n");
+    for (int i = 0; i < ELEMENT_COUNT; i++) {
+      sb.append("      <xs:element ref='").append(getElementName(i)).append("'/>\n");
+    }
+    sb.append("    </xs:choice>\n");
+    sb.append("  </xs:complexType></xs:element>\n");
+    sb.append("  <xs:complexType name='item'><xs:simpleContent><xs:extension base='xs:string'>\n");
+    sb.append("    <xs:attribute name='id' type='xs:ID' use='required'/>\n");
+    sb.append("    <xs:attribute name='").append(ENUMERATED_ATTRIBUTE).append("' use='required'>")
+        .append("<xs:simpleType><xs:restriction base='xs:string'>");
+    for (String value : VALUES) {
+      sb.append("<xs:enumeration value='").append(value).append("'/>");
+    }
+    sb.append("</xs:restriction></xs:simpleType></xs:attribute>\n");
+    sb.append("    <xs:attribute name='n' type='xs:integer'/>\n");
+    sb.append("  </xs:extension></xs:simpleContent></xs:complexType>\n");
+    for (int i = 0; i < ELEMENT_COUNT; i++) {
+      sb.append("  <xs:element name='").append(getElementName(i)).append("' type='item'>")
+          .append("<xs:annotation><xs:documentation>Element ").append(i)
+          .append("</xs:documentation></xs:annotation></xs:element>\n");
+    }
+    sb.append("</xs:schema>\n");
+    return sb.toString();
+  }
+
+  private static String createSchematron() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<sch:schema xmlns:sch='").append(Stylesheets.SCHEMATRON_ISO_URI).append("'>\n");
+    sb.append("  <sch:pattern><sch:rule context='*[@").append(ENUMERATED_ATTRIBUTE).append("]'>\n");
+    sb.append("    <sch:assert test=\"");
+    for (int i = 0; i < VALUES.length; i++) {
+      sb.append(i > 0 ? " or " : "").append('@').append(ENUMERATED_ATTRIBUTE).append(" = '").append(VALUES[i])
+          .append('\'');
+    }
+    sb.append("\">Unexpected ").append(ENUMERATED_ATTRIBUTE).append("</sch:assert>\n");
+    sb.append("  </sch:rule></sch:pattern>\n");
+    sb.append("</sch:schema>\n");
+    return sb.toString();
+  }
+}
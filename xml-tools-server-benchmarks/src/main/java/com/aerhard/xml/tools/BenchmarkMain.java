@@ -0,0 +1,31 @@
+package com.aerhard.xml.tools;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line. Unless the command line sets them, the results are
+ * written as JSON to <code>jmh-result.json</code> so that runs can be compared with each other.
+ */
+public class BenchmarkMain {
+  private static final String RESULT_FORMAT_OPTION = "-rf";
+  private static final String RESULT_FILE_OPTION = "-rff";
+  private static final String DEFAULT_RESULT_FORMAT = "json";
+  private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  public static void main(String[] args) throws Exception {
+    List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+    if (!arguments.contains(RESULT_FORMAT_OPTION)) {
+      arguments.add(0, DEFAULT_RESULT_FORMAT);
+      arguments.add(0, RESULT_FORMAT_OPTION);
+    }
+    if (!arguments.contains(RESULT_FILE_OPTION)) {
+      arguments.add(0, DEFAULT_RESULT_FILE);
+      arguments.add(0, RESULT_FILE_OPTION);
+    }
+    Main.main(arguments.toArray(new String[arguments.size()]));
+  }
+}
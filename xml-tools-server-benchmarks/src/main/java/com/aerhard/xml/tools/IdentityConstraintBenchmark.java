@@ -0,0 +1,130 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.suggest.Suggester;
+import com.thaiopensource.suggest.SuggesterSchema;
+import com.thaiopensource.validate.Schema;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures identity-constraint checking of the XSD suggester, which validates the document before the
+ * cursor, on documents with 25,000 to 100,000 keys. The time per key should stay about the same as the
+ * number of keys grows.
+ *
+ * Each document contains one duplicate of a string key, one duplicate of a decimal key written in a
+ * different form, one reference to a missing single-field key and one to a missing two-field key, so
+ * the setup expects four identity-constraint errors.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+public class IdentityConstraintBenchmark {
+
+  private static final String SCHEMA =
+      "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+      "  <xs:element name='root'>\n" +
+      "    <xs:complexType><xs:sequence>\n" +
+      "      <xs:element name='item' minOccurs='0' maxOccurs='unbounded'><xs:complexType>\n" +
+      "        <xs:attribute name='code' type='xs:string'/><xs:attribute name='num' type='xs:decimal'/>\n" +
+      "        <xs:attribute name='ns' type='xs:string'/><xs:attribute name='n' type='xs:integer'/>\n" +
+      "      </xs:complexType></xs:element>\n" +
+      "      <xs:element name='ref' minOccurs='0' maxOccurs='unbounded'><xs:complexType>\n" +
+      "        <xs:attribute name='to' type='xs:string'/>\n" +
+      "        <xs:attribute name='tns' type='xs:string'/><xs:attribute name='tn' type='xs:integer'/>\n" +
+      "      </xs:complexType></xs:element>\n" +
+      "    </xs:sequence></xs:complexType>\n" +
+      "    <xs:key name='code'><xs:selector xpath='item'/><xs:field xpath='@code'/></xs:key>\n" +
+      "    <xs:unique name='num'><xs:selector xpath='item'/><xs:field xpath='@num'/></xs:unique>\n" +
+      "    <xs:key name='pair'><xs:selector xpath='item'/><xs:field xpath='@ns'/><xs:field xpath='@n'/></xs:key>\n" +
+      "    <xs:keyref name='codeRef' refer='code'><xs:selector xpath='ref'/><xs:field xpath='@to'/></xs:keyref>\n" +
+      "    <xs:keyref name='pairRef' refer='pair'><xs:selector xpath='ref'/>\n" +
+      "      <xs:field xpath='@tns'/><xs:field xpath='@tn'/></xs:keyref>\n" +
+      "  </xs:element>\n" +
+      "</xs:schema>\n";
+
+  private static final int EXPECTED_ERRORS = 4;
+
+  @Param({"25000", "50000", "100000"})
+  public int keyCount;
+
+  private File schemaFile;
+  private SchemaProperties schemaProperties;
+  private SuggesterSchema schema;
+  private byte[] document;
+
+  @Setup
+  public void setUp() throws Exception {
+    schemaFile = File.createTempFile("identity-constraints", ".xsd");
+    OutputStream os = new FileOutputStream(schemaFile);
+    try {
+      os.write(SCHEMA.getBytes("UTF-8"));
+    } finally {
+      os.close();
+    }
+
+    BenchmarkData.ErrorCounter eh = new BenchmarkData.ErrorCounter();
+    schemaProperties = new SchemaProperties(Constants.SCHEMA_TYPE_XSD + " " + schemaFile.getPath(),
+        new RequestProperties("", "", "UTF-8"));
+    Schema compiled = SchemaFactory.createSchema(SchemaFactory.createPropertyMap(schemaProperties, eh),
+        schemaProperties);
+    if (compiled == null || eh.getCount() > 0) {
+      throw new IllegalStateException("Could not compile " + schemaFile);
+    }
+    schema = (SuggesterSchema) compiled;
+    document = createDocument(keyCount);
+
+    int errors = check();
+    if (errors != EXPECTED_ERRORS) {
+      throw new IllegalStateException("Expected " + EXPECTED_ERRORS + " errors, got " + errors);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    schemaFile.delete();
+  }
+
+  private static byte[] createDocument(int keyCount) throws IOException {
+    StringBuilder sb = new StringBuilder("<root>\n");
+    for (int i = 0; i < keyCount; i++) {
+      sb.append("<item code='c").append(i).append("' num='").append(i).append(".5' ns='n").append(i % 100)
+          .append("' n='").append(i).append("'/>\n");
+    }
+    sb.append("<item code='c7' num='7.50' ns='x' n='0'/>\n");
+    for (int i = 0; i < keyCount; i++) {
+      sb.append("<ref to='c").append(keyCount - 1 - i).append("' tns='n").append(i % 100)
+          .append("' tn='").append(i).append("'/>\n");
+    }
+    sb.append("<ref to='missing' tns='n1' tn='0'/>\n");
+    sb.append("</root>\n");
+    return sb.toString().getBytes("UTF-8");
+  }
+
+  @Benchmark
+  public int check() throws Exception {
+    BenchmarkData.ErrorCounter eh = new BenchmarkData.ErrorCounter();
+    // the suggester reports identity-constraint errors to the handler of its properties
+    Suggester suggester = schema.createSuggester(SchemaFactory.createPropertyMap(schemaProperties, eh));
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    XMLReader reader = factory.newSAXParser().getXMLReader();
+    reader.setContentHandler(suggester);
+    reader.setDTDHandler(suggester);
+    reader.setErrorHandler(eh);
+    reader.parse(new InputSource(new ByteArrayInputStream(document)));
+    suggester.reset();
+    return eh.getCount();
+  }
+}
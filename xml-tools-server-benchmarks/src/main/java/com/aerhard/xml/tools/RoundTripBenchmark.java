@@ -0,0 +1,189 @@
+package com.aerhard.xml.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures validation and element suggestion requests sent to a {@link SocketServer} through the
+ * loopback interface, from writing the request to reading the complete response. Legacy requests open
+ * a new connection each; framed requests share a persistent connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoundTripBenchmark {
+  private static final int PORT = 9010;
+  private static final int MAX_DRIVER_CACHE_SIZE = 16;
+  private static final int SERVER_START_TIMEOUT = 10000;
+  private static final String CHARSET = "UTF-8";
+
+  @State(Scope.Benchmark)
+  public static class Server {
+    @Param({Constants.COMMAND_VALIDATE, Constants.COMMAND_AUTO_COMPLETE})
+    public String command;
+
+    @Param({"10240", "1048576"})
+    public int documentSize;
+
+    private BenchmarkData data;
+    private String host;
+    private List<String> headers;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+      data = BenchmarkData.create();
+      body = BenchmarkData.createDocument(documentSize);
+      host = InetAddress.getByName(null).getHostAddress();
+
+      String schema = Constants.SCHEMA_TYPE_RNG + " " + data.getSchemaPath(Constants.SCHEMA_TYPE_RNG);
+      headers = new ArrayList<String>();
+      if (Constants.COMMAND_AUTO_COMPLETE.equals(command)) {
+        headers.add(Constants.SUGGESTION_TYPE_ELEMENT);
+        headers.add("");
+        headers.add(String.valueOf(BenchmarkData.findCursor(body, Constants.SUGGESTION_TYPE_ELEMENT)));
+      }
+      headers.add("");
+      headers.add(CHARSET);
+      headers.add(data.getDocumentPath());
+      headers.add("");
+      headers.add(schema);
+
+      Thread serverThread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            new SocketServer().start(PORT, MAX_DRIVER_CACHE_SIZE);
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      };
+      serverThread.setDaemon(true);
+      serverThread.start();
+      waitForServer();
+    }
+
+    @TearDown
+    public void tearDown() {
+      data.delete();
+    }
+
+    private void waitForServer() throws InterruptedException, IOException {
+      long end = System.currentTimeMillis() + SERVER_START_TIMEOUT;
+      while (true) {
+        try {
+          Socket socket = new Socket(host, PORT);
+          try {
+            socket.getOutputStream().write(("-" + Constants.COMMAND_CACHE_STATS + "\n\n").getBytes(CHARSET));
+            socket.shutdownOutput();
+            readToEnd(socket.getInputStream());
+          } finally {
+            socket.close();
+          }
+          return;
+        } catch (IOException e) {
+          if (System.currentTimeMillis() > end) {
+            throw e;
+          }
+          Thread.sleep(50);
+        }
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Connection {
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private int requestId;
+
+    @Setup
+    public void setUp(Server server) throws IOException {
+      socket = new Socket(server.host, PORT);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.write(FramedConnection.MAGIC);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      socket.shutdownOutput();
+      socket.close();
+    }
+
+    private byte[] send(String command, List<String> headers, byte[] body) throws IOException {
+      out.writeInt(++requestId);
+      writeString(command);
+      out.writeInt(headers.size());
+      for (String header : headers) {
+        writeString(header);
+      }
+      out.writeInt(body.length);
+      out.write(body);
+      out.flush();
+
+      if (in.readInt() != requestId) {
+        throw new IOException("Unexpected response");
+      }
+      if (in.readByte() != FramedConnection.STATUS_OK) {
+        throw new IOException("Request failed");
+      }
+      byte[] payload = new byte[in.readInt()];
+      in.readFully(payload);
+      return payload;
+    }
+
+    private void writeString(String value) throws IOException {
+      byte[] bytes = value.getBytes(CHARSET);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  @Benchmark
+  public byte[] legacy(Server server) throws IOException {
+    Socket socket = new Socket(server.host, PORT);
+    try {
+      OutputStream os = new BufferedOutputStream(socket.getOutputStream());
+      StringBuilder sb = new StringBuilder();
+      sb.append('-').append(server.command).append(' ').append(server.body.length).append('\n');
+      for (String header : server.headers) {
+        sb.append('-').append(header).append('\n');
+      }
+      sb.append('\n');
+      os.write(sb.toString().getBytes(CHARSET));
+      os.write(server.body);
+      os.flush();
+      socket.shutdownOutput();
+
+      return readToEnd(socket.getInputStream());
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static byte[] readToEnd(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int length;
+    while ((length = is.read(buffer)) != -1) {
+      os.write(buffer, 0, length);
+    }
+    return os.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] framed(Server server, Connection connection) throws IOException {
+    return connection.send(server.command, server.headers, server.body);
+  }
+}
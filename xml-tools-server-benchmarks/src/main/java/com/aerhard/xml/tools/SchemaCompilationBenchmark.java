@@ -0,0 +1,51 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.validate.Schema;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SchemaFactory#createSchema} for each schema type. Schematron schemas are compiled
+ * with precompiled stylesheets, as in the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaCompilationBenchmark {
+
+  @Param({Constants.SCHEMA_TYPE_RNC, Constants.SCHEMA_TYPE_RNG, Constants.SCHEMA_TYPE_XSD,
+      Constants.SCHEMA_TYPE_SCH_ISO})
+  public String schemaType;
+
+  private BenchmarkData data;
+  private SchemaProperties schemaProperties;
+
+  @Setup
+  public void setUp() throws IOException {
+    Stylesheets.precompile();
+    data = BenchmarkData.create();
+    schemaProperties = data.createSchemaProperties(schemaType, new RequestProperties("", "", "UTF-8"));
+    createSchema();
+  }
+
+  @TearDown
+  public void tearDown() {
+    data.delete();
+  }
+
+  @Benchmark
+  public Schema createSchema() {
+    BenchmarkData.ErrorCounter eh = new BenchmarkData.ErrorCounter();
+    Schema schema = SchemaFactory.createSchema(SchemaFactory.createPropertyMap(schemaProperties, eh),
+        schemaProperties);
+    if (schema == null) {
+      throw new IllegalStateException("Could not compile " + schemaProperties.getPath());
+    }
+    return schema;
+  }
+}
@@ -0,0 +1,69 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.suggest.Suggestion;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Driver#runSuggester} for each suggestion type with the cursor in the middle of the
+ * document. Resumed requests repeat the document path, so that parsing resumes from the checkpoints
+ * of the previous request as when a user keeps editing one document; fresh requests use a new path
+ * each time and parse the document head from the start.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SuggestionBenchmark {
+
+  @Param({Constants.SCHEMA_TYPE_RNG, Constants.SCHEMA_TYPE_XSD})
+  public String schemaType;
+
+  @Param({Constants.SUGGESTION_TYPE_ELEMENT, Constants.SUGGESTION_TYPE_ATT_NAME,
+      Constants.SUGGESTION_TYPE_ATT_VALUE})
+  public String suggestionType;
+
+  @Param({"10240", "1048576"})
+  public int documentSize;
+
+  @Param({"true", "false"})
+  public boolean resume;
+
+  private BenchmarkData data;
+  private SchemaProperties schemaProperties;
+  private Driver driver;
+  private byte[] bytes;
+  private int cursor;
+  private int requestCount;
+
+  @Setup
+  public void setUp() throws IOException {
+    data = BenchmarkData.create();
+    RequestProperties requestProperties = new RequestProperties("", "", "UTF-8", suggestionType,
+        BenchmarkData.getFragment(suggestionType));
+    schemaProperties = data.createSchemaProperties(schemaType, requestProperties);
+    driver = data.createDriver(schemaProperties);
+    bytes = BenchmarkData.createDocument(documentSize);
+    cursor = BenchmarkData.findCursor(bytes, suggestionType);
+    if (suggest().isEmpty()) {
+      throw new IllegalStateException("No " + suggestionType + " suggestions");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    data.delete();
+  }
+
+  @Benchmark
+  public List<? extends Suggestion> suggest() {
+    String xmlPath = resume ? data.getDocumentPath() : data.getDocumentPath() + "." + requestCount++;
+    return driver.runSuggester(bytes, cursor, bytes.length, new BenchmarkData.ErrorCounter(), xmlPath,
+        schemaProperties);
+  }
+}
@@ -0,0 +1,84 @@
+package com.aerhard.xml.tools;
+
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Driver#runValidator} on valid documents of 10 KB to 100 MB. The warm benchmark
+ * validates with the same Driver throughout, so it profits from the pooled validators and the
+ * derivative memos built by earlier runs; the cold benchmark validates once with a newly compiled
+ * Driver, whose compilation isn't measured.
+ *
+ * The 100 MB documents need a heap of about 2 GB.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ValidationBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Document {
+    @Param({Constants.SCHEMA_TYPE_RNG, Constants.SCHEMA_TYPE_XSD})
+    public String schemaType;
+
+    @Param({"10240", "1048576", "104857600"})
+    public int documentSize;
+
+    private BenchmarkData data;
+    private SchemaProperties schemaProperties;
+    private byte[] bytes;
+    private Driver driver;
+
+    @Setup
+    public void setUp() throws IOException {
+      data = BenchmarkData.create();
+      schemaProperties = data.createSchemaProperties(schemaType, new RequestProperties("", "", "UTF-8"));
+      bytes = BenchmarkData.createDocument(documentSize);
+      driver = data.createDriver(schemaProperties);
+      if (validate(driver) > 0) {
+        throw new IllegalStateException("The document isn't valid");
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      data.delete();
+    }
+
+    private int validate(Driver driver) {
+      InputSource in = new InputSource(new ByteArrayInputStream(bytes));
+      in.setEncoding("UTF-8");
+      in.setSystemId(data.getDocumentPath());
+      BenchmarkData.ErrorCounter eh = new BenchmarkData.ErrorCounter();
+      driver.runValidator(in, eh, eh, schemaProperties.getPath());
+      return eh.getCount();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ColdDriver {
+    private Driver driver;
+
+    @Setup(Level.Invocation)
+    public void setUp(Document document) {
+      driver = document.data.createDriver(document.schemaProperties);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  public int cold(Document document, ColdDriver coldDriver) {
+    return document.validate(coldDriver.driver);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public int warm(Document document) {
+    return document.validate(document.driver);
+  }
+}
@@ -0,0 +1,76 @@
+package com.aerhard.xml.tools;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Process-wide pool of byte arrays for request bodies.
+ *
+ * Arrays come in power-of-two size classes, so a buffer handed out is usually larger than requested and
+ * its users have to keep track of the length of the content. Each class keeps at most
+ * {@link #MAX_IDLE_PER_CLASS} idle arrays and the pool retains at most {@link #MAX_RETAINED_BYTES}
+ * bytes; arrays larger than {@link #MAX_POOLED_SIZE} aren't pooled at all.
+ */
+final class BufferPool {
+
+  public static final int MIN_POOLED_SIZE = 4 * 1024;
+  public static final int MAX_POOLED_SIZE = 64 * 1024 * 1024;
+  public static final int MAX_IDLE_PER_CLASS = 4;
+  public static final long MAX_RETAINED_BYTES = 128L * 1024 * 1024;
+
+  private static final int MIN_CLASS = Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+  private static final int MAX_CLASS = Integer.numberOfTrailingZeros(MAX_POOLED_SIZE);
+
+  @SuppressWarnings("unchecked")
+  private static final Deque<byte[]>[] idle = new Deque[MAX_CLASS - MIN_CLASS + 1];
+  private static long retainedBytes = 0;
+
+  static {
+    for (int i = 0; i < idle.length; i++) {
+      idle[i] = new ArrayDeque<byte[]>();
+    }
+  }
+
+  private BufferPool() {
+  }
+
+  /**
+   * Returns an array of at least the given length.
+   */
+  public static byte[] acquire(int length) {
+    if (length > MAX_POOLED_SIZE) {
+      return new byte[length];
+    }
+    int sizeClass = getSizeClass(length);
+    synchronized (BufferPool.class) {
+      byte[] buffer = idle[sizeClass - MIN_CLASS].pollFirst();
+      if (buffer != null) {
+        retainedBytes -= buffer.length;
+        return buffer;
+      }
+    }
+    return new byte[1 << sizeClass];
+  }
+
+  /**
+   * Returns an array to the pool. The array must not be used afterwards.
+   */
+  public static void release(byte[] buffer) {
+    if (buffer == null || buffer.length < MIN_POOLED_SIZE || buffer.length > MAX_POOLED_SIZE
+        || Integer.bitCount(buffer.length) != 1) {
+      return;
+    }
+    synchronized (BufferPool.class) {
+      Deque<byte[]> deque = idle[getSizeClass(buffer.length) - MIN_CLASS];
+      if (deque.size() < MAX_IDLE_PER_CLASS && retainedBytes + buffer.length <= MAX_RETAINED_BYTES) {
+        deque.addFirst(buffer);
+        retainedBytes += buffer.length;
+      }
+    }
+  }
+
+  private static int getSizeClass(int length) {
+    int sizeClass = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+    return Math.max(sizeClass, MIN_CLASS);
+  }
+}
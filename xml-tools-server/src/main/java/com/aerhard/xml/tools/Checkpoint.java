@@ -0,0 +1,108 @@
+package com.aerhard.xml.tools;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+/**
+ * Validator state recorded directly after an end tag of a document.
+ *
+ * The offset is the byte offset following the closing <code>&gt;</code>, line and column are the
+ * parser's position at that offset. The fingerprint is computed over the bytes before the offset, so
+ * a checkpoint can only be resumed from if the document hasn't changed up to that point.
+ */
+class Checkpoint {
+
+  private final int offset;
+  private final int line;
+  private final int column;
+  private final long fingerprint;
+  private final List<OpenElement> openElements;
+  private final Object state;
+  private final int diagnosticCount;
+  private final int readerDiagnosticCount;
+
+  public Checkpoint(int offset, int line, int column, long fingerprint, List<OpenElement> openElements,
+                    Object state, int diagnosticCount, int readerDiagnosticCount) {
+    this.offset = offset;
+    this.line = line;
+    this.column = column;
+    this.fingerprint = fingerprint;
+    this.openElements = openElements;
+    this.state = state;
+    this.diagnosticCount = diagnosticCount;
+    this.readerDiagnosticCount = readerDiagnosticCount;
+  }
+
+  public int getOffset() { return offset; }
+  public int getLine() { return line; }
+  public int getColumn() { return column; }
+  public long getFingerprint() { return fingerprint; }
+  public List<OpenElement> getOpenElements() { return openElements; }
+  public Object getState() { return state; }
+  public int getDiagnosticCount() { return diagnosticCount; }
+  public int getReaderDiagnosticCount() { return readerDiagnosticCount; }
+
+  /**
+   * Returns the start tags of the elements open at the checkpoint with their namespace declarations.
+   * The tags are written on a single line so the parser positions of the remainder of the document
+   * can be translated back.
+   */
+  public String createOpenTags() {
+    StringBuilder sb = new StringBuilder();
+    for (OpenElement element : openElements) {
+      sb.append('<').append(element.getQName());
+      List<String> prefixes = element.getPrefixes();
+      List<String> uris = element.getUris();
+      for (int i = 0; i < prefixes.size(); i++) {
+        String prefix = prefixes.get(i);
+        sb.append(prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix).append("=\"");
+        escapeAttributeValue(uris.get(i), sb);
+        sb.append('"');
+      }
+      sb.append('>');
+    }
+    return sb.toString();
+  }
+
+  public byte[] createOpenTagBytes() {
+    try {
+      return createOpenTags().getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void escapeAttributeValue(String value, StringBuilder sb) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '&': sb.append("&amp;"); break;
+        case '<': sb.append("&lt;"); break;
+        case '"': sb.append("&quot;"); break;
+        case '\t': sb.append("&#9;"); break;
+        case '\n': sb.append("&#10;"); break;
+        case '\r': sb.append("&#13;"); break;
+        default: sb.append(c);
+      }
+    }
+  }
+
+  /**
+   * An element open at a checkpoint together with the namespace declarations on its start tag.
+   */
+  static class OpenElement {
+    private final String qName;
+    private final List<String> prefixes;
+    private final List<String> uris;
+
+    public OpenElement(String qName, List<String> prefixes, List<String> uris) {
+      this.qName = qName;
+      this.prefixes = prefixes;
+      this.uris = uris;
+    }
+
+    public String getQName() { return qName; }
+    public List<String> getPrefixes() { return prefixes; }
+    public List<String> getUris() { return uris; }
+  }
+}
@@ -0,0 +1,222 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.RecordingErrorPrintHandler;
+import com.thaiopensource.suggest.Resumable;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * ContentHandler filter which forwards all events to a validator and records checkpoints of the
+ * validator's state after end tags.
+ *
+ * Checkpoints are recorded at most every {@link #MIN_INTERVAL} bytes and at most about
+ * {@link #MAX_CHECKPOINTS} times per document, since each of them holds a copy of the validator's ID
+ * table. The byte offset of a checkpoint is derived from the parser's line and column by scanning the
+ * UTF-8 input; if the position can't be matched to the closing <code>&gt;</code> of a tag, recording
+ * stops for the rest of the document.
+ */
+class CheckpointRecorder implements ContentHandler {
+
+  static final int MIN_INTERVAL = 16 * 1024;
+  static final int MAX_CHECKPOINTS = 64;
+
+  private final ContentHandler handler;
+  private final Resumable resumable;
+  private final RecordingErrorPrintHandler eh;
+  private final RecordingErrorPrintHandler readerEh;
+  private final byte[] bytes;
+  private final int length;
+  private final int interval;
+
+  private final List<Checkpoint> checkpoints;
+  private final LinkedList<Checkpoint.OpenElement> openElements;
+  private List<String> pendingPrefixes = new ArrayList<String>();
+  private List<String> pendingUris = new ArrayList<String>();
+  private Locator locator;
+
+  private int offset;
+  private int line;
+  private int column;
+  private long fingerprint;
+  private int lastCheckpointOffset;
+  private boolean disabled = false;
+
+  /**
+   * Creates a recorder for a validation run from the start of the document in the first length bytes
+   * of the array. The diagnostics of the validator and the parser get recorded by eh and readerEh.
+   */
+  public CheckpointRecorder(ContentHandler handler, Resumable resumable, RecordingErrorPrintHandler eh,
+                            RecordingErrorPrintHandler readerEh, byte[] bytes, int length) {
+    this.handler = handler;
+    this.resumable = resumable;
+    this.eh = eh;
+    this.readerEh = readerEh;
+    this.bytes = bytes;
+    this.length = length;
+    this.interval = getInterval(length);
+    this.checkpoints = new ArrayList<Checkpoint>();
+    this.openElements = new LinkedList<Checkpoint.OpenElement>();
+    this.offset = 0;
+    this.line = 1;
+    this.column = 1;
+    this.fingerprint = Checkpoints.FINGERPRINT_SEED;
+    this.lastCheckpointOffset = 0;
+  }
+
+  /**
+   * Creates a recorder for a validation run resumed from a checkpoint, keeping the earlier checkpoints.
+   */
+  public CheckpointRecorder(ContentHandler handler, Resumable resumable, RecordingErrorPrintHandler eh,
+                            RecordingErrorPrintHandler readerEh, byte[] bytes, int length,
+                            Checkpoints previous, Checkpoint checkpoint) {
+    this.handler = handler;
+    this.resumable = resumable;
+    this.eh = eh;
+    this.readerEh = readerEh;
+    this.bytes = bytes;
+    this.length = length;
+    this.interval = getInterval(length);
+    this.checkpoints = new ArrayList<Checkpoint>(previous.getCheckpoints(checkpoint));
+    this.openElements = new LinkedList<Checkpoint.OpenElement>(checkpoint.getOpenElements());
+    this.offset = checkpoint.getOffset();
+    this.line = checkpoint.getLine();
+    this.column = checkpoint.getColumn();
+    this.fingerprint = checkpoint.getFingerprint();
+    this.lastCheckpointOffset = checkpoint.getOffset();
+  }
+
+  private static int getInterval(int length) {
+    return Math.max(MIN_INTERVAL, length / MAX_CHECKPOINTS);
+  }
+
+  public Checkpoints getCheckpoints() {
+    return new Checkpoints(Collections.unmodifiableList(checkpoints), eh.getDiagnostics(),
+        readerEh.getDiagnostics());
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    this.locator = locator;
+    handler.setDocumentLocator(locator);
+  }
+
+  public void startDocument() throws SAXException {
+    handler.startDocument();
+  }
+
+  public void endDocument() throws SAXException {
+    handler.endDocument();
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    pendingPrefixes.add(prefix);
+    pendingUris.add(uri);
+    handler.startPrefixMapping(prefix, uri);
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    handler.endPrefixMapping(prefix);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    handler.startElement(uri, localName, qName, atts);
+    openElements.addLast(new Checkpoint.OpenElement(qName, pendingPrefixes, pendingUris));
+    pendingPrefixes = new ArrayList<String>();
+    pendingUris = new ArrayList<String>();
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    handler.endElement(uri, localName, qName);
+    if (!openElements.isEmpty()) {
+      openElements.removeLast();
+    }
+    if (!disabled && !openElements.isEmpty()) {
+      record();
+    }
+  }
+
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    handler.characters(ch, start, length);
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    handler.ignorableWhitespace(ch, start, length);
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    handler.processingInstruction(target, data);
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    handler.skippedEntity(name);
+  }
+
+  private void record() {
+    if (locator == null || !advanceTo(locator.getLineNumber(), locator.getColumnNumber())) {
+      disabled = true;
+      return;
+    }
+    if (offset == 0 || bytes[offset - 1] != '>') {
+      disabled = true;
+      return;
+    }
+    if (offset - lastCheckpointOffset < interval) {
+      return;
+    }
+    List<Checkpoint.OpenElement> elements =
+        Collections.unmodifiableList(new ArrayList<Checkpoint.OpenElement>(openElements));
+    checkpoints.add(new Checkpoint(offset, line, column, fingerprint, elements, resumable.saveState(),
+        eh.getDiagnosticCount(), readerEh.getDiagnosticCount()));
+    lastCheckpointOffset = offset;
+  }
+
+  /**
+   * Moves the byte offset forward to a parser position, updating the fingerprint with the bytes passed.
+   * Line ends are counted like the parser does (CR LF, CR and LF) and characters outside the BMP take
+   * two columns.
+   */
+  private boolean advanceTo(int targetLine, int targetColumn) {
+    int start = offset;
+    while (line < targetLine || (line == targetLine && column < targetColumn)) {
+      if (offset >= length) {
+        return false;
+      }
+      int b = bytes[offset] & 0xff;
+      if (b == '\r') {
+        offset++;
+        if (offset < length && bytes[offset] == '\n') {
+          offset++;
+        }
+        line++;
+        column = 1;
+      } else if (b == '\n') {
+        offset++;
+        line++;
+        column = 1;
+      } else if (b < 0x80) {
+        offset++;
+        column++;
+      } else if (b < 0xe0) {
+        offset += 2;
+        column++;
+      } else if (b < 0xf0) {
+        offset += 3;
+        column++;
+      } else {
+        offset += 4;
+        column += 2;
+      }
+    }
+    if (offset > length) {
+      return false;
+    }
+    fingerprint = Checkpoints.fingerprint(fingerprint, bytes, start, offset);
+    return line == targetLine && column == targetColumn;
+  }
+}
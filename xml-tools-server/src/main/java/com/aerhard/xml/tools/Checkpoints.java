@@ -0,0 +1,130 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.RecordingErrorPrintHandler.Diagnostic;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The checkpoints recorded during the last validation of a document, in document order, together with
+ * the diagnostics of the validator and of the parser reported in that run.
+ */
+class Checkpoints {
+
+  static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+  private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
+  private static final byte[] DOCTYPE = {'<', '!', 'D', 'O', 'C', 'T', 'Y', 'P', 'E'};
+  private static final byte[] COMMENT_START = {'<', '!', '-', '-'};
+  private static final byte[] COMMENT_END = {'-', '-', '>'};
+
+  private final List<Checkpoint> checkpoints;
+  private final List<Diagnostic> diagnostics;
+  private final List<Diagnostic> readerDiagnostics;
+
+  public Checkpoints(List<Checkpoint> checkpoints, List<Diagnostic> diagnostics, List<Diagnostic> readerDiagnostics) {
+    this.checkpoints = checkpoints;
+    this.diagnostics = diagnostics;
+    this.readerDiagnostics = readerDiagnostics;
+  }
+
+  /**
+   * Updates a fingerprint (64 bit FNV-1a) with the bytes from start (inclusive) to end (exclusive).
+   */
+  static long fingerprint(long fingerprint, byte[] bytes, int start, int end) {
+    for (int i = start; i < end; i++) {
+      fingerprint ^= bytes[i] & 0xff;
+      fingerprint *= FINGERPRINT_PRIME;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Returns true if validation of the document in the first length bytes of the array can be resumed
+   * from checkpoints. That's the case for UTF-8 documents without a document type declaration, which
+   * could declare entities or default attributes the open tags of a checkpoint wouldn't reproduce.
+   */
+  static boolean isResumable(byte[] bytes, int length, String encoding) {
+    if (!"UTF-8".equalsIgnoreCase(encoding)) {
+      return false;
+    }
+    if (length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf) {
+      return false;
+    }
+    for (int i = 0; i < length - 1; i++) {
+      if (bytes[i] == '<' && bytes[i + 1] != '?' && bytes[i + 1] != '!') {
+        // start tag of the root element
+        return true;
+      }
+      if (startsWith(bytes, length, i, DOCTYPE)) {
+        return false;
+      }
+      if (startsWith(bytes, length, i, COMMENT_START)) {
+        while (i < length && !startsWith(bytes, length, i, COMMENT_END)) {
+          i++;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(byte[] bytes, int length, int offset, byte[] prefix) {
+    if (offset + prefix.length > length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the last checkpoint before the start of an edit whose document prefix is unchanged in
+   * the new version of the document (the first length bytes of the array), or null if there is none.
+   */
+  public Checkpoint find(byte[] bytes, int length, int editStart) {
+    long fingerprint = FINGERPRINT_SEED;
+    int position = 0;
+    Checkpoint found = null;
+    for (Checkpoint checkpoint : checkpoints) {
+      int offset = checkpoint.getOffset();
+      if (offset > editStart || offset > length) {
+        break;
+      }
+      fingerprint = fingerprint(fingerprint, bytes, position, offset);
+      position = offset;
+      if (fingerprint != checkpoint.getFingerprint()) {
+        break;
+      }
+      found = checkpoint;
+    }
+    return found;
+  }
+
+  /**
+   * Returns the checkpoints up to and including the given one.
+   */
+  public List<Checkpoint> getCheckpoints(Checkpoint last) {
+    return Collections.unmodifiableList(checkpoints.subList(0, checkpoints.indexOf(last) + 1));
+  }
+
+  /**
+   * Returns the diagnostics of the validator reported before the given checkpoint.
+   */
+  public List<Diagnostic> getDiagnostics(Checkpoint checkpoint) {
+    return Collections.unmodifiableList(diagnostics.subList(0, checkpoint.getDiagnosticCount()));
+  }
+
+  /**
+   * Returns the diagnostics of the parser reported before the given checkpoint.
+   */
+  public List<Diagnostic> getReaderDiagnostics(Checkpoint checkpoint) {
+    return Collections.unmodifiableList(readerDiagnostics.subList(0, checkpoint.getReaderDiagnosticCount()));
+  }
+
+  public int size() {
+    return checkpoints.size();
+  }
+}
@@ -5,6 +5,8 @@ public class Constants {
   public final static String COMMAND_VALIDATE = "V";
   public final static String COMMAND_CLEAR_CACHE = "C";
   public final static String COMMAND_SET_MAX_CACHE_SIZE = "S";
+  public final static String COMMAND_CACHE_STATS = "T";
+  public final static String COMMAND_METRICS = "M";
   
   public final static String SCHEMA_TYPE_NONE = "none";
   public final static String SCHEMA_TYPE_RNG = "rng";
@@ -17,4 +19,7 @@ public class Constants {
   public final static String SUGGESTION_TYPE_ELEMENT = "E";
   public final static String SUGGESTION_TYPE_ATT_NAME = "N";
   public final static String SUGGESTION_TYPE_ATT_VALUE = "V";
+
+  public final static String EXECUTOR_TYPE_POOL = "pool";
+  public final static String EXECUTOR_TYPE_VIRTUAL = "virtual";
 }
@@ -1,56 +1,168 @@
 package com.aerhard.xml.tools;
 
 import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.aerhard.xml.tools.error.RecordingErrorPrintHandler;
 import com.thaiopensource.suggest.*;
 import com.thaiopensource.util.PropertyMap;
-import com.thaiopensource.util.PropertyMapBuilder;
 import com.thaiopensource.validate.ResolverFactory;
 import com.thaiopensource.validate.Schema;
-import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.Validator;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.thaiopensource.xml.sax.ForkContentHandler;
+import com.thaiopensource.xml.sax.ForkDTDHandler;
 import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
-class Driver implements Comparable {
-  private XMLReader xr;
+class Driver {
+  private static final int MAX_CHECKPOINT_DOCUMENTS = 16;
+
+  private static final int MAX_IDLE_READERS = Runtime.getRuntime().availableProcessors();
+  private static final DefaultHandler NULL_HANDLER = new DefaultHandler();
+
+  private final Deque<XMLReader> idleReaders = new ArrayDeque<XMLReader>();
   private final PropertyMap properties;
   private final Schema schema;
-  private long lastActive = 0;
+  private final SchemaDependencies dependencies;
+  private final long weight;
+  private final long compileTime;
+
+  private final Map<String, Checkpoints> validationCheckpoints = createCheckpointMap();
+  private final Map<String, Checkpoints> suggestionCheckpoints = createCheckpointMap();
+
+  private final InstancePool<Validator> validatorPool;
+  private final InstancePool<ResumableValidator> resumableValidatorPool;
+  private final InstancePool<Suggester> suggesterPool;
+
+  public Driver(Schema schema, PropertyMap properties, long weight) {
+    this(schema, properties, SchemaDependencies.NONE, weight);
+  }
+
+  public Driver(Schema schema, PropertyMap properties, SchemaDependencies dependencies, long weight) {
+    this(schema, properties, dependencies, weight, 0);
+  }
 
-  public Driver(Schema schema, PropertyMap properties) {
+  public Driver(final Schema schema, PropertyMap properties, SchemaDependencies dependencies, long weight,
+                long compileTime) {
     this.schema = schema;
     this.properties = properties;
+    this.dependencies = dependencies;
+    this.weight = weight;
+    this.compileTime = compileTime;
+
+    validatorPool = new InstancePool<Validator>(properties, new InstancePool.Factory<Validator>() {
+      @Override
+      public Validator create(PropertyMap properties) {
+        return schema.createValidator(properties);
+      }
+    });
+    resumableValidatorPool = new InstancePool<ResumableValidator>(properties,
+        new InstancePool.Factory<ResumableValidator>() {
+          @Override
+          public ResumableValidator create(PropertyMap properties) {
+            return ((ResumableSchema) schema).createResumableValidator(properties);
+          }
+        });
+    suggesterPool = new InstancePool<Suggester>(properties, new InstancePool.Factory<Suggester>() {
+      @Override
+      public Suggester create(PropertyMap properties) {
+        return ((SuggesterSchema) schema).createSuggester(properties);
+      }
+    });
   }
 
-  synchronized private void parse(InputSource in, ErrorPrintHandler eh, ContentHandler ch, DTDHandler dh, String schemaPath) {
-    try {
-      if (xr == null) {
-        xr = ResolverFactory.createResolver(properties).createXMLReader();
+  /**
+   * Returns the files the schema has been compiled from.
+   */
+  public SchemaDependencies getDependencies() {
+    return dependencies;
+  }
+
+  /**
+   * Returns the estimated memory footprint of the compiled schema in bytes.
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Returns the time compiling the schema took in microseconds.
+   */
+  public long getCompileTime() {
+    return compileTime;
+  }
+
+  private static Map<String, Checkpoints> createCheckpointMap() {
+    return Collections.synchronizedMap(new LinkedHashMap<String, Checkpoints>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Checkpoints> eldest) {
+        return size() > MAX_CHECKPOINT_DOCUMENTS;
       }
+    });
+  }
+
+  /**
+   * Parses a document with a reader taken from the driver's reader pool, so that concurrent requests
+   * against the same schema don't have to wait for each other.
+   */
+  private void parse(InputSource in, ErrorPrintHandler eh, ContentHandler ch, DTDHandler dh, String schemaPath) {
+    XMLReader xr = null;
+    try {
+      xr = acquireReader();
 
       xr.setErrorHandler(eh);
       xr.setContentHandler(ch);
-      if (dh != null) {
-        xr.setDTDHandler(dh);
-      }
+      xr.setDTDHandler(dh != null ? dh : NULL_HANDLER);
 
       xr.parse(in);
     } catch (IOException e) {
       eh.print(schemaPath + ": fatal: " + e.getMessage());
+    } catch (ErrorLimitFilter.LimitReachedException e) {
+      // the document has more errors than requested; they are not reported
     } catch (SAXException e) {
       eh.printException(e);
     } catch (Exception e) {
       e.printStackTrace();
+    } finally {
+      if (xr != null) {
+        releaseReader(xr);
+      }
+    }
+  }
+
+  private XMLReader acquireReader() throws SAXException {
+    synchronized (idleReaders) {
+      XMLReader xr = idleReaders.pollFirst();
+      if (xr != null) {
+        return xr;
+      }
+    }
+    return ResolverFactory.createResolver(properties).createXMLReader();
+  }
+
+  private void releaseReader(XMLReader xr) {
+    // don't keep the handlers of the last request, and with them its document, reachable
+    xr.setErrorHandler(NULL_HANDLER);
+    xr.setContentHandler(NULL_HANDLER);
+    xr.setDTDHandler(NULL_HANDLER);
+    synchronized (idleReaders) {
+      if (idleReaders.size() < MAX_IDLE_READERS) {
+        idleReaders.addFirst(xr);
+      }
     }
   }
 
-  public JSONArray runSuggester(InputSource in, byte[] tail, ErrorPrintHandler eh, SchemaProperties schemaProperties) {
+  /**
+   * Parses the head of a document (its first headLength bytes, the part before the cursor) and returns
+   * the suggestions at its end, selected and ordered as requested (see {@link SuggestionQuery}); the
+   * complete document is the first length bytes of the array. With schemas whose suggesters are
+   * {@link Resumable}, parsing resumes from a checkpoint recorded with an earlier request for the same
+   * document if the document is unchanged up to the checkpoint.
+   */
+  public List<? extends Suggestion> runSuggester(byte[] bytes, int headLength, int length, ErrorPrintHandler eh,
+                                                 String xmlPath, SchemaProperties schemaProperties) {
 
     String schemaPath = schemaProperties.getPath();
     RequestProperties requestProperties = schemaProperties.getRequestProperties();
@@ -58,115 +170,189 @@ class Driver implements Comparable {
     boolean suggestWildcards = requestProperties.shouldSuggestWildcards();
     boolean suggestNamespaceWildcard = requestProperties.shouldSuggestNamespaceWildcard();
     String fragment = requestProperties.getFragment();
+    String encoding = requestProperties.getEncoding();
 
-    PropertyMapBuilder builder = new PropertyMapBuilder(properties);
-    builder.put(ValidateProperty.ERROR_HANDLER, eh);
-    PropertyMap instanceProperties = builder.toPropertyMap();
+    RecordingErrorPrintHandler recordingEh = new RecordingErrorPrintHandler(eh);
+    InstancePool.Entry<Suggester> entry = suggesterPool.acquire(recordingEh);
+    Suggester suggester = entry.getInstance();
 
-    SuggesterSchema suggesterSchema = (SuggesterSchema) schema;
-    Suggester suggester = suggesterSchema.createSuggester(instanceProperties);
-
-    parse(in, eh, suggester, suggester, schemaPath);
+    long start = System.nanoTime();
+    if (suggester instanceof Resumable && Checkpoints.isResumable(bytes, headLength, encoding)) {
+      int editStart = requestProperties.getEditStart();
+      if (editStart < 0 || editStart > headLength) {
+        editStart = headLength;
+      }
+      parseResumable(bytes, headLength, editStart, (Resumable) suggester, suggester, suggester, recordingEh, null,
+          eh, suggestionCheckpoints, xmlPath, schemaPath);
+    } else {
+      InputSource in = new InputSource(new ByteArrayInputStream(bytes, 0, headLength));
+      in.setEncoding(encoding);
+      in.setSystemId(xmlPath);
+      parse(in, eh, suggester, suggester, schemaPath);
+    }
+    Metrics.PARSE.recordSince(start);
 
-    JSONArray jsonData = new JSONArray();
+    start = System.nanoTime();
+    List<? extends Suggestion> suggestions;
+    SuggestionQuery query = SuggestionQuery.fromRequest(requestProperties);
 
     if (Constants.SUGGESTION_TYPE_ELEMENT.equals(suggestionType)) {
-      List<ElementSuggestion> suggestions = suggester.suggestElements(suggestWildcards, suggestNamespaceWildcard);
-      Collections.sort(suggestions, new Comparator<Suggestion>() {
-        @Override
-        public int compare(Suggestion a, Suggestion b) {
-          return a.getValue().compareTo(b.getValue());
-        }
-      });
+      List<ElementSuggestion> elementSuggestions =
+          suggester.suggestElements(suggestWildcards, suggestNamespaceWildcard);
       String closingTag = suggester.suggestClosingTag();
       if (closingTag != null) {
-        suggestions.add(new ElementSuggestion(closingTag, null, null, false, true));
-      }
-      for (ElementSuggestion s : suggestions) {
-        JSONObject item = new JSONObject();
-        item.put("value", s.getValue());
-        if (s.getDocumentation() != null) {
-          item.put("documentation", new JSONArray(s.getDocumentation()));
-        }
-        if (s.getAttributes() != null) {
-          item.put("attributes", new JSONArray(s.getAttributes()));
-        }
-        if (s.isEmpty()) {
-          item.put("empty", true);
-        }
-        if (s.isClosing()) {
-          item.put("closing", true);
-        }
-        jsonData.put(item);
-      }
-    }
-    if (Constants.SUGGESTION_TYPE_ATT_NAME.equals(suggestionType)) {
-      List<AttributeNameSuggestion> suggestions = suggester.suggestAttributeNames(suggestWildcards, suggestNamespaceWildcard);
-      Collections.sort(suggestions, new Comparator<Suggestion>() {
-        @Override
-        public int compare(Suggestion a, Suggestion b) {
-          return a.getValue().compareTo(b.getValue());
-        }
-      });
-      for (AttributeNameSuggestion s : suggestions) {
-        JSONObject item = new JSONObject();
-        item.put("value", s.getValue());
-        if (s.getDocumentation() != null) {
-          item.put("documentation", new JSONArray(s.getDocumentation()));
-        }
-        jsonData.put(item);
-      }
-    }
-    if (Constants.SUGGESTION_TYPE_ATT_VALUE.equals(suggestionType)) {
-      List<AttributeValueSuggestion> suggestions = suggester.suggestAttributeValues(fragment, tail);
-      Collections.sort(suggestions, new Comparator<Suggestion>() {
-        @Override
-        public int compare(Suggestion a, Suggestion b) {
-          return a.getValue().compareTo(b.getValue());
-        }
-      });
-      for (AttributeValueSuggestion s : suggestions) {
-        JSONObject item = new JSONObject();
-        item.put("value", s.getValue());
-        if (s.getDocumentation() != null) {
-          item.put("documentation", new JSONArray(s.getDocumentation()));
-        }
-        if (s.isListItem()) {
-          item.put("listItem", true);
-        }
-        jsonData.put(item);
+        // ranked and counted against the limit like the other suggestions
+        elementSuggestions.add(new ElementSuggestion(closingTag, null, null, false, true));
       }
+      suggestions = query.select(elementSuggestions);
+    } else if (Constants.SUGGESTION_TYPE_ATT_NAME.equals(suggestionType)) {
+      suggestions = query.select(suggester.suggestAttributeNames(suggestWildcards, suggestNamespaceWildcard));
+    } else if (Constants.SUGGESTION_TYPE_ATT_VALUE.equals(suggestionType)) {
+      suggestions = query.select(suggester.suggestAttributeValues(fragment, bytes, headLength, length));
+    } else {
+      suggestions = Collections.<Suggestion>emptyList();
     }
+    Metrics.SUGGEST.recordSince(start);
 
-    lastActive = System.currentTimeMillis();
     suggester.reset();
-    return jsonData;
+    suggesterPool.release(entry);
+    return suggestions;
   }
 
   public void runValidator(InputSource in, ErrorPrintHandler veh, ErrorPrintHandler reh, String schemaPath) {
-    PropertyMapBuilder builder = new PropertyMapBuilder(properties);
-    builder.put(ValidateProperty.ERROR_HANDLER, veh);
-    PropertyMap instanceProperties = builder.toPropertyMap();
+    InstancePool.Entry<Validator> entry = validatorPool.acquire(veh);
+    Validator validator = entry.getInstance();
 
-    Validator validator = schema.createValidator(instanceProperties);
-
-    ContentHandler ch = validator.getContentHandler();
+    ContentHandler ch = ErrorLimitFilter.wrap(validator.getContentHandler(), veh, true);
     DTDHandler dh = validator.getDTDHandler();
 
+    long start = System.nanoTime();
     parse(in, reh, ch, dh, schemaPath);
-    lastActive = System.currentTimeMillis();
+    Metrics.PARSE.recordSince(start);
     validator.reset();
+    validatorPool.release(entry);
+  }
+
+  /**
+   * Validates a document against the schemas of several drivers with a single parse, which feeds its SAX
+   * events to a validator of each driver in turn. Well-formedness errors are reported once to reh; the
+   * validation errors of each schema go to its own handler in vehs. A validator whose handler has
+   * reached its error limit gets no further events while the others go on.
+   */
+  public static void runValidators(List<Driver> drivers, List<ErrorPrintHandler> vehs, InputSource in,
+                                   ErrorPrintHandler reh, String schemaPath) {
+    List<InstancePool.Entry<Validator>> entries = new ArrayList<InstancePool.Entry<Validator>>(drivers.size());
+    ContentHandler ch = null;
+    DTDHandler dh = null;
+    for (int i = 0; i < drivers.size(); i++) {
+      InstancePool.Entry<Validator> entry = drivers.get(i).validatorPool.acquire(vehs.get(i));
+      entries.add(entry);
+      Validator validator = entry.getInstance();
+      ContentHandler validatorCh = ErrorLimitFilter.wrap(validator.getContentHandler(), vehs.get(i), false);
+      ch = ch == null ? validatorCh : new ForkContentHandler(ch, validatorCh);
+      DTDHandler validatorDh = validator.getDTDHandler();
+      if (validatorDh != null) {
+        dh = dh == null ? validatorDh : new ForkDTDHandler(dh, validatorDh);
+      }
+    }
+
+    long start = System.nanoTime();
+    drivers.get(0).parse(in, reh, ch, dh, schemaPath);
+    Metrics.PARSE.recordSince(start);
+
+    for (int i = 0; i < drivers.size(); i++) {
+      entries.get(i).getInstance().reset();
+      drivers.get(i).validatorPool.release(entries.get(i));
+    }
   }
 
-  private long getLastActive() {
-    return lastActive;
+  /**
+   * Returns true if the schema's validators can resume validation from checkpoints.
+   */
+  public boolean isResumable() {
+    return schema instanceof ResumableSchema;
   }
 
-  @Override
-  public int compareTo(Object obj) {
-    long objLastActive = ((Driver) obj).getLastActive();
-    if (this.lastActive > objLastActive) return 1;
-    if (this.lastActive > objLastActive) return -1;
-    return 0;
+  /**
+   * Validates a UTF-8 document, the first length bytes of the array, after an edit starting at the byte
+   * offset editStart. If checkpoints of
+   * an earlier version of the document have been recorded before the edit, validation is resumed from
+   * the last one whose document prefix is unchanged; otherwise the whole document is validated. New
+   * checkpoints are recorded in both cases, unless validation gets stopped by veh's error limit.
+   */
+  public void runResumableValidator(byte[] bytes, int length, int editStart, ErrorPrintHandler veh,
+                                    ErrorPrintHandler reh, String xmlPath, String schemaPath) {
+    RecordingErrorPrintHandler recordingVeh = new RecordingErrorPrintHandler(veh);
+    InstancePool.Entry<ResumableValidator> entry = resumableValidatorPool.acquire(recordingVeh);
+    ResumableValidator validator = entry.getInstance();
+
+    long start = System.nanoTime();
+    parseResumable(bytes, length, editStart, validator, validator.getContentHandler(), validator.getDTDHandler(),
+        recordingVeh, veh, reh, validationCheckpoints, xmlPath, schemaPath);
+    Metrics.PARSE.recordSince(start);
+    validator.reset();
+    resumableValidatorPool.release(entry);
+  }
+
+  /**
+   * Returns the checkpoints recorded with the last validation of a document, or null if there are none.
+   */
+  Checkpoints getValidationCheckpoints(String xmlPath) {
+    return validationCheckpoints.get(xmlPath);
+  }
+
+  /**
+   * Returns the checkpoints recorded with the last suggestion request for a document, or null if there
+   * are none.
+   */
+  Checkpoints getSuggestionCheckpoints(String xmlPath) {
+    return suggestionCheckpoints.get(xmlPath);
+  }
+
+  /**
+   * Parses a document, resuming from a checkpoint if possible, and records new checkpoints. If
+   * limitEh, the handler behind recordingEh, has an error limit, the parse gets aborted when the limit
+   * is reached; the checkpoints of the aborted parse are not kept.
+   */
+  private void parseResumable(byte[] bytes, int length, int editStart, Resumable resumable, ContentHandler handler,
+                              DTDHandler dh, RecordingErrorPrintHandler recordingEh, ErrorPrintHandler limitEh,
+                              ErrorPrintHandler reh, Map<String, Checkpoints> checkpoints, String xmlPath,
+                              String schemaPath) {
+    Checkpoints previous = checkpoints.get(xmlPath);
+    Checkpoint checkpoint = previous == null ? null : previous.find(bytes, length, editStart);
+
+    CheckpointRecorder recorder;
+    InputSource in;
+    ContentHandler ch;
+    ErrorPrintHandler eh;
+
+    // the parser's diagnostics before a checkpoint have to be reported again as well when resuming
+    RecordingErrorPrintHandler recordingReh = new RecordingErrorPrintHandler(reh);
+
+    if (checkpoint == null) {
+      recorder = new CheckpointRecorder(handler, resumable, recordingEh, recordingReh, bytes, length);
+      in = new InputSource(new ByteArrayInputStream(bytes, 0, length));
+      ch = recorder;
+      eh = recordingReh;
+    } else {
+      recordingEh.replay(previous.getDiagnostics(checkpoint));
+      recordingReh.replay(previous.getReaderDiagnostics(checkpoint));
+      resumable.restoreState(checkpoint.getState());
+      recorder = new CheckpointRecorder(handler, resumable, recordingEh, recordingReh, bytes, length,
+          previous, checkpoint);
+      ResumeFilter filter = new ResumeFilter(recorder, checkpoint);
+      in = filter.createInputSource(bytes, length);
+      ch = filter;
+      eh = filter.translate(recordingReh);
+    }
+
+    in.setEncoding("UTF-8");
+    in.setSystemId(xmlPath);
+
+    ContentHandler limitedCh = ErrorLimitFilter.wrap(ch, limitEh, true);
+    parse(in, eh, limitedCh, dh, schemaPath);
+    if (!ErrorLimitFilter.isLimitReached(limitEh)) {
+      checkpoints.put(xmlPath, recorder.getCheckpoints());
+    }
   }
 }
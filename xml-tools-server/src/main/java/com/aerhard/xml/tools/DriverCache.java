@@ -1,34 +1,493 @@
 package com.aerhard.xml.tools;
 
+import com.aerhard.xml.tools.error.BufferingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+
+import com.aerhard.xml.tools.error.SilentErrorPrintHandler;
+
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Cache of the Drivers of compiled schemas.
+ *
+ * Entries are kept in access order, so lookups, insertions and evictions take constant time. The cache
+ * is bounded by the number of entries and optionally by the sum of the Drivers' weights, i.e. their
+ * estimated memory footprints in bytes; the least recently used entries get evicted first. An entry
+ * which is heavier than the whole budget is kept until the next entry gets added. Entries which
+ * haven't been used for longer than the maximum idle time get dropped as well.
+ *
+ * Missing Drivers are loaded only once per key: requests for a schema which is being compiled wait for
+ * the compilation to finish, and failed compilations are remembered for {@link #FAILED_LOAD_TTL}
+ * milliseconds. The problems reported while compiling get passed on to each of these requests.
+ *
+ * The files each schema has been compiled from get polled for changes every
+ * {@link #DEFAULT_WATCH_INTERVAL} milliseconds; entries whose files have changed get dropped and,
+ * if enabled, compiled again in the background. With polling disabled, the files of an entry get
+ * checked on each lookup instead.
+ */
 class DriverCache {
-  public static final ConcurrentHashMap<Integer, Driver> drivers = new ConcurrentHashMap<Integer, Driver>();
-  private static final AtomicInteger maxSize = new AtomicInteger();
 
-  public static void setMaxSize(int newMaxSize) {
-    maxSize.set(newMaxSize);
+  public static final long FAILED_LOAD_TTL = 2000;
+  public static final long DEFAULT_WATCH_INTERVAL = 2000;
+
+  private static final LinkedHashMap<SchemaKey, Entry> drivers = new LinkedHashMap<SchemaKey, Entry>(16, 0.75f, true);
+  private static final Map<SchemaKey, Load> loads = new HashMap<SchemaKey, Load>();
+
+  private static int maxSize = 0;
+  private static long maxWeight = 0;
+  private static long maxIdleTime = 0;
+
+  private static long weight = 0;
+  private static long hitCount = 0;
+  private static long missCount = 0;
+  private static long evictionCount = 0;
+  private static long expirationCount = 0;
+  private static long loadCount = 0;
+  private static long loadFailureCount = 0;
+  private static long invalidationCount = 0;
+
+  private static boolean recompileInBackground = false;
+  private static ScheduledExecutorService watcher = null;
+  private static ScheduledFuture<?> watch = null;
+  private static long watchInterval = 0;
+
+  interface Loader {
+    /**
+     * Compiles a schema, reporting problems to eh; returns null if the schema can't be compiled.
+     */
+    Driver load(ErrorPrintHandler eh);
+  }
+
+  /**
+   * Compilation of a schema, shared by all requests for the schema while it is running and, if it
+   * fails, until it is {@link #FAILED_LOAD_TTL} milliseconds old.
+   */
+  private static class Load {
+    private final BufferingErrorPrintHandler eh = new BufferingErrorPrintHandler();
+    private final FutureTask<Driver> task;
+    private long failureTime = 0;
+
+    private Load(final Loader loader) {
+      task = new FutureTask<Driver>(new Callable<Driver>() {
+        @Override
+        public Driver call() {
+          return loader.load(eh);
+        }
+      });
+    }
+
+    private boolean isFailed() {
+      return failureTime > 0;
+    }
+
+    private boolean isExpired(long now) {
+      return isFailed() && now - failureTime > FAILED_LOAD_TTL;
+    }
   }
 
-  public static void clear() {
+  private static class Entry {
+    private final Driver driver;
+    private final Loader loader;
+    private long lastAccess;
+
+    private Entry(Driver driver, Loader loader, long lastAccess) {
+      this.driver = driver;
+      this.loader = loader;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  /**
+   * Snapshot of the cache's configuration and statistics.
+   */
+  public static class Stats {
+    private final int size;
+    private final long weight;
+    private final int maxSize;
+    private final long maxWeight;
+    private final long maxIdleTime;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expirationCount;
+    private final long loadCount;
+    private final long loadFailureCount;
+    private final long invalidationCount;
+
+    private Stats(int size, long weight, int maxSize, long maxWeight, long maxIdleTime, long hitCount,
+                  long missCount, long evictionCount, long expirationCount, long loadCount,
+                  long loadFailureCount, long invalidationCount) {
+      this.size = size;
+      this.weight = weight;
+      this.maxSize = maxSize;
+      this.maxWeight = maxWeight;
+      this.maxIdleTime = maxIdleTime;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.expirationCount = expirationCount;
+      this.loadCount = loadCount;
+      this.loadFailureCount = loadFailureCount;
+      this.invalidationCount = invalidationCount;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public long getWeight() {
+      return weight;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public long getMaxWeight() {
+      return maxWeight;
+    }
+
+    public long getMaxIdleTime() {
+      return maxIdleTime;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getMissCount() {
+      return missCount;
+    }
+
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    public long getExpirationCount() {
+      return expirationCount;
+    }
+
+    public long getLoadCount() {
+      return loadCount;
+    }
+
+    public long getLoadFailureCount() {
+      return loadFailureCount;
+    }
+
+    public long getInvalidationCount() {
+      return invalidationCount;
+    }
+  }
+
+  public static synchronized void setMaxSize(int newMaxSize) {
+    maxSize = newMaxSize;
+    evict();
+  }
+
+  /**
+   * Sets the maximum sum of the Drivers' weights in bytes; 0 disables the limit.
+   */
+  public static synchronized void setMaxWeight(long newMaxWeight) {
+    maxWeight = newMaxWeight;
+    evict();
+  }
+
+  /**
+   * Sets the time in milliseconds after which unused entries expire; 0 disables expiry.
+   */
+  public static synchronized void setMaxIdleTime(long newMaxIdleTime) {
+    maxIdleTime = newMaxIdleTime;
+    evictExpired();
+  }
+
+  /**
+   * Sets the interval in milliseconds in which the files of the cached schemas get checked for
+   * changes; 0 stops polling, so that the files get checked on every lookup instead.
+   */
+  public static synchronized void setWatchInterval(long interval) {
+    if (watch != null) {
+      watch.cancel(false);
+      watch = null;
+    }
+    watchInterval = Math.max(interval, 0);
+    if (interval > 0) {
+      if (watcher == null) {
+        watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "xml-tools-schema-watcher");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+      }
+      watch = watcher.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            checkDependencies();
+          } catch (RuntimeException e) {
+            e.printStackTrace();
+          }
+        }
+      }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public static synchronized long getWatchInterval() {
+    return watchInterval;
+  }
+
+  /**
+   * Sets whether schemas dropped because their files have changed get compiled again right away.
+   */
+  public static synchronized void setRecompileInBackground(boolean recompile) {
+    recompileInBackground = recompile;
+  }
+
+  public static synchronized Driver get(SchemaKey key) {
+    Entry entry = drivers.get(key);
+    long now = System.currentTimeMillis();
+    if (entry != null && isExpired(entry, now)) {
+      remove(key);
+      expirationCount++;
+      entry = null;
+    }
+    if (entry != null && watch == null && entry.driver.getDependencies().isModified()) {
+      remove(key);
+      invalidationCount++;
+      entry = null;
+    }
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    entry.lastAccess = now;
+    return entry.driver;
+  }
+
+  /**
+   * Returns the Driver for a key, loading it with the loader if it isn't cached and no other request
+   * is loading it already. Problems reported while loading the Driver are passed to eh; returns null
+   * if the Driver couldn't be loaded.
+   */
+  public static Driver get(SchemaKey key, ErrorPrintHandler eh, Loader loader) {
+    Load load;
+    boolean isLoader = false;
+
+    synchronized (DriverCache.class) {
+      Driver driver = get(key);
+      if (driver != null) {
+        return driver;
+      }
+      load = loads.get(key);
+      if (load != null && load.isExpired(System.currentTimeMillis())) {
+        loads.remove(key);
+        load = null;
+      }
+      if (load == null) {
+        load = new Load(loader);
+        loads.put(key, load);
+        loadCount++;
+        isLoader = true;
+      }
+    }
+
+    if (isLoader) {
+      load.task.run();
+    }
+
+    Driver driver = null;
+    try {
+      driver = load.task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      eh.printException(e.getCause());
+    }
+
+    if (isLoader) {
+      synchronized (DriverCache.class) {
+        if (driver == null) {
+          load.failureTime = System.currentTimeMillis();
+          loadFailureCount++;
+        } else {
+          loads.remove(key);
+          put(key, driver, loader);
+        }
+      }
+    }
+
+    load.eh.replay(eh);
+    return driver;
+  }
+
+  public static synchronized void put(SchemaKey key, Driver driver) {
+    put(key, driver, null);
+  }
+
+  private static void put(SchemaKey key, Driver driver, Loader loader) {
+    Entry previous = drivers.put(key, new Entry(driver, loader, System.currentTimeMillis()));
+    if (previous != null) {
+      weight -= previous.driver.getWeight();
+    }
+    weight += driver.getWeight();
+    evict();
+  }
+
+  public static synchronized void clear() {
     drivers.clear();
+    SchemaKey.clearCanonicalKeys();
+    weight = 0;
+    removeFailedLoads(Long.MAX_VALUE);
   }
 
-  public static void adjustSize() {
-   int surplusDriverCount = drivers.size() - maxSize.get();
-    if (surplusDriverCount > 0) {
-      Collection<Driver> drivers = DriverCache.drivers.values();
-      List<Driver> driverList = new ArrayList<Driver>(drivers);
-      Collections.sort(driverList);
-      List<Driver> surplusDrivers =
-          driverList.subList(0, surplusDriverCount);
-      DriverCache.drivers.values().removeAll(surplusDrivers);
+  /**
+   * Removes the entries which haven't been used for longer than the maximum idle time. Since entries
+   * are kept in access order, only the expired entries and the first live one get visited.
+   */
+  public static synchronized void evictExpired() {
+    long now = System.currentTimeMillis();
+    if (!loads.isEmpty()) {
+      removeFailedLoads(now);
+    }
+    if (maxIdleTime <= 0) {
+      return;
+    }
+    Iterator<Entry> it = drivers.values().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      if (!isExpired(entry, now)) {
+        break;
+      }
+      it.remove();
+      weight -= entry.driver.getWeight();
+      expirationCount++;
+    }
+  }
+
+  /**
+   * Drops the entries whose schema files have changed since they have been compiled and, if enabled,
+   * compiles them again. The files get checked without holding the cache's lock.
+   */
+  static void checkDependencies() {
+    List<SchemaKey> keys;
+    List<Entry> entries;
+    synchronized (DriverCache.class) {
+      keys = new ArrayList<SchemaKey>(drivers.keySet());
+      entries = new ArrayList<Entry>(drivers.values());
+    }
+
+    List<SchemaKey> modifiedKeys = new ArrayList<SchemaKey>();
+    List<Entry> modifiedEntries = new ArrayList<Entry>();
+    for (int i = 0; i < keys.size(); i++) {
+      if (entries.get(i).driver.getDependencies().isModified()) {
+        modifiedKeys.add(keys.get(i));
+        modifiedEntries.add(entries.get(i));
+      }
+    }
+    if (modifiedKeys.isEmpty()) {
+      return;
+    }
+
+    List<SchemaKey> reloadKeys = new ArrayList<SchemaKey>();
+    List<Loader> reloadLoaders = new ArrayList<Loader>();
+    synchronized (DriverCache.class) {
+      for (int i = 0; i < modifiedKeys.size(); i++) {
+        SchemaKey key = modifiedKeys.get(i);
+        Entry entry = modifiedEntries.get(i);
+        Entry current = drivers.remove(key);
+        if (current != entry) {
+          // replaced since the files have been checked
+          if (current != null) {
+            drivers.put(key, current);
+          }
+          continue;
+        }
+        weight -= entry.driver.getWeight();
+        invalidationCount++;
+        if (recompileInBackground && entry.loader != null) {
+          reloadKeys.add(key);
+          reloadLoaders.add(entry.loader);
+        }
+      }
+    }
+
+    for (int i = 0; i < reloadKeys.size(); i++) {
+      SchemaKey key = reloadKeys.get(i);
+      boolean isCached;
+      synchronized (DriverCache.class) {
+        isCached = drivers.containsKey(key);
+      }
+      if (!isCached) {
+        get(key, new SilentErrorPrintHandler(), reloadLoaders.get(i));
+      }
     }
   }
 
+  /**
+   * Returns a snapshot of the cached drivers, least recently used first.
+   */
+  public static synchronized Map<SchemaKey, Driver> getDrivers() {
+    Map<SchemaKey, Driver> result = new LinkedHashMap<SchemaKey, Driver>();
+    for (Map.Entry<SchemaKey, Entry> entry : drivers.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().driver);
+    }
+    return result;
+  }
+
+  public static synchronized Stats getStats() {
+    return new Stats(drivers.size(), weight, maxSize, maxWeight, maxIdleTime, hitCount, missCount,
+        evictionCount, expirationCount, loadCount, loadFailureCount, invalidationCount);
+  }
+
+  /**
+   * Removes failed loads which have failed before the given time; pass Long.MAX_VALUE to remove all of
+   * them. Running loads are kept.
+   */
+  private static void removeFailedLoads(long now) {
+    Iterator<Load> it = loads.values().iterator();
+    while (it.hasNext()) {
+      Load load = it.next();
+      if (load.isFailed() && (now == Long.MAX_VALUE || load.isExpired(now))) {
+        it.remove();
+      }
+    }
+  }
+
+  private static boolean isExpired(Entry entry, long now) {
+    return maxIdleTime > 0 && now - entry.lastAccess > maxIdleTime;
+  }
+
+  private static void remove(SchemaKey key) {
+    Entry entry = drivers.remove(key);
+    if (entry != null) {
+      weight -= entry.driver.getWeight();
+    }
+  }
+
+  private static void evict() {
+    Iterator<Map.Entry<SchemaKey, Entry>> it = drivers.entrySet().iterator();
+    while (it.hasNext() && (drivers.size() > maxSize || (maxWeight > 0 && weight > maxWeight && drivers.size() > 1))) {
+      Entry entry = it.next().getValue();
+      it.remove();
+      weight -= entry.driver.getWeight();
+      evictionCount++;
+    }
+  }
 }
@@ -0,0 +1,131 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Stops the validation of a document once the validator's error handler has got as many errors as
+ * the client wants to see.
+ *
+ * The filter passes the parser's events on to the validator until the handler's limit is reached.
+ * After that, it either drops them, so that a parse shared with the validators of other schemas goes
+ * on without any more work for this one, or aborts the parse with a {@link LimitReachedException}.
+ */
+class ErrorLimitFilter implements ContentHandler {
+
+  private final ContentHandler handler;
+  private final AccumulatingErrorPrintHandler eh;
+  private final boolean abort;
+
+  private ErrorLimitFilter(ContentHandler handler, AccumulatingErrorPrintHandler eh, boolean abort) {
+    this.handler = handler;
+    this.eh = eh;
+    this.abort = abort;
+  }
+
+  /**
+   * Returns the content handler wrapped in a filter if the error handler has a limit, otherwise the
+   * content handler itself.
+   */
+  public static ContentHandler wrap(ContentHandler handler, ErrorPrintHandler eh, boolean abort) {
+    if (handler != null && eh instanceof AccumulatingErrorPrintHandler &&
+        ((AccumulatingErrorPrintHandler) eh).getMaxErrors() > 0) {
+      return new ErrorLimitFilter(handler, (AccumulatingErrorPrintHandler) eh, abort);
+    }
+    return handler;
+  }
+
+  public static boolean isLimitReached(ErrorPrintHandler eh) {
+    return eh instanceof AccumulatingErrorPrintHandler && ((AccumulatingErrorPrintHandler) eh).isLimitReached();
+  }
+
+  /**
+   * Returns true if events may be passed on; throws if the parse should be aborted.
+   */
+  private boolean pass() throws SAXException {
+    if (!eh.isLimitReached()) {
+      return true;
+    }
+    if (abort) {
+      throw new LimitReachedException();
+    }
+    return false;
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    handler.setDocumentLocator(locator);
+  }
+
+  public void startDocument() throws SAXException {
+    if (pass()) {
+      handler.startDocument();
+    }
+  }
+
+  public void endDocument() throws SAXException {
+    if (pass()) {
+      handler.endDocument();
+    }
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    if (pass()) {
+      handler.startPrefixMapping(prefix, uri);
+    }
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    if (pass()) {
+      handler.endPrefixMapping(prefix);
+    }
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    if (pass()) {
+      handler.startElement(uri, localName, qName, atts);
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    if (pass()) {
+      handler.endElement(uri, localName, qName);
+    }
+  }
+
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    if (pass()) {
+      handler.characters(ch, start, length);
+    }
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    if (pass()) {
+      handler.ignorableWhitespace(ch, start, length);
+    }
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    if (pass()) {
+      handler.processingInstruction(target, data);
+    }
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    if (pass()) {
+      handler.skippedEntity(name);
+    }
+  }
+
+  /**
+   * Thrown to abort a parse after the error limit has been reached; not an error of the document.
+   */
+  static class LimitReachedException extends SAXException {
+    public LimitReachedException() {
+      super("error limit reached");
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.aerhard.xml.tools;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Persistent connection using the length-prefixed framed protocol.
+ *
+ * The client starts the connection with the four bytes of {@link #MAGIC} and then sends any number of
+ * request frames without waiting for responses:
+ *
+ * <pre>
+ *   int    request id
+ *   string command (V, A, C, S, T or M)
+ *   int    header count
+ *   string header (repeated header count times, same headers as in the legacy protocol)
+ *   int    body length
+ *   byte[] body
+ * </pre>
+ *
+ * Every request is answered with a response frame carrying the id of the request. Responses are sent
+ * as soon as their request is completed, so they can arrive in a different order than the requests:
+ *
+ * <pre>
+ *   int    request id
+ *   byte   status ({@link #STATUS_OK}, {@link #STATUS_REJECTED} or {@link #STATUS_ERROR})
+ *   int    payload length
+ *   byte[] payload
+ * </pre>
+ *
+ * With {@link #STATUS_OK} and {@link #STATUS_REJECTED}, the payload is the same content a legacy
+ * response would have. With {@link #STATUS_ERROR}, the payload is a string with the error message.
+ *
+ * Ints are big-endian, strings are an int byte length followed by UTF-8 bytes. The connection ends when
+ * the client closes its output; pending responses are sent before the socket gets closed.
+ */
+class FramedConnection implements Runnable {
+  public static final byte[] MAGIC = {'X', 'T', 'P', '1'};
+
+  public static final byte STATUS_OK = 0;
+  public static final byte STATUS_REJECTED = 1;
+  public static final byte STATUS_ERROR = 2;
+
+  private static final int MAX_HEADER_COUNT = 1024;
+  private static final int MAX_STRING_LENGTH = 65536;
+  private static final String CHARSET = "UTF-8";
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final RequestExecutor executor;
+  private final RequestProcessor processor;
+  private int pendingResponseCount = 0;
+
+  public FramedConnection(Socket socket, InputStream is, RequestExecutor executor, RequestProcessor processor)
+      throws IOException {
+    this.socket = socket;
+    this.in = new DataInputStream(is);
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    this.executor = executor;
+    this.processor = processor;
+  }
+
+  /**
+   * Checks if the stream starts with {@link #MAGIC}. The magic bytes are consumed if present, otherwise
+   * the stream is reset to its start. The stream must support mark/reset.
+   */
+  public static boolean sniff(InputStream is) throws IOException {
+    is.mark(MAGIC.length);
+    for (byte b : MAGIC) {
+      if (is.read() != b) {
+        is.reset();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void run() {
+    try {
+      while (true) {
+        int requestId;
+        try {
+          requestId = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+
+        String command = readString();
+
+        int headerCount = in.readInt();
+        if (headerCount < 0 || headerCount > MAX_HEADER_COUNT) {
+          throw new IOException("Invalid header count " + headerCount);
+        }
+        List<String> headerLines = new ArrayList<String>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+          headerLines.add(readString());
+        }
+
+        int bodyLength = in.readInt();
+        if (bodyLength < 0) {
+          throw new IOException("Invalid body length " + bodyLength);
+        }
+        long start = System.nanoTime();
+        RequestBody body = RequestBody.read(in, bodyLength);
+        Metrics.READ.recordSince(start);
+
+        submit(requestId, command, headerLines, body);
+      }
+
+      awaitPendingResponses();
+    } catch (IOException e) {
+      e.printStackTrace();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {}
+    }
+  }
+
+  private void submit(final int requestId, final String command, final List<String> headerLines,
+                      final RequestBody body) {
+    synchronized (this) {
+      pendingResponseCount++;
+    }
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          ByteArrayOutputStream payload = new ByteArrayOutputStream();
+          byte status = STATUS_OK;
+          try {
+            processor.process(command, headerLines, body, payload);
+            body.release();
+          } catch (Exception e) {
+            e.printStackTrace();
+            status = STATUS_ERROR;
+            payload.reset();
+            writeString(payload, String.valueOf(e.getMessage()));
+          }
+          respond(requestId, status, payload.toByteArray());
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      processor.reject(command, headerLines, payload);
+      body.release();
+      respond(requestId, STATUS_REJECTED, payload.toByteArray());
+    }
+  }
+
+  private void respond(int requestId, byte status, byte[] payload) {
+    try {
+      synchronized (out) {
+        out.writeInt(requestId);
+        out.writeByte(status);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      synchronized (this) {
+        pendingResponseCount--;
+        notifyAll();
+      }
+    }
+  }
+
+  private synchronized void awaitPendingResponses() throws InterruptedException {
+    while (pendingResponseCount > 0) {
+      wait();
+    }
+  }
+
+  private String readString() throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > MAX_STRING_LENGTH) {
+      throw new IOException("Invalid string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, CHARSET);
+  }
+
+  private static void writeString(ByteArrayOutputStream os, String value) {
+    try {
+      byte[] bytes = value.getBytes(CHARSET);
+      DataOutputStream dos = new DataOutputStream(os);
+      dos.writeInt(bytes.length);
+      dos.write(bytes);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
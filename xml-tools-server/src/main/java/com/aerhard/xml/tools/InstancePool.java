@@ -0,0 +1,86 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.DelegatingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.ValidateProperty;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool of validators or suggesters created from the same schema.
+ *
+ * Each instance is created with a {@link DelegatingErrorPrintHandler} as its error handler, which gets
+ * bound to the error handler of the request for as long as the instance is checked out. Instances must
+ * be reset before they are released; instances which have been used for a failed request should not be
+ * released at all.
+ */
+class InstancePool<T> {
+
+  public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+  interface Factory<T> {
+    T create(PropertyMap properties);
+  }
+
+  static class Entry<T> {
+    private final T instance;
+    private final DelegatingErrorPrintHandler eh;
+
+    private Entry(T instance, DelegatingErrorPrintHandler eh) {
+      this.instance = instance;
+      this.eh = eh;
+    }
+
+    public T getInstance() {
+      return instance;
+    }
+  }
+
+  private final PropertyMap properties;
+  private final Factory<T> factory;
+  private final int maxIdle;
+  private final Deque<Entry<T>> idle = new ArrayDeque<Entry<T>>();
+
+  public InstancePool(PropertyMap properties, Factory<T> factory) {
+    this(properties, factory, DEFAULT_MAX_IDLE);
+  }
+
+  public InstancePool(PropertyMap properties, Factory<T> factory, int maxIdle) {
+    this.properties = properties;
+    this.factory = factory;
+    this.maxIdle = maxIdle;
+  }
+
+  public Entry<T> acquire(ErrorPrintHandler eh) {
+    Entry<T> entry;
+    synchronized (idle) {
+      entry = idle.pollFirst();
+    }
+    if (entry == null) {
+      DelegatingErrorPrintHandler delegatingEh = new DelegatingErrorPrintHandler();
+      PropertyMapBuilder builder = new PropertyMapBuilder(properties);
+      builder.put(ValidateProperty.ERROR_HANDLER, delegatingEh);
+      entry = new Entry<T>(factory.create(builder.toPropertyMap()), delegatingEh);
+    }
+    entry.eh.setDelegate(eh);
+    return entry;
+  }
+
+  public void release(Entry<T> entry) {
+    entry.eh.setDelegate(null);
+    synchronized (idle) {
+      if (idle.size() < maxIdle) {
+        idle.addFirst(entry);
+      }
+    }
+  }
+
+  public int getIdleCount() {
+    synchronized (idle) {
+      return idle.size();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.aerhard.xml.tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in microseconds.
+ *
+ * Durations are counted in buckets of logarithmic width: below {@link #SUB_BUCKET_COUNT} microseconds
+ * every value has its own bucket, above that every power of two is divided into
+ * {@link #SUB_BUCKET_COUNT} buckets. Percentiles are reported as the upper bound of their bucket (but
+ * not above the maximum), which is at most 25% higher than the exact value. Recording a duration
+ * takes a few atomic increments and never blocks, so it can be done on every request.
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records the time passed since startNanos, a value of {@link System#nanoTime()}.
+   */
+  public void recordSince(long startNanos) {
+    record((System.nanoTime() - startNanos) / 1000);
+  }
+
+  public void record(long micros) {
+    if (micros < 0) {
+      micros = 0;
+    }
+    buckets.incrementAndGet(getBucket(micros));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+    long currentMax = max.get();
+    while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+      currentMax = max.get();
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public long getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : sum.get() / n;
+  }
+
+  /**
+   * Returns the duration in microseconds below which the given fraction of the recorded durations
+   * lie, or 0 if nothing has been recorded.
+   */
+  public long getPercentile(double fraction) {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(getUpperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  static int getBucket(long micros) {
+    if (micros < SUB_BUCKET_COUNT) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKET_COUNT - 1;
+    }
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return SUB_BUCKET_COUNT * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+  }
+
+  static long getUpperBound(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKET_COUNT - 1;
+    int subBucket = bucket % SUB_BUCKET_COUNT;
+    return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+  }
+}
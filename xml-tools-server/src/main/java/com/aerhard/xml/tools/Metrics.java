@@ -0,0 +1,189 @@
+package com.aerhard.xml.tools;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request and phase timings of the server, reported with the {@link Constants#COMMAND_METRICS} command.
+ *
+ * Request latencies are kept per command and schema types, e.g. <code>V rng+sch.iso</code>; they
+ * measure the processing of a request from the end of reading its body to the end of writing its
+ * response. Each schema type is listed once in a fixed order, and unknown commands and schema types
+ * are counted as <code>other</code>, so the number of latency histograms stays bounded whatever
+ * clients send. The phases split that time further:
+ * <ul>
+ *   <li>{@link #READ}: reading a request body from the socket</li>
+ *   <li>{@link #SCHEMA}: getting a schema's Driver from the {@link DriverCache}, including waiting for
+ *   its compilation</li>
+ *   <li>{@link #COMPILE}: compiling a schema</li>
+ *   <li>{@link #PARSE}: parsing a document and validating it or feeding its head to a suggester</li>
+ *   <li>{@link #SUGGEST}: building, filtering and sorting suggestions</li>
+ *   <li>{@link #WRITE}: serializing and writing a response</li>
+ * </ul>
+ *
+ * All durations are in microseconds. Recording only touches atomic counters, and the histograms of
+ * the phases are fixed, so instrumenting the request path doesn't add locking.
+ */
+class Metrics {
+  public static final LatencyHistogram READ = new LatencyHistogram();
+  public static final LatencyHistogram SCHEMA = new LatencyHistogram();
+  public static final LatencyHistogram COMPILE = new LatencyHistogram();
+  public static final LatencyHistogram PARSE = new LatencyHistogram();
+  public static final LatencyHistogram SUGGEST = new LatencyHistogram();
+  public static final LatencyHistogram WRITE = new LatencyHistogram();
+
+  static final String OTHER = "other";
+
+  private static final List<String> COMMANDS = Arrays.asList(Constants.COMMAND_AUTO_COMPLETE,
+      Constants.COMMAND_VALIDATE, Constants.COMMAND_CLEAR_CACHE, Constants.COMMAND_SET_MAX_CACHE_SIZE,
+      Constants.COMMAND_CACHE_STATS, Constants.COMMAND_METRICS);
+  private static final List<String> SCHEMA_TYPES = Arrays.asList(Constants.SCHEMA_TYPE_NONE,
+      Constants.SCHEMA_TYPE_DTD, Constants.SCHEMA_TYPE_RNG, Constants.SCHEMA_TYPE_RNC, Constants.SCHEMA_TYPE_XSD,
+      Constants.SCHEMA_TYPE_SCH_15, Constants.SCHEMA_TYPE_SCH_ISO);
+
+  private static final long START_TIME = System.currentTimeMillis();
+  private static final ConcurrentMap<String, LatencyHistogram> requests =
+      new ConcurrentHashMap<String, LatencyHistogram>();
+  private static final AtomicLong rejectedCount = new AtomicLong();
+
+  private Metrics() {
+  }
+
+  /**
+   * Records the latency of a request started at startNanos, a value of {@link System#nanoTime()}.
+   */
+  public static void recordRequest(String command, List<String> schemaTypes, long startNanos) {
+    String key = getRequestKey(command, schemaTypes);
+    LatencyHistogram histogram = requests.get(key);
+    if (histogram == null) {
+      LatencyHistogram newHistogram = new LatencyHistogram();
+      histogram = requests.putIfAbsent(key, newHistogram);
+      if (histogram == null) {
+        histogram = newHistogram;
+      }
+    }
+    histogram.recordSince(startNanos);
+  }
+
+  /**
+   * Returns the key of the latency histogram of a request; schemaTypes is null for commands without
+   * schemas.
+   */
+  static String getRequestKey(String command, List<String> schemaTypes) {
+    if (!COMMANDS.contains(command)) {
+      return OTHER;
+    }
+    if (schemaTypes == null) {
+      return command;
+    }
+    boolean[] present = new boolean[SCHEMA_TYPES.size()];
+    boolean other = false;
+    for (String schemaType : schemaTypes) {
+      int index = SCHEMA_TYPES.indexOf(schemaType);
+      if (index == -1) {
+        other = true;
+      } else {
+        present[index] = true;
+      }
+    }
+    StringBuilder sb = new StringBuilder(command);
+    char separator = ' ';
+    for (int i = 0; i < present.length; i++) {
+      if (present[i]) {
+        sb.append(separator).append(SCHEMA_TYPES.get(i));
+        separator = '+';
+      }
+    }
+    if (other) {
+      sb.append(separator).append(OTHER);
+    }
+    return sb.toString();
+  }
+
+  public static void recordRejection() {
+    rejectedCount.incrementAndGet();
+  }
+
+  /**
+   * Returns the metrics together with the state of the cache and the executor.
+   */
+  public static JSONObject toJson(RequestExecutor executor) {
+    JSONObject json = new JSONObject();
+    json.put("uptime", System.currentTimeMillis() - START_TIME);
+
+    JSONObject requestsJson = new JSONObject();
+    for (Map.Entry<String, LatencyHistogram> entry : requests.entrySet()) {
+      requestsJson.put(entry.getKey(), toJson(entry.getValue()));
+    }
+    json.put("requests", requestsJson);
+    json.put("rejected", rejectedCount.get());
+
+    JSONObject phases = new JSONObject();
+    phases.put("read", toJson(READ));
+    phases.put("schema", toJson(SCHEMA));
+    phases.put("compile", toJson(COMPILE));
+    phases.put("parse", toJson(PARSE));
+    phases.put("suggest", toJson(SUGGEST));
+    phases.put("write", toJson(WRITE));
+    json.put("phases", phases);
+
+    json.put("cache", toJson(DriverCache.getStats()));
+
+    JSONArray schemas = new JSONArray();
+    for (Map.Entry<SchemaKey, Driver> entry : DriverCache.getDrivers().entrySet()) {
+      JSONObject schema = new JSONObject();
+      schema.put("type", entry.getKey().getType());
+      schema.put("path", entry.getKey().getPath());
+      schema.put("compileTime", entry.getValue().getCompileTime());
+      schema.put("weight", entry.getValue().getWeight());
+      schemas.put(schema);
+    }
+    json.put("schemas", schemas);
+
+    JSONObject executorJson = new JSONObject();
+    executorJson.put("type", executor.getType());
+    executorJson.put("maxThreads", executor.getMaxThreads());
+    executorJson.put("queueDepth", executor.getQueueDepth());
+    executorJson.put("activeRequests", executor.getActiveRequestCount());
+    executorJson.put("queuedRequests", executor.getQueuedRequestCount());
+    executorJson.put("activeTasks", executor.getActiveTaskCount());
+    json.put("executor", executorJson);
+
+    return json;
+  }
+
+  public static JSONObject toJson(DriverCache.Stats stats) {
+    JSONObject json = new JSONObject();
+    json.put("size", stats.getSize());
+    json.put("weight", stats.getWeight());
+    json.put("maxSize", stats.getMaxSize());
+    json.put("maxWeight", stats.getMaxWeight());
+    json.put("maxIdleTime", stats.getMaxIdleTime());
+    json.put("hits", stats.getHitCount());
+    json.put("misses", stats.getMissCount());
+    json.put("evictions", stats.getEvictionCount());
+    json.put("expirations", stats.getExpirationCount());
+    json.put("loads", stats.getLoadCount());
+    json.put("loadFailures", stats.getLoadFailureCount());
+    json.put("invalidations", stats.getInvalidationCount());
+    return json;
+  }
+
+  private static JSONObject toJson(LatencyHistogram histogram) {
+    JSONObject json = new JSONObject();
+    json.put("count", histogram.getCount());
+    json.put("mean", histogram.getMean());
+    json.put("p50", histogram.getPercentile(0.5));
+    json.put("p95", histogram.getPercentile(0.95));
+    json.put("p99", histogram.getPercentile(0.99));
+    json.put("max", histogram.getMax());
+    return json;
+  }
+}
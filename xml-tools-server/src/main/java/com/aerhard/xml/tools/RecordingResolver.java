@@ -0,0 +1,54 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.resolver.BasicResolver;
+import com.thaiopensource.resolver.Identifier;
+import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.Resolver;
+import com.thaiopensource.resolver.ResolverException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolver recording the URIs of all resources resolved or opened while a schema gets compiled, i.e. the
+ * schema files themselves and everything they include or import. Resources are resolved by the
+ * wrapped resolver, or by the {@link BasicResolver} if there is none.
+ */
+class RecordingResolver implements Resolver {
+
+  private final Resolver resolver;
+  private final Set<String> uris = new LinkedHashSet<String>();
+
+  public RecordingResolver(Resolver resolver) {
+    this.resolver = resolver == null ? BasicResolver.getInstance() : resolver;
+  }
+
+  @Override
+  public void resolve(Identifier id, Input input) throws IOException, ResolverException {
+    resolver.resolve(id, input);
+    record(input.isResolved() ? input.getUri() : BasicResolver.resolveUri(id));
+  }
+
+  @Override
+  public void open(Input input) throws IOException, ResolverException {
+    resolver.open(input);
+    record(input.getUri());
+  }
+
+  public void record(String uri) {
+    if (uri != null) {
+      synchronized (uris) {
+        uris.add(uri);
+      }
+    }
+  }
+
+  public List<String> getUris() {
+    synchronized (uris) {
+      return new ArrayList<String>(uris);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.aerhard.xml.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The document sent with a request, held in an array from the {@link BufferPool}. Only the first
+ * {@link #getLength()} bytes of the array belong to the document. The array goes back to the pool when
+ * the body gets released, so it must not be referenced after the request has been completed.
+ *
+ * Bodies are limited to {@link #MAX_LENGTH} bytes, so that a client declaring a huge length can't make
+ * the server allocate an array of that size.
+ */
+final class RequestBody {
+
+  public static final int MAX_LENGTH = 256 * 1024 * 1024;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private byte[] bytes;
+  private final int length;
+
+  private RequestBody(byte[] bytes, int length) {
+    this.bytes = bytes;
+    this.length = length;
+  }
+
+  /**
+   * Wraps an array which doesn't come from the pool.
+   */
+  public static RequestBody wrap(byte[] bytes) {
+    return new RequestBody(bytes, bytes.length);
+  }
+
+  /**
+   * Reads a body of known length.
+   */
+  public static RequestBody read(InputStream is, int length) throws IOException {
+    if (length == 0) {
+      return new RequestBody(EMPTY, 0);
+    }
+    if (length < 0 || length > MAX_LENGTH) {
+      throw new IOException("Invalid request body length " + length + ", the limit is " + MAX_LENGTH + " bytes");
+    }
+    byte[] buffer = BufferPool.acquire(length);
+    int offset = 0;
+    while (offset < length) {
+      int n = is.read(buffer, offset, length - offset);
+      if (n == -1) {
+        BufferPool.release(buffer);
+        throw new IOException("Premature end of request body, expected " + length + " bytes, got " + offset);
+      }
+      offset += n;
+    }
+    return new RequestBody(buffer, length);
+  }
+
+  /**
+   * Reads a body terminated by the end of the stream. The array grows by swapping it with one of twice
+   * the size, from the pool as long as the pool has arrays that large.
+   */
+  public static RequestBody readToEnd(InputStream is) throws IOException {
+    return readToEnd(is, MAX_LENGTH);
+  }
+
+  static RequestBody readToEnd(InputStream is, int maxLength) throws IOException {
+    byte[] buffer = BufferPool.acquire(BufferPool.MIN_POOLED_SIZE);
+    int length = 0;
+    int n;
+    while ((n = is.read(buffer, length, buffer.length - length)) != -1) {
+      length += n;
+      if (length > maxLength || length == maxLength && is.read() != -1) {
+        BufferPool.release(buffer);
+        throw new IOException("Request body exceeds the limit of " + maxLength + " bytes");
+      }
+      if (length == maxLength) {
+        break;
+      }
+      if (length == buffer.length) {
+        byte[] larger = BufferPool.acquire((int) Math.min(2L * buffer.length, maxLength));
+        System.arraycopy(buffer, 0, larger, 0, length);
+        BufferPool.release(buffer);
+        buffer = larger;
+      }
+    }
+    return new RequestBody(buffer, length);
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public InputStream createInputStream() {
+    return new ByteArrayInputStream(bytes, 0, length);
+  }
+
+  public void release() {
+    BufferPool.release(bytes);
+    bytes = null;
+  }
+}
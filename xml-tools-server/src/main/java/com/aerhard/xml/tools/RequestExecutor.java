@@ -0,0 +1,295 @@
+package com.aerhard.xml.tools;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs socket requests and the per-schema tasks they fan out to on reusable worker threads.
+ *
+ * Two executor types can be selected at startup: a bounded pool of platform threads
+ * ({@link Constants#EXECUTOR_TYPE_POOL}) or one virtual thread per request
+ * ({@link Constants#EXECUTOR_TYPE_VIRTUAL}, JDK 21+, falls back to the pool when not available).
+ * In both cases at most <code>maxThreads</code> requests are processed concurrently and at most
+ * <code>queueDepth</code> further requests wait; any request beyond that is rejected with a
+ * {@link RejectedExecutionException}.
+ *
+ * Persistent connections of the framed protocol are served on threads of their own, at most
+ * <code>maxConnections</code> at a time. Rejected requests get answered on a small, bounded set of
+ * helper threads, so that a saturated server doesn't spend its accepting thread on reading them.
+ */
+class RequestExecutor {
+  public static final int DEFAULT_MAX_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+  public static final int DEFAULT_QUEUE_DEPTH = 64;
+  public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+  private static final int REJECTION_THREADS = 2;
+  private static final int REJECTION_QUEUE_DEPTH = 16;
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private final String type;
+  private final int maxThreads;
+  private final int queueDepth;
+  private final ExecutorService requestExecutor;
+  private final ExecutorService taskExecutor;
+  private final Semaphore admitted;
+  private final Semaphore running;
+  private final ExecutorService connectionExecutor;
+  private final Semaphore connections;
+  private final ExecutorService rejectionExecutor;
+
+  private RequestExecutor(String type, int maxThreads, int queueDepth,
+                          ExecutorService requestExecutor, ExecutorService taskExecutor,
+                          Semaphore admitted, Semaphore running,
+                          ExecutorService connectionExecutor, Semaphore connections) {
+    this.type = type;
+    this.maxThreads = maxThreads;
+    this.queueDepth = queueDepth;
+    this.requestExecutor = requestExecutor;
+    this.taskExecutor = taskExecutor;
+    this.admitted = admitted;
+    this.running = running;
+    this.connectionExecutor = connectionExecutor;
+    this.connections = connections;
+
+    ThreadPoolExecutor rejectionExecutor = new ThreadPoolExecutor(REJECTION_THREADS, REJECTION_THREADS,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(REJECTION_QUEUE_DEPTH),
+        new NamedThreadFactory("xml-tools-rejection"), new ThreadPoolExecutor.AbortPolicy());
+    rejectionExecutor.allowCoreThreadTimeOut(true);
+    this.rejectionExecutor = rejectionExecutor;
+  }
+
+  public static RequestExecutor create(String type, int maxThreads, int queueDepth) {
+    return create(type, maxThreads, queueDepth, DEFAULT_MAX_CONNECTIONS);
+  }
+
+  public static RequestExecutor create(String type, int maxThreads, int queueDepth, int maxConnections) {
+    if (maxThreads < 1) {
+      throw new IllegalArgumentException("maxThreads must be positive, got " + maxThreads);
+    }
+    if (queueDepth < 0) {
+      throw new IllegalArgumentException("queueDepth must not be negative, got " + queueDepth);
+    }
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("maxConnections must be positive, got " + maxConnections);
+    }
+
+    if (Constants.EXECUTOR_TYPE_VIRTUAL.equals(type)) {
+      ExecutorService requestExecutor = newVirtualThreadPerTaskExecutor();
+      ExecutorService taskExecutor = newVirtualThreadPerTaskExecutor();
+      ExecutorService connectionExecutor = newVirtualThreadPerTaskExecutor();
+      if (requestExecutor != null && taskExecutor != null && connectionExecutor != null) {
+        return new RequestExecutor(Constants.EXECUTOR_TYPE_VIRTUAL, maxThreads, queueDepth,
+            requestExecutor, taskExecutor,
+            new Semaphore(maxThreads + queueDepth), new Semaphore(maxThreads),
+            connectionExecutor, new Semaphore(maxConnections));
+      }
+      System.err.println("Virtual threads are not available, using executor type " + Constants.EXECUTOR_TYPE_POOL);
+    } else if (!Constants.EXECUTOR_TYPE_POOL.equals(type)) {
+      throw new IllegalArgumentException("Unknown executor type " + type);
+    }
+
+    BlockingQueue<Runnable> queue = queueDepth == 0
+        ? new SynchronousQueue<Runnable>()
+        : new ArrayBlockingQueue<Runnable>(queueDepth);
+    ThreadPoolExecutor requestExecutor = new ThreadPoolExecutor(maxThreads, maxThreads,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new NamedThreadFactory("xml-tools-request"),
+        new ThreadPoolExecutor.AbortPolicy());
+    requestExecutor.allowCoreThreadTimeOut(true);
+
+    // per-schema tasks are only ever submitted by request threads which wait for their completion;
+    // running them on the submitting thread when all task threads are busy keeps the fan-out
+    // bounded and makes it impossible for requests to deadlock waiting on each other's tasks
+    ThreadPoolExecutor taskExecutor = new ThreadPoolExecutor(maxThreads, maxThreads,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        new NamedThreadFactory("xml-tools-task"), new ThreadPoolExecutor.CallerRunsPolicy());
+    taskExecutor.allowCoreThreadTimeOut(true);
+
+    ThreadPoolExecutor connectionExecutor = new ThreadPoolExecutor(0, maxConnections,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        new NamedThreadFactory("xml-tools-connection"), new ThreadPoolExecutor.AbortPolicy());
+
+    return new RequestExecutor(Constants.EXECUTOR_TYPE_POOL, maxThreads, queueDepth,
+        requestExecutor, taskExecutor, null, null, connectionExecutor, null);
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Returns the approximate number of requests being processed.
+   */
+  public int getActiveRequestCount() {
+    if (admitted == null) {
+      return ((ThreadPoolExecutor) requestExecutor).getActiveCount();
+    }
+    return maxThreads - running.availablePermits();
+  }
+
+  /**
+   * Returns the approximate number of requests waiting to be processed.
+   */
+  public int getQueuedRequestCount() {
+    if (admitted == null) {
+      return ((ThreadPoolExecutor) requestExecutor).getQueue().size();
+    }
+    return Math.max(0, maxThreads + queueDepth - admitted.availablePermits() - getActiveRequestCount());
+  }
+
+  /**
+   * Returns the approximate number of per-schema tasks running on task threads, or -1 if the executor
+   * uses virtual threads, which aren't counted.
+   */
+  public int getActiveTaskCount() {
+    if (taskExecutor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) taskExecutor).getActiveCount();
+    }
+    return -1;
+  }
+
+  /**
+   * Schedules a request for execution.
+   *
+   * @throws RejectedExecutionException when the executor is saturated or has been shut down
+   */
+  public void execute(final Runnable request) {
+    if (admitted == null) {
+      requestExecutor.execute(request);
+      return;
+    }
+
+    if (!admitted.tryAcquire()) {
+      throw new RejectedExecutionException("Request queue is full");
+    }
+    try {
+      requestExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            running.acquireUninterruptibly();
+            try {
+              request.run();
+            } finally {
+              running.release();
+            }
+          } finally {
+            admitted.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      admitted.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Serves a persistent connection on a thread of its own.
+   *
+   * @throws RejectedExecutionException when <code>maxConnections</code> connections are being served
+   */
+  public void executeConnection(Runnable connection) {
+    execute(connectionExecutor, connections, connection);
+  }
+
+  /**
+   * Answers a rejected request on one of the helper threads.
+   *
+   * @throws RejectedExecutionException when the helper threads are busy with other rejected requests
+   */
+  public void executeRejection(Runnable rejection) {
+    rejectionExecutor.execute(rejection);
+  }
+
+  /**
+   * Runs the given tasks on the task threads and waits until all of them have completed.
+   */
+  public void runAll(Collection<? extends Runnable> tasks) throws InterruptedException {
+    List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+    for (Runnable task : tasks) {
+      futures.add(taskExecutor.submit(task));
+    }
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        e.getCause().printStackTrace();
+      }
+    }
+  }
+
+  public void shutdown() {
+    requestExecutor.shutdown();
+    taskExecutor.shutdown();
+    connectionExecutor.shutdown();
+    rejectionExecutor.shutdown();
+  }
+
+  /**
+   * Runs a command on the executor, limited by the permits of the semaphore if there is one.
+   */
+  private static void execute(ExecutorService executor, final Semaphore permits, final Runnable command) {
+    if (permits == null) {
+      executor.execute(command);
+      return;
+    }
+
+    if (!permits.tryAcquire()) {
+      throw new RejectedExecutionException("Too many connections");
+    }
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            command.run();
+          } finally {
+            permits.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factoryMethod.invoke(null);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package com.aerhard.xml.tools;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Handles an accepted connection. Connections starting with {@link FramedConnection#MAGIC} are handed
+ * over to a {@link FramedConnection}; all other connections use the legacy protocol of one request per
+ * connection with the request body terminated by the end of the input stream. In the legacy protocol,
+ * the command line can give the length of the body after the command, e.g. <code>V 1024</code>, so that
+ * the body can be read into a buffer of the right size at once.
+ */
+class RequestHandler implements Runnable {
+
+  private static final int REJECTED_REQUEST_TIMEOUT = 1000;
+
+  private final Socket socket;
+  private final RequestExecutor executor;
+  private final RequestProcessor processor;
+
+  public RequestHandler(Socket socket, RequestExecutor executor) {
+    this.socket = socket;
+    this.executor = executor;
+    this.processor = new RequestProcessor(executor);
+  }
+
+  /**
+   * Answers the request without processing it, used when the executor is saturated. Reading the request
+   * can take as long as the client needs to send it, so this must not be called on the accepting
+   * thread.
+   */
+  public void reject() {
+    InputStream is = null;
+    boolean handedOver = false;
+
+    try {
+      socket.setSoTimeout(REJECTED_REQUEST_TIMEOUT);
+      is = new BufferedInputStream(socket.getInputStream());
+
+      if (FramedConnection.sniff(is)) {
+        // individual requests on the connection get rejected while the server is saturated
+        socket.setSoTimeout(0);
+        startFramedConnection(is);
+        handedOver = true;
+        return;
+      }
+
+      List<String> headerLines = readHeaders(is);
+      if (headerLines.isEmpty()) return;
+
+      final String command = getCommand(headerLines.get(0));
+      headerLines.remove(0);
+
+      waitForEndOfInput(is);
+      processor.reject(command, headerLines, socket.getOutputStream());
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (!handedOver) {
+        try {
+          socket.close();
+        } catch (IOException e) {}
+      }
+    }
+  }
+
+  /**
+   * Closes the connection without answering the request, used when even the rejection of requests
+   * can't keep up.
+   */
+  public void close() {
+    try {
+      socket.close();
+    } catch (IOException e) {}
+  }
+
+  public void run() {
+    InputStream is = null;
+    boolean handedOver = false;
+
+    try {
+      is = new BufferedInputStream(socket.getInputStream());
+
+      if (FramedConnection.sniff(is)) {
+        startFramedConnection(is);
+        handedOver = true;
+        return;
+      }
+
+      List<String> headerLines = readHeaders(is);
+      if (headerLines.isEmpty()) return;
+
+      final String command = getCommand(headerLines.get(0));
+      int bodyLength = getBodyLength(headerLines.get(0));
+      headerLines.remove(0);
+
+      RequestBody body = null;
+      if (RequestProcessor.hasBody(command)) {
+        long start = System.nanoTime();
+        body = bodyLength < 0 ? RequestBody.readToEnd(is) : RequestBody.read(is, bodyLength);
+        Metrics.READ.recordSince(start);
+      }
+      processor.process(command, headerLines, body, socket.getOutputStream());
+      if (body != null) {
+        body.release();
+      }
+    } catch (SocketException e) {
+      e.printStackTrace();
+    } catch (IOException e) {
+      e.printStackTrace();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } finally {
+      if (!handedOver) {
+        try {
+          if (is != null) {
+            waitForEndOfInput(is);
+          }
+        } catch (IOException e) { }
+        try {
+          socket.close();
+        } catch (IOException e) {}
+      }
+    }
+  }
+
+  /**
+   * Serves a persistent connection on its own thread so that it doesn't occupy a request worker
+   * for as long as the client keeps it open. If the server has no more connections to spare, the
+   * connection gets closed right away.
+   */
+  private void startFramedConnection(InputStream is) throws IOException {
+    try {
+      executor.executeConnection(new FramedConnection(socket, is, executor, processor));
+    } catch (RejectedExecutionException e) {
+      Metrics.recordRejection();
+      System.err.println("XML Tools Server has too many connections, connection closed");
+      close();
+    }
+  }
+
+  private void waitForEndOfInput(InputStream is) throws IOException {
+    byte[] data = new byte[1024];
+    while(is.read(data) != -1) {}
+  }
+
+  private static String getCommand(String commandLine) {
+    int separatorIndex = commandLine.indexOf(' ');
+    return separatorIndex < 0 ? commandLine : commandLine.substring(0, separatorIndex);
+  }
+
+  /**
+   * Returns the body length given in the command line, or -1 if there is none.
+   */
+  private static int getBodyLength(String commandLine) throws IOException {
+    int separatorIndex = commandLine.indexOf(' ');
+    if (separatorIndex < 0) {
+      return -1;
+    }
+    try {
+      int length = Integer.parseInt(commandLine.substring(separatorIndex + 1).trim());
+      if (length < 0) {
+        throw new IOException("Invalid body length " + length);
+      }
+      return length;
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid body length in command line " + commandLine);
+    }
+  }
+
+  private List<String> readHeaders(InputStream inputStream) throws IOException {
+    int intRead;
+    List<String> headerLines = new ArrayList<String>();
+    StringBuilder sb = new StringBuilder();
+    while ((intRead = inputStream.read()) != -1) {
+      char charRead = (char) intRead;
+      if (charRead != '\n') {
+        sb.append(charRead);
+      } else {
+        if (sb.length() == 0) break;
+        sb.deleteCharAt(0);
+        headerLines.add(sb.toString());
+        sb.setLength(0);
+      }
+    }
+
+    return headerLines;
+  }
+}
@@ -0,0 +1,259 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.aerhard.xml.tools.error.SilentErrorPrintHandler;
+import com.thaiopensource.suggest.Suggestion;
+import org.xml.sax.SAXParseException;
+
+import java.io.*;
+import java.util.*;
+
+import static com.aerhard.xml.tools.Constants.*;
+
+/**
+ * Executes a single command independently of the wire protocol it was received with.
+ */
+class RequestProcessor {
+
+  private final RequestExecutor executor;
+
+  public RequestProcessor(RequestExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns true if the command expects a document in the request body.
+   */
+  public static boolean hasBody(String command) {
+    return COMMAND_VALIDATE.equals(command) || COMMAND_AUTO_COMPLETE.equals(command);
+  }
+
+  /**
+   * Executes a command. The body stays owned by the caller, which may release it once the command has
+   * been processed; it must not be released if processing has been interrupted, since tasks may still
+   * be reading it.
+   */
+  public void process(String command, List<String> headerLines, RequestBody body, OutputStream os)
+      throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    try {
+      if (COMMAND_CLEAR_CACHE.equals(command)) {
+        handleClearCacheCommand();
+      } else if (COMMAND_SET_MAX_CACHE_SIZE.equals(command)) {
+        handleMaxCacheSizeCommand(headerLines);
+      } else if (COMMAND_CACHE_STATS.equals(command)) {
+        handleCacheStatsCommand(os);
+      } else if (COMMAND_METRICS.equals(command)) {
+        handleMetricsCommand(os);
+      } else if (COMMAND_VALIDATE.equals(command)) {
+        handleValidationCommand(headerLines, body, os);
+      } else if (COMMAND_AUTO_COMPLETE.equals(command)) {
+        handleSuggestionCommand(headerLines, body, os);
+      }
+    } finally {
+      Metrics.recordRequest(command, getSchemaTypes(command, headerLines), start);
+    }
+  }
+
+  /**
+   * Returns the types of the schemas of a validation or suggestion request, or null for other commands.
+   */
+  private static List<String> getSchemaTypes(String command, List<String> headerLines) {
+    int schemaIndex;
+    if (COMMAND_VALIDATE.equals(command)) {
+      schemaIndex = 4;
+    } else if (COMMAND_AUTO_COMPLETE.equals(command)) {
+      schemaIndex = 7;
+    } else {
+      return null;
+    }
+    List<String> schemaTypes = new ArrayList<String>();
+    for (int i = schemaIndex; i < headerLines.size(); i++) {
+      schemaTypes.add(headerLines.get(i).split("\\s", 2)[0]);
+    }
+    return schemaTypes;
+  }
+
+  /**
+   * Writes the response of a command that has been rejected because the server is saturated.
+   */
+  public void reject(String command, List<String> headerLines, OutputStream os) {
+    Metrics.recordRejection();
+    String message = "XML Tools Server is busy, request rejected";
+
+    if (COMMAND_VALIDATE.equals(command)) {
+      String xmlPath = headerLines.size() > 2 ? headerLines.get(2) : "";
+      AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(SCHEMA_TYPE_NONE);
+      eh.print(xmlPath + ": fatal: " + message);
+      writeMessagesToStream(eh.getMessages(), os);
+    } else if (COMMAND_AUTO_COMPLETE.equals(command)) {
+      String options = headerLines.size() > 3 ? headerLines.get(3) : "";
+      writeSuggestionsToStream(Collections.<Suggestion>emptyList(), new RequestProperties("", options, ""), os);
+    } else {
+      System.err.println(message);
+    }
+  }
+
+  private void handleClearCacheCommand() {
+    DriverCache.clear();
+    Stylesheets.clearResults();
+  }
+
+  /**
+   * Sets the maximum number of cached schemas and optionally the maximum sum of their estimated sizes in
+   * bytes, the time in milliseconds after which unused schemas get dropped (0 for no limit), the
+   * interval in milliseconds in which schema files get checked for changes (0 to check them on every
+   * lookup instead) and whether changed schemas get compiled again in the background (true or false).
+   */
+  private void handleMaxCacheSizeCommand(List<String> headerLines) {
+    final String maxDriverCacheSizeString = headerLines.get(0);
+    int maxDriverCacheSizeInt = Integer.parseInt(maxDriverCacheSizeString);
+    DriverCache.setMaxSize(maxDriverCacheSizeInt);
+
+    if (headerLines.size() > 1) {
+      DriverCache.setMaxWeight(Long.parseLong(headerLines.get(1)));
+    }
+    if (headerLines.size() > 2) {
+      DriverCache.setMaxIdleTime(Long.parseLong(headerLines.get(2)));
+    }
+    if (headerLines.size() > 3) {
+      DriverCache.setWatchInterval(Long.parseLong(headerLines.get(3)));
+    }
+    if (headerLines.size() > 4) {
+      DriverCache.setRecompileInBackground(Boolean.parseBoolean(headerLines.get(4)));
+    }
+  }
+
+  private void handleCacheStatsCommand(OutputStream os) {
+    PrintWriter pw = new PrintWriter(os, true);
+    pw.print(Metrics.toJson(DriverCache.getStats()).toString());
+    pw.close();
+  }
+
+  private void handleMetricsCommand(OutputStream os) {
+    PrintWriter pw = new PrintWriter(os, true);
+    pw.print(Metrics.toJson(executor).toString());
+    pw.close();
+  }
+
+  private void handleSuggestionCommand(List<String> headerLines, RequestBody body, OutputStream os)
+      throws IOException, InterruptedException {
+    int headerIndex = 0;
+    final String suggestionType = headerLines.get(headerIndex++);
+    final String fragment = headerLines.get(headerIndex++);
+    final String splitPointString = headerLines.get(headerIndex++);
+    final String options = headerLines.get(headerIndex++);
+    final String encoding = headerLines.get(headerIndex++);
+    final String xmlPath = headerLines.get(headerIndex++);
+    final String catalog = headerLines.get(headerIndex++);
+    final RequestProperties requestProperties = new RequestProperties(catalog, options, encoding, suggestionType, fragment);
+
+    List<? extends Suggestion> suggestions = getSuggestions(headerLines.get(headerIndex), requestProperties, xmlPath,
+        splitPointString, body);
+    if (suggestions != null) {
+      writeSuggestionsToStream(suggestions, requestProperties, os);
+    }
+
+    DriverCache.evictExpired();
+  }
+
+  private List<? extends Suggestion> getSuggestions(String schemaLine, RequestProperties requestProperties,
+                                                    String xmlPath, String splitPointString, RequestBody body) {
+    // the head is the part of the document before the split point
+    int headLength = body.getLength();
+    if (!splitPointString.isEmpty()) {
+      headLength = Math.max(0, Math.min(Integer.parseInt(splitPointString), body.getLength()));
+    }
+
+    SchemaProperties schemaProperties = new SchemaProperties(schemaLine, requestProperties);
+
+    ErrorPrintHandler eh = new SilentErrorPrintHandler();
+
+    SuggesterTask task = new SuggesterTask(schemaProperties, eh, body.getBytes(), headLength, body.getLength(), xmlPath);
+    task.run();
+
+    return task.getSuggestions();
+  }
+
+  private void handleValidationCommand(List<String> headerLines, RequestBody body, OutputStream os)
+      throws IOException, InterruptedException {
+    Set<String> messages = validate(headerLines, body);
+    writeMessagesToStream(messages, os);
+
+    DriverCache.evictExpired();
+  }
+
+  private Set<String> validate(List<String> headerLines, RequestBody body) throws IOException, InterruptedException {
+    int headerIndex = 0;
+    final String options = headerLines.get(headerIndex++);
+    final String encoding = headerLines.get(headerIndex++);
+    final String xmlPath = headerLines.get(headerIndex++);
+    final String catalog = headerLines.get(headerIndex++);
+    final RequestProperties requestProperties = new RequestProperties(catalog, options, encoding);
+
+    if (body.getLength() == 0) {
+      AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(SCHEMA_TYPE_NONE);
+      eh.printException(new SAXParseException("Premature end of file", null, xmlPath, 0, 0));
+      return eh.getMessages();
+    }
+
+    int maxErrors = requestProperties.getMaxErrors();
+    Set<AccumulatingErrorPrintHandler> vehs = new HashSet<AccumulatingErrorPrintHandler>();
+    Set<AccumulatingErrorPrintHandler> ehs = new HashSet<AccumulatingErrorPrintHandler>();
+    List<ValidationTask> tasks = new ArrayList<ValidationTask>();
+    for (; headerIndex < headerLines.size(); headerIndex++) {
+      String schemaLine = headerLines.get(headerIndex);
+      SchemaProperties schemaProperties = new SchemaProperties(schemaLine, requestProperties);
+
+      AccumulatingErrorPrintHandler veh = new AccumulatingErrorPrintHandler(schemaProperties.getType(), maxErrors);
+      vehs.add(veh);
+      ehs.add(veh);
+
+      AccumulatingErrorPrintHandler reh = new AccumulatingErrorPrintHandler(SCHEMA_TYPE_NONE);
+      ehs.add(reh);
+
+      tasks.add(new ValidationTask(schemaProperties, veh, reh, body.getBytes(), body.getLength(), xmlPath, true));
+    }
+
+    // schemas get compiled or taken from the cache concurrently; the document is then parsed only once
+    executor.runAll(tasks);
+    ValidationTask.runDeferred(tasks);
+
+    // mark results truncated by the error limit
+    for (AccumulatingErrorPrintHandler veh : vehs) {
+      if (veh.isLimitReached()) {
+        veh.print(xmlPath + ": warning: validation stopped after " + maxErrors + " errors");
+      }
+    }
+
+    Set<String> messages = new HashSet<String>();
+    for (AccumulatingErrorPrintHandler eh : ehs) {
+      messages.addAll(eh.getMessages());
+    }
+
+    return messages;
+  }
+
+  private void writeSuggestionsToStream(List<? extends Suggestion> suggestions, RequestProperties requestProperties,
+                                        OutputStream sos) {
+    long start = System.nanoTime();
+    try {
+      SuggestionWriter.write(suggestions, requestProperties, sos);
+      sos.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    Metrics.WRITE.recordSince(start);
+  }
+
+  private void writeMessagesToStream(Collection<String> messages, OutputStream sos) {
+    long start = System.nanoTime();
+    PrintWriter pw = new PrintWriter(sos, true);
+    for (String message : messages) {
+      pw.println(message);
+    }
+    pw.close();
+    Metrics.WRITE.recordSince(start);
+  }
+}
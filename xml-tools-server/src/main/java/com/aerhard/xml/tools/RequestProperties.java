@@ -2,13 +2,24 @@ package com.aerhard.xml.tools;
 
 import com.thaiopensource.util.UriOrFile;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Properties of a request. The options header starts with the option flags, which can be followed by
+ * whitespace separated <code>key=value</code> parameters, e.g. <code>wr edit=1024-1030</code>.
+ */
 public class RequestProperties {
 
+  public static final String PARAMETER_EDIT = "edit";
+  public static final String PARAMETER_MAX_ERRORS = "maxErrors";
+
   private final String catalogUri;
   private final boolean resolveSchemaPath;
   private final String suggestionType;
   private final String encoding;
   private final String fragment;
+  private final Map<String, String> parameters;
 
   public boolean shouldSuggestWildcards() { return suggestWildcards; }
   public boolean shouldSuggestNamespaceWildcard() { return suggestNamespaceWildcard; }
@@ -23,9 +34,20 @@ public class RequestProperties {
   public RequestProperties(String catalog, String optionsString, String encoding, String suggestionType, String fragment) {
     this.encoding = encoding;
     this.fragment = fragment;
-    this.suggestWildcards = optionsString.contains("w");
-    this.suggestNamespaceWildcard = optionsString.contains("n");
-    this.resolveSchemaPath = optionsString.contains("r");
+
+    String[] optionTokens = optionsString.trim().split("\\s+");
+    String flags = optionTokens[0].indexOf('=') < 0 ? optionTokens[0] : "";
+    this.suggestWildcards = flags.contains("w");
+    this.suggestNamespaceWildcard = flags.contains("n");
+    this.resolveSchemaPath = flags.contains("r");
+
+    this.parameters = new HashMap<String, String>();
+    for (int i = flags.isEmpty() ? 0 : 1; i < optionTokens.length; i++) {
+      int separatorIndex = optionTokens[i].indexOf('=');
+      if (separatorIndex > 0) {
+        parameters.put(optionTokens[i].substring(0, separatorIndex), optionTokens[i].substring(separatorIndex + 1));
+      }
+    }
 
     this.catalogUri = "".equals(catalog) ? null : UriOrFile.toUri(catalog);
     this.suggestionType = suggestionType;
@@ -40,22 +62,50 @@ public class RequestProperties {
   }
   public String getFragment() { return fragment; }
 
-  public boolean shouldResolveSchemaPath() {
-    return resolveSchemaPath;
+  public String getParameter(String key) {
+    return parameters.get(key);
   }
 
-  @Override
-  public String toString() {
-    return this.resolveSchemaPath + "\n" + this.catalogUri;
+  /**
+   * Returns the byte offset of the start of the edit made since the document has last been sent,
+   * or -1 if the client didn't send an edit range. The range is given as <code>start[-end]</code>.
+   */
+  public int getEditStart() {
+    String edit = getParameter(PARAMETER_EDIT);
+    if (edit == null) {
+      return -1;
+    }
+    int separatorIndex = edit.indexOf('-');
+    try {
+      return Integer.parseInt(separatorIndex < 0 ? edit : edit.substring(0, separatorIndex));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
   }
 
-  @Override
-  public int hashCode() {
-    return toString().hashCode();
+  /**
+   * Returns the number of errors after which the validation against a schema gets stopped, or -1 if
+   * the client didn't set a positive limit.
+   */
+  public int getMaxErrors() {
+    String maxErrors = getParameter(PARAMETER_MAX_ERRORS);
+    if (maxErrors == null) {
+      return -1;
+    }
+    try {
+      int n = Integer.parseInt(maxErrors);
+      return n > 0 ? n : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  public boolean shouldResolveSchemaPath() {
+    return resolveSchemaPath;
   }
 
   @Override
-  public boolean equals(Object obj) {
-    return obj instanceof RequestProperties && hashCode() == obj.hashCode();
+  public String toString() {
+    return this.resolveSchemaPath + "\n" + this.catalogUri;
   }
 }
@@ -0,0 +1,168 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Resumes parsing of a document at a checkpoint.
+ *
+ * The parser is fed the start tags of the elements open at the checkpoint, followed by the rest of the
+ * document. The filter drops the events of these start tags, which the restored validator has already
+ * seen, and translates the parser's positions to positions in the complete document.
+ */
+class ResumeFilter implements ContentHandler {
+
+  private final ContentHandler handler;
+  private final Checkpoint checkpoint;
+  private final String openTags;
+  private int syntheticElementCount;
+
+  public ResumeFilter(ContentHandler handler, Checkpoint checkpoint) {
+    this.handler = handler;
+    this.checkpoint = checkpoint;
+    this.openTags = checkpoint.createOpenTags();
+    this.syntheticElementCount = checkpoint.getOpenElements().size();
+  }
+
+  public InputSource createInputSource(byte[] bytes, int length) {
+    int offset = checkpoint.getOffset();
+    return new InputSource(new SequenceInputStream(
+        new ByteArrayInputStream(checkpoint.createOpenTagBytes()),
+        new ByteArrayInputStream(bytes, offset, length - offset)));
+  }
+
+  int translateLineNumber(int lineNumber) {
+    return lineNumber < 1 ? lineNumber : checkpoint.getLine() + lineNumber - 1;
+  }
+
+  int translateColumnNumber(int lineNumber, int columnNumber) {
+    return lineNumber == 1 ? checkpoint.getColumn() + columnNumber - openTags.length() - 1 : columnNumber;
+  }
+
+  SAXParseException translate(SAXParseException e) {
+    if (e instanceof TranslatedSAXParseException) {
+      // fatal errors get passed to the error handler and then rethrown by the parser
+      return e;
+    }
+    int lineNumber = e.getLineNumber();
+    SAXParseException translated = new TranslatedSAXParseException(e.getMessage(), e.getPublicId(),
+        e.getSystemId(), translateLineNumber(lineNumber), translateColumnNumber(lineNumber, e.getColumnNumber()),
+        e.getException());
+    translated.setStackTrace(e.getStackTrace());
+    return translated;
+  }
+
+  private static class TranslatedSAXParseException extends SAXParseException {
+    public TranslatedSAXParseException(String message, String publicId, String systemId, int lineNumber,
+                                       int columnNumber, Exception e) {
+      super(message, publicId, systemId, lineNumber, columnNumber, e);
+    }
+  }
+
+  /**
+   * Wraps the ErrorPrintHandler for the parser's errors so that they get reported with positions in
+   * the complete document.
+   */
+  public ErrorPrintHandler translate(final ErrorPrintHandler eh) {
+    return new ErrorPrintHandler() {
+      @Override
+      public void warning(SAXParseException e) throws SAXParseException {
+        eh.warning(translate(e));
+      }
+
+      @Override
+      public void error(SAXParseException e) {
+        eh.error(translate(e));
+      }
+
+      @Override
+      public void fatalError(SAXParseException e) throws SAXParseException {
+        eh.fatalError(translate(e));
+      }
+
+      @Override
+      public void printException(Throwable e) {
+        eh.printException(e instanceof SAXParseException ? translate((SAXParseException) e) : e);
+      }
+
+      @Override
+      public void print(String message) {
+        eh.print(message);
+      }
+    };
+  }
+
+  public void setDocumentLocator(final Locator locator) {
+    handler.setDocumentLocator(new Locator() {
+      public String getPublicId() {
+        return locator.getPublicId();
+      }
+
+      public String getSystemId() {
+        return locator.getSystemId();
+      }
+
+      public int getLineNumber() {
+        return translateLineNumber(locator.getLineNumber());
+      }
+
+      public int getColumnNumber() {
+        return translateColumnNumber(locator.getLineNumber(), locator.getColumnNumber());
+      }
+    });
+  }
+
+  public void startDocument() {
+    // the validator has been restored to a state within the document
+  }
+
+  public void endDocument() throws SAXException {
+    handler.endDocument();
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    if (syntheticElementCount == 0) {
+      handler.startPrefixMapping(prefix, uri);
+    }
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    handler.endPrefixMapping(prefix);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    if (syntheticElementCount > 0) {
+      syntheticElementCount--;
+    } else {
+      handler.startElement(uri, localName, qName, atts);
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    handler.endElement(uri, localName, qName);
+  }
+
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    handler.characters(ch, start, length);
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    handler.ignorableWhitespace(ch, start, length);
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    handler.processingInstruction(target, data);
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    handler.skippedEntity(name);
+  }
+}
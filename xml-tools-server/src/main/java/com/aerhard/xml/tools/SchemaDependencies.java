@@ -0,0 +1,79 @@
+package com.aerhard.xml.tools;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The local files a schema has been compiled from, i.e. the schema files with everything they include
+ * or import and the catalog, together with their modification times and sizes at compile time.
+ * Resources which aren't files are ignored.
+ */
+final class SchemaDependencies {
+
+  public static final SchemaDependencies NONE = new SchemaDependencies(Collections.<File>emptyList());
+
+  private final List<File> files;
+  private final long[] lastModified;
+  private final long[] lengths;
+
+  private SchemaDependencies(List<File> files) {
+    this.files = files;
+    this.lastModified = new long[files.size()];
+    this.lengths = new long[files.size()];
+    for (int i = 0; i < files.size(); i++) {
+      lastModified[i] = files.get(i).lastModified();
+      lengths[i] = files.get(i).length();
+    }
+  }
+
+  public static SchemaDependencies create(Collection<String> uris) {
+    List<File> files = new ArrayList<File>();
+    for (String uri : uris) {
+      if (uri != null && uri.startsWith("file:")) {
+        try {
+          File file = new File(new URI(uri));
+          if (!files.contains(file)) {
+            files.add(file);
+          }
+        } catch (URISyntaxException e) {
+        } catch (IllegalArgumentException e) {
+        }
+      }
+    }
+    return new SchemaDependencies(Collections.unmodifiableList(files));
+  }
+
+  public List<File> getFiles() {
+    return files;
+  }
+
+  /**
+   * Returns the sum of the file sizes at compile time.
+   */
+  public long getTotalLength() {
+    long total = 0;
+    for (long length : lengths) {
+      total += length;
+    }
+    return total;
+  }
+
+  /**
+   * Returns true if any of the files has been modified, created or deleted since the schema has been
+   * compiled.
+   */
+  public boolean isModified() {
+    for (int i = 0; i < files.size(); i++) {
+      File file = files.get(i);
+      if (file.lastModified() != lastModified[i] || file.length() != lengths[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
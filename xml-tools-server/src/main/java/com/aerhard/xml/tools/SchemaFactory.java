@@ -7,6 +7,7 @@ import com.aerhard.xml.tools.error.ErrorPrintHandler;
 import com.thaiopensource.suggest.xsd.impl.XsdSchemaReaderFactory;
 import com.thaiopensource.resolver.Identifier;
 import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.resolver.ResolverException;
 import com.thaiopensource.resolver.catalog.CatalogResolver;
 import com.thaiopensource.resolver.xml.ExternalIdentifier;
@@ -14,30 +15,102 @@ import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.util.PropertyMapBuilder;
 import com.thaiopensource.util.UriOrFile;
 import com.thaiopensource.validate.*;
-import com.thaiopensource.validate.auto.AutoSchemaReader;
+import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.xml.sax.Sax2XMLReaderCreator;
 import com.thaiopensource.xml.util.WellKnownNamespaces;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
+import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXSource;
-import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 class SchemaFactory {
   public final static String SCHEMA_PATH_SPLIT_REGEX = "\\*";
 
+  /**
+   * Rough ratio of the memory taken by a compiled schema to the size of its source files.
+   */
+  private final static int WEIGHT_PER_SOURCE_BYTE = 10;
+  private final static long MIN_WEIGHT = 64 * 1024;
+
+  /**
+   * Returns the loader compiling a schema for the {@link DriverCache}. Schemas compiled successfully are
+   * recorded in the {@link SchemaStore}, if there is one, so that they get compiled on the next start.
+   */
+  public static DriverCache.Loader createLoader(final SchemaProperties schemaProperties) {
+    return new DriverCache.Loader() {
+      @Override
+      public Driver load(ErrorPrintHandler eh) {
+        Driver driver = createDriver(createPropertyMap(schemaProperties, eh), schemaProperties);
+        SchemaStore store = SchemaStore.getInstance();
+        if (driver != null && store != null) {
+          store.recordSchema(schemaProperties);
+        }
+        return driver;
+      }
+    };
+  }
+
+  public static PropertyMap createPropertyMap(SchemaProperties schemaProperties, ErrorPrintHandler eh) {
+    PropertyMapBuilder properties = new PropertyMapBuilder();
+
+    String catalogUri = schemaProperties.getRequestProperties().getCatalogUri();
+    if (catalogUri != null) {
+      List<String> catalogUris = new ArrayList<String>();
+      catalogUris.add(catalogUri);
+      CatalogResolver resolver = new CatalogResolver(catalogUris);
+      properties.put(ValidateProperty.RESOLVER, resolver);
+    }
+
+    properties.put(ValidateProperty.ERROR_HANDLER, eh);
+    RngProperty.CHECK_ID_IDREF.add(properties);
+
+    return properties.toPropertyMap();
+  }
+
+  /**
+   * Compiles a schema and returns its Driver, or null if the schema couldn't be compiled. The Driver
+   * records the files read while compiling and the time compiling took; its weight is estimated from
+   * the size of the files.
+   */
+  public static Driver createDriver(PropertyMap properties, SchemaProperties schemaProperties) {
+    long start = System.nanoTime();
+    RecordingResolver resolver = new RecordingResolver(properties.get(ValidateProperty.RESOLVER));
+    PropertyMapBuilder compileProperties = new PropertyMapBuilder(properties);
+    compileProperties.put(ValidateProperty.RESOLVER, resolver);
+
+    Schema schema = createSchema(compileProperties.toPropertyMap(), schemaProperties);
+    if (schema == null) {
+      return null;
+    }
+
+    resolver.record(schemaProperties.getRequestProperties().getCatalogUri());
+    SchemaDependencies dependencies = SchemaDependencies.create(resolver.getUris());
+    long compileTime = (System.nanoTime() - start) / 1000;
+    Metrics.COMPILE.record(compileTime);
+    return new Driver(schema, properties, dependencies, estimateWeight(dependencies), compileTime);
+  }
+
+  static long estimateWeight(SchemaDependencies dependencies) {
+    return Math.max(MIN_WEIGHT, dependencies.getTotalLength() * WEIGHT_PER_SOURCE_BYTE);
+  }
+
   public static Schema createSchema(PropertyMap properties, SchemaProperties schemaProperties) {
 
-    boolean resolveSchemaPath = schemaProperties.getRequestProperties().shouldResolveSchemaPath();
+    RequestProperties requestProperties = schemaProperties.getRequestProperties();
+    boolean resolveSchemaPath = requestProperties.shouldResolveSchemaPath() && requestProperties.getCatalogUri() != null;
     String schemaPath = schemaProperties.getPath();
 
     ErrorPrintHandler eh = (ErrorPrintHandler) properties.get(ValidateProperty.ERROR_HANDLER);
@@ -89,7 +162,7 @@ class SchemaFactory {
       }
 
       if (!transformationError) {
-        return new AutoSchemaReader()
+        return Stylesheets.getSchemaReader()
             .createSchema(new SAXSource(inputSource), properties);
       }
     } catch (IncorrectSchemaException e) {
@@ -112,8 +185,8 @@ class SchemaFactory {
       inputSource = null;
     } else {
       String resolvedSchemaURI = null;
-      if (resolveSchemaPath && properties.contains(ValidateProperty.RESOLVER)) {
-        CatalogResolver resolver = (CatalogResolver) properties.get(ValidateProperty.RESOLVER);
+      Resolver resolver = properties.get(ValidateProperty.RESOLVER);
+      if (resolveSchemaPath && resolver != null) {
         String cwd = new File(".").getCanonicalPath();
         Identifier schemaIdentifier = new ExternalIdentifier(schemaPath, cwd, schemaPath);
         Input input = new Input();
@@ -124,44 +197,102 @@ class SchemaFactory {
       inputSource = resolvedSchemaURI != null
           ? new InputSource(resolvedSchemaURI)
           : uriOrFileInputSource(schemaPath);
+
+      if (resolver instanceof RecordingResolver) {
+        ((RecordingResolver) resolver).record(inputSource.getSystemId());
+      }
     }
     return inputSource;
   }
 
+  /**
+   * Replaces the input stream of a schema with the result of transforming it with a bundled stylesheet.
+   * Results for local files are reused from memory or from the {@link SchemaStore}, if there is one, as
+   * long as none of the files read by the transformation has changed.
+   */
   private static boolean substituteInputStream(InputSource inputSource, final ErrorPrintHandler eh,
                                                String schemaPath, String xsltPath, PropertyMap properties)
       throws TransformerException, IOException, SAXException {
-    InputStream xsltStream = SchemaFactory.class.getClassLoader().getResourceAsStream(xsltPath);
+    String systemId = inputSource.getSystemId();
+    Resolver resolver = properties.get(ValidateProperty.RESOLVER);
+    RecordingResolver recordingResolver = resolver instanceof RecordingResolver ? (RecordingResolver) resolver : null;
+
+    SchemaStore store = SchemaStore.getInstance();
+    File schemaFile = SchemaStore.toFile(systemId);
+    byte[] schemaBytes = null;
+    String key = null;
+    if (schemaFile != null && schemaFile.isFile()) {
+      schemaBytes = SchemaStore.readFile(schemaFile);
+      key = SchemaStore.getTransformationKey(xsltPath, systemId, schemaBytes);
+      SchemaStore.Transformation transformation = Stylesheets.getResult(key);
+      if (transformation == null && store != null) {
+        transformation = store.getTransformation(xsltPath, systemId, schemaBytes);
+      }
+      if (transformation != null) {
+        record(recordingResolver, transformation.getDependencies());
+        inputSource.setByteStream(transformation.getResult());
+        return true;
+      }
+      inputSource.setByteStream(new ByteArrayInputStream(schemaBytes));
+    }
+
     ErrorListenerAdapter el = new ErrorListenerAdapter(schemaPath, eh);
 
-    try {
-      StreamSource xsltSource = new StreamSource(xsltStream);
-
-      PropertyMapBuilder transformProperties = new PropertyMapBuilder(properties);
-      Sax2XMLReaderCreator xrc = new Sax2XMLReaderCreator();
-      transformProperties.put(ValidateProperty.XML_READER_CREATOR, xrc);
-
-      XMLReader reader = ResolverFactory.createResolver(transformProperties.toPropertyMap()).createXMLReader();
-      reader.setFeature("http://xml.org/sax/features/namespaces", true);
-      reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
-      reader.setFeature("http://xml.org/sax/features/validation", false);
-      reader.setErrorHandler(eh);
-      SAXSource xmlInput = new SAXSource(reader, inputSource);
-
-      String systemId = inputSource.getSystemId();
-      xsltSource.setSystemId(systemId);
-
-      SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
-      Transformer transformer = factory.newTransformer(xsltSource);
-
-      transformer.setErrorListener(el);
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      transformer.transform(xmlInput, new StreamResult(baos));
-      byte[] ba = baos.toByteArray();
-      inputSource.setByteStream(new ByteArrayInputStream(ba));
-      return !el.getHadErrorOrFatalError();
-    } finally {
-      xsltStream.close();
+    PropertyMapBuilder transformProperties = new PropertyMapBuilder(properties);
+    Sax2XMLReaderCreator xrc = new Sax2XMLReaderCreator();
+    transformProperties.put(ValidateProperty.XML_READER_CREATOR, xrc);
+
+    XMLReader reader = ResolverFactory.createResolver(transformProperties.toPropertyMap()).createXMLReader();
+    reader.setFeature("http://xml.org/sax/features/namespaces", true);
+    reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+    reader.setFeature("http://xml.org/sax/features/validation", false);
+    reader.setErrorHandler(eh);
+    SAXSource xmlInput = new SAXSource(reader, inputSource);
+
+    Transformer transformer = Stylesheets.getTemplates(xsltPath).newTransformer();
+
+    // documents loaded by the stylesheet, e.g. included schemas, are dependencies of the result
+    final List<String> dependencies = new ArrayList<String>();
+    dependencies.add(systemId);
+    transformer.setURIResolver(new URIResolver() {
+      @Override
+      public Source resolve(String href, String base) {
+        try {
+          String uri = base == null ? href : new URI(base).resolve(href).toString();
+          if (!dependencies.contains(uri)) {
+            dependencies.add(uri);
+          }
+        } catch (URISyntaxException e) {
+        } catch (IllegalArgumentException e) {
+        }
+        return null;
+      }
+    });
+
+    transformer.setErrorListener(el);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    transformer.transform(xmlInput, new StreamResult(baos));
+    byte[] ba = baos.toByteArray();
+    inputSource.setByteStream(new ByteArrayInputStream(ba));
+
+    record(recordingResolver, dependencies);
+    if (el.getHadErrorOrFatalError()) {
+      return false;
+    }
+    if (key != null) {
+      Stylesheets.putResult(key, ba, dependencies);
+      if (store != null) {
+        store.putTransformation(xsltPath, systemId, schemaBytes, dependencies, ba);
+      }
+    }
+    return true;
+  }
+
+  private static void record(RecordingResolver resolver, List<String> uris) {
+    if (resolver != null) {
+      for (String uri : uris) {
+        resolver.record(uri);
+      }
     }
   }
 
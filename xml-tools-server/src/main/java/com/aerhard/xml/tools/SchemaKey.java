@@ -0,0 +1,162 @@
+package com.aerhard.xml.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable key of a compiled schema in the {@link DriverCache}.
+ *
+ * Two keys are equal if they have the same schema type, canonical schema paths, catalog URI and
+ * resolve flag; the hash code is computed once. Whether the schema files have changed isn't part of
+ * the key, the cache's dependency watcher drops the Drivers whose files have changed. Since
+ * canonicalizing the schema paths reads the file system, the keys created for the schema lines of
+ * requests are kept in a bounded map, so that a request for a known schema line only looks its key up.
+ */
+final class SchemaKey {
+
+  static final int MAX_CACHED_KEYS = 256;
+
+  private static final Map<SchemaKey, SchemaKey> canonicalKeys =
+      new LinkedHashMap<SchemaKey, SchemaKey>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SchemaKey, SchemaKey> eldest) {
+          return size() > MAX_CACHED_KEYS;
+        }
+      };
+
+  private final String type;
+  private final String path;
+  private final String catalogUri;
+  private final boolean resolveSchemaPath;
+  private final int hashCode;
+
+  SchemaKey(String type, String path, String catalogUri, boolean resolveSchemaPath) {
+    this.type = type;
+    this.path = path;
+    this.catalogUri = catalogUri;
+    this.resolveSchemaPath = resolveSchemaPath;
+
+    int h = type == null ? 0 : type.hashCode();
+    h = 31 * h + (path == null ? 0 : path.hashCode());
+    h = 31 * h + (catalogUri == null ? 0 : catalogUri.hashCode());
+    h = 31 * h + (resolveSchemaPath ? 1 : 0);
+    this.hashCode = h;
+  }
+
+  /**
+   * Returns the key of a schema with canonical schema paths, canonicalizing them only if the same
+   * schema line hasn't been seen recently.
+   */
+  public static SchemaKey create(SchemaProperties schemaProperties) {
+    RequestProperties requestProperties = schemaProperties.getRequestProperties();
+    SchemaKey key = new SchemaKey(schemaProperties.getType(), schemaProperties.getPath(),
+        requestProperties.getCatalogUri(), requestProperties.shouldResolveSchemaPath());
+
+    SchemaKey canonicalKey;
+    synchronized (canonicalKeys) {
+      canonicalKey = canonicalKeys.get(key);
+    }
+    if (canonicalKey == null) {
+      canonicalKey = key.canonicalize();
+      synchronized (canonicalKeys) {
+        canonicalKeys.put(key, canonicalKey);
+      }
+    }
+    return canonicalKey;
+  }
+
+  /**
+   * Forgets the canonical keys, e.g. after symbolic links to schema files may have changed.
+   */
+  public static void clearCanonicalKeys() {
+    synchronized (canonicalKeys) {
+      canonicalKeys.clear();
+    }
+  }
+
+  private SchemaKey canonicalize() {
+    if (path == null) {
+      return this;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String schemaPathToken : path.trim().split(SchemaFactory.SCHEMA_PATH_SPLIT_REGEX)) {
+      if (sb.length() > 0) {
+        sb.append('*');
+      }
+      File file = toFile(schemaPathToken);
+      sb.append(file == null ? schemaPathToken : canonicalize(file));
+    }
+    return new SchemaKey(type, sb.toString(), catalogUri, resolveSchemaPath);
+  }
+
+  /**
+   * Returns the file a schema path refers to, or null if the path is a URI other than a file URI.
+   */
+  private static File toFile(String schemaPath) {
+    if (schemaPath.startsWith("file:")) {
+      try {
+        return new File(new URI(schemaPath));
+      } catch (URISyntaxException e) {
+        return null;
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+    // URIs with a scheme of more than one letter, so that Windows paths are taken as files
+    int colonIndex = schemaPath.indexOf(':');
+    if (colonIndex > 1 && schemaPath.substring(0, colonIndex).matches("[A-Za-z][A-Za-z0-9+.-]*")) {
+      return null;
+    }
+    return new File(schemaPath);
+  }
+
+  private static String canonicalize(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      return file.getAbsolutePath();
+    }
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SchemaKey)) {
+      return false;
+    }
+    SchemaKey other = (SchemaKey) obj;
+    return hashCode == other.hashCode
+        && resolveSchemaPath == other.resolveSchemaPath
+        && equals(type, other.type)
+        && equals(path, other.path)
+        && equals(catalogUri, other.catalogUri);
+  }
+
+  private static boolean equals(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + path + " (catalog: " + catalogUri + ", resolve: " + resolveSchemaPath + ")";
+  }
+}
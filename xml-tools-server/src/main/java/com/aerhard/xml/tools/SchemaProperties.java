@@ -4,6 +4,7 @@ class SchemaProperties {
   private final String type;
   private final String path;
   private final RequestProperties requestProperties;
+  private SchemaKey key;
 
   public SchemaProperties(String schemaLine, RequestProperties requestProperties) {
     String[] tokens = schemaLine.split("\\s", 2);
@@ -29,13 +30,13 @@ class SchemaProperties {
     return this.requestProperties.toString() + "\n" + this.type + "\n" + this.path;
   }
 
-  @Override
-  public int hashCode() {
-    return toString().hashCode();
-  }
-
-  @Override
-  public boolean equals(Object obj) {
-    return obj instanceof SchemaProperties && hashCode() == obj.hashCode();
+  /**
+   * Returns the key of the schema in the {@link DriverCache}.
+   */
+  public SchemaKey getKey() {
+    if (key == null) {
+      key = SchemaKey.create(this);
+    }
+    return key;
   }
 }
@@ -0,0 +1,415 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.SilentErrorPrintHandler;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * On-disk store keeping compiled schema artifacts across server restarts.
+ *
+ * The compiled RELAX NG patterns, XSD grammars and Schematron stylesheets of Jing and Xerces can't be
+ * serialized, so the store keeps what can be: the results of the XSLT transformations extracting
+ * embedded Schematron rules, and a list of the schemas used most recently, which get compiled in the
+ * background when the server starts.
+ *
+ * Transformation results are stored in files named after the hash of the stylesheet, the schema URI and
+ * the schema's content. Each file lists all files read by the transformation with their modification
+ * times, sizes and content hashes; a result is only used if none of them has changed. Files are read
+ * through memory mapping, and written to a temporary file first, so that concurrent servers sharing
+ * the store never see partially written files. The store lives in a subdirectory named after
+ * {@link #FORMAT_VERSION}, which has to be increased whenever the file format changes.
+ */
+final class SchemaStore {
+
+  public static final int FORMAT_VERSION = 1;
+  public static final int MAX_RECORDED_SCHEMAS = 32;
+
+  private static final int MAGIC = 0x58544353;
+  private static final String TRANSFORMATION_SUFFIX = ".sch";
+  private static final String SCHEMA_LIST_FILE = "schemas";
+  private static final String HASH_ALGORITHM = "SHA-1";
+
+  private static volatile SchemaStore instance = null;
+
+  private final File directory;
+  private final LinkedHashSet<String> recordedSchemas = new LinkedHashSet<String>();
+
+  /**
+   * A transformation result read from the store, together with the files it depends on.
+   */
+  static class Transformation {
+    private final ByteBuffer result;
+    private final List<String> dependencies;
+
+    Transformation(ByteBuffer result, List<String> dependencies) {
+      this.result = result;
+      this.dependencies = dependencies;
+    }
+
+    public InputStream getResult() {
+      return new ByteBufferInputStream(result.duplicate());
+    }
+
+    public List<String> getDependencies() {
+      return dependencies;
+    }
+  }
+
+  private SchemaStore(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Opens the store in a directory; the directory gets created if it doesn't exist.
+   */
+  public static SchemaStore open(File baseDirectory) throws IOException {
+    File directory = new File(baseDirectory, "v" + FORMAT_VERSION);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create schema store directory " + directory);
+    }
+    SchemaStore store = new SchemaStore(directory);
+    store.readSchemaList();
+    instance = store;
+    return store;
+  }
+
+  /**
+   * Returns the store opened last, or null if no store has been opened.
+   */
+  public static SchemaStore getInstance() {
+    return instance;
+  }
+
+  public static void close() {
+    instance = null;
+  }
+
+  /**
+   * Returns the stored result of transforming a schema with a stylesheet, or null if there is none or
+   * if any of the files it depends on has changed.
+   */
+  public Transformation getTransformation(String xsltPath, String systemId, byte[] schema) {
+    File file = getTransformationFile(xsltPath, systemId, schema);
+    if (!file.isFile()) {
+      return null;
+    }
+    FileInputStream fis = null;
+    try {
+      fis = new FileInputStream(file);
+      FileChannel channel = fis.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      int dependencyCount = in.readInt();
+      List<String> dependencies = new ArrayList<String>(dependencyCount);
+      for (int i = 0; i < dependencyCount; i++) {
+        String uri = in.readUTF();
+        long lastModified = in.readLong();
+        long length = in.readLong();
+        String hash = in.readUTF();
+        if (!isUnchanged(uri, lastModified, length, hash)) {
+          return null;
+        }
+        dependencies.add(uri);
+      }
+      int resultLength = in.readInt();
+      ByteBuffer result = buffer.slice();
+      if (result.remaining() != resultLength) {
+        return null;
+      }
+      return new Transformation(result, dependencies);
+    } catch (IOException e) {
+      return null;
+    } finally {
+      closeQuietly(fis);
+    }
+  }
+
+  /**
+   * Stores the result of transforming a schema with a stylesheet. Dependencies which aren't local
+   * files can't be checked for changes, so results depending on them don't get stored.
+   */
+  public void putTransformation(String xsltPath, String systemId, byte[] schema, Collection<String> dependencies,
+                                byte[] result) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(result.length + 1024);
+    DataOutputStream out = new DataOutputStream(baos);
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(dependencies.size());
+      for (String uri : dependencies) {
+        File file = toFile(uri);
+        if (file == null || !file.isFile()) {
+          return;
+        }
+        long lastModified = file.lastModified();
+        long length = file.length();
+        out.writeUTF(uri);
+        out.writeLong(lastModified);
+        out.writeLong(length);
+        out.writeUTF(hash(readFile(file)));
+      }
+      out.writeInt(result.length);
+      out.write(result);
+      out.flush();
+      write(getTransformationFile(xsltPath, systemId, schema), baos.toByteArray());
+    } catch (IOException e) {
+      System.err.println("Could not store schema transformation: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Adds a schema to the list of schemas to compile when the server starts.
+   */
+  public void recordSchema(SchemaProperties schemaProperties) {
+    RequestProperties requestProperties = schemaProperties.getRequestProperties();
+    String catalogUri = requestProperties.getCatalogUri();
+    String line = (requestProperties.shouldResolveSchemaPath() ? "r" : "-") + "\t"
+        + (catalogUri == null ? "" : catalogUri) + "\t"
+        + schemaProperties.getType() + " " + schemaProperties.getPath();
+
+    synchronized (recordedSchemas) {
+      recordedSchemas.remove(line);
+      recordedSchemas.add(line);
+      while (recordedSchemas.size() > MAX_RECORDED_SCHEMAS) {
+        recordedSchemas.remove(recordedSchemas.iterator().next());
+      }
+      StringBuilder sb = new StringBuilder();
+      for (String recordedSchema : recordedSchemas) {
+        sb.append(recordedSchema).append('\n');
+      }
+      try {
+        write(new File(directory, SCHEMA_LIST_FILE), sb.toString().getBytes("UTF-8"));
+      } catch (IOException e) {
+        System.err.println("Could not store schema list: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Returns the recorded schemas whose files still exist, most recently used first.
+   */
+  public List<SchemaProperties> getRecordedSchemas() {
+    List<String> lines;
+    synchronized (recordedSchemas) {
+      lines = new ArrayList<String>(recordedSchemas);
+    }
+    List<SchemaProperties> schemas = new ArrayList<SchemaProperties>();
+    for (int i = lines.size() - 1; i >= 0; i--) {
+      String[] tokens = lines.get(i).split("\t", 3);
+      if (tokens.length < 3 || tokens[2].indexOf(' ') < 0) {
+        continue;
+      }
+      RequestProperties requestProperties = new RequestProperties(tokens[1], tokens[0], "UTF-8");
+      SchemaProperties schemaProperties = new SchemaProperties(tokens[2], requestProperties);
+      if (schemaProperties.getPath() == null) {
+        continue;
+      }
+      boolean exists = true;
+      if (!requestProperties.shouldResolveSchemaPath()) {
+        // otherwise the path may be resolved through the catalog
+        for (String pathToken : schemaProperties.getPath().trim().split(SchemaFactory.SCHEMA_PATH_SPLIT_REGEX)) {
+          File file = pathToken.startsWith("file:") ? toFile(pathToken) : new File(pathToken);
+          if (file == null || !file.exists()) {
+            exists = false;
+          }
+        }
+      }
+      if (exists) {
+        schemas.add(schemaProperties);
+      }
+    }
+    return schemas;
+  }
+
+  /**
+   * Compiles the recorded schemas on a background thread, so that the first requests after a restart
+   * find them in the {@link DriverCache}.
+   */
+  public void preload() {
+    final List<SchemaProperties> schemas = getRecordedSchemas();
+    if (schemas.isEmpty()) {
+      return;
+    }
+    Thread t = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (SchemaProperties schemaProperties : schemas) {
+          DriverCache.get(schemaProperties.getKey(), new SilentErrorPrintHandler(),
+              SchemaFactory.createLoader(schemaProperties));
+        }
+      }
+    }, "xml-tools-schema-preload");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  private void readSchemaList() {
+    File file = new File(directory, SCHEMA_LIST_FILE);
+    if (!file.isFile()) {
+      return;
+    }
+    try {
+      String content = new String(readFile(file), "UTF-8");
+      synchronized (recordedSchemas) {
+        for (String line : content.split("\n")) {
+          if (line.length() > 0) {
+            recordedSchemas.add(line);
+          }
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Could not read schema list: " + e.getMessage());
+    }
+  }
+
+  private File getTransformationFile(String xsltPath, String systemId, byte[] schema) {
+    return new File(directory, getTransformationKey(xsltPath, systemId, schema) + TRANSFORMATION_SUFFIX);
+  }
+
+  /**
+   * Returns the hash identifying the result of transforming a schema with a stylesheet.
+   */
+  static String getTransformationKey(String xsltPath, String systemId, byte[] schema) {
+    MessageDigest digest = createDigest();
+    try {
+      digest.update((xsltPath + "\n" + systemId + "\n").getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    digest.update(schema);
+    return toHex(digest.digest());
+  }
+
+  private static boolean isUnchanged(String uri, long lastModified, long length, String hash) throws IOException {
+    File file = toFile(uri);
+    if (file == null || !file.isFile()) {
+      return false;
+    }
+    if (file.lastModified() == lastModified && file.length() == length) {
+      return true;
+    }
+    // the file may have been touched without changing its content
+    return hash.equals(hash(readFile(file)));
+  }
+
+  static String hash(byte[] bytes) {
+    return toHex(createDigest().digest(bytes));
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+      sb.append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  static File toFile(String uri) {
+    if (uri == null || !uri.startsWith("file:")) {
+      return null;
+    }
+    try {
+      return new File(new URI(uri));
+    } catch (URISyntaxException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  static byte[] readFile(File file) throws IOException {
+    FileInputStream fis = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream((int) file.length());
+      byte[] data = new byte[8192];
+      int nRead;
+      while ((nRead = fis.read(data, 0, data.length)) != -1) {
+        baos.write(data, 0, nRead);
+      }
+      return baos.toByteArray();
+    } finally {
+      fis.close();
+    }
+  }
+
+  private void write(File file, byte[] content) throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+    FileOutputStream fos = new FileOutputStream(tmp);
+    try {
+      fos.write(content);
+    } finally {
+      fos.close();
+    }
+    if (!tmp.renameTo(file)) {
+      // the target may exist and be mapped by a reader on platforms which don't allow replacing it
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+      }
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+      }
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -2,11 +2,23 @@ package com.aerhard.xml.tools;
 
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.RejectedExecutionException;
 
 public class SocketServer {
 
   public void start(int port, int maxDriverCacheSize) throws IOException {
+    start(port, maxDriverCacheSize, RequestExecutor.create(Constants.EXECUTOR_TYPE_POOL,
+        RequestExecutor.DEFAULT_MAX_THREADS, RequestExecutor.DEFAULT_QUEUE_DEPTH));
+  }
+
+  public void start(int port, int maxDriverCacheSize, RequestExecutor executor) throws IOException {
     DriverCache.setMaxSize(maxDriverCacheSize);
+    DriverCache.setWatchInterval(DriverCache.DEFAULT_WATCH_INTERVAL);
+    Stylesheets.precompile();
+    SchemaStore schemaStore = SchemaStore.getInstance();
+    if (schemaStore != null) {
+      schemaStore.preload();
+    }
     ServerSocket socketServer = null;
     try {
       socketServer = new ServerSocket(port, 0, InetAddress.getByName(null));
@@ -20,26 +32,72 @@ public class SocketServer {
     try {
       while (!Thread.currentThread().isInterrupted()) {
         Socket socket = socketServer.accept();
-        new RequestHandlerThread(socket).start();
+        RequestHandler handler = new RequestHandler(socket, executor);
+        try {
+          executor.execute(handler);
+        } catch (RejectedExecutionException e) {
+          reject(handler, executor);
+        }
       }
     } catch (InterruptedIOException e) {
       System.out.println("Exiting...");
     } finally {
+      executor.shutdown();
       try {
         socketServer.close();
       } catch (IOException e) {}
     }
   }
 
+  /**
+   * Hands a request rejected by the executor over to a helper thread which answers it. If the helpers
+   * are busy as well, the connection gets closed right away, so that the accepting thread never waits
+   * for a client.
+   */
+  private static void reject(final RequestHandler handler, RequestExecutor executor) {
+    try {
+      executor.executeRejection(new Runnable() {
+        @Override
+        public void run() {
+          handler.reject();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      Metrics.recordRejection();
+      handler.close();
+    }
+  }
+
   public static void main(String[] args) throws IOException {
-    if (args.length != 2) {
-      System.out.println("Expected 2 arguments: port and maxDriverCacheSize");
+    if (args.length < 2 || args.length > 6) {
+      System.out.println("Expected 2 to 6 arguments: port, maxDriverCacheSize and optionally " +
+          "executorType (" + Constants.EXECUTOR_TYPE_POOL + " or " + Constants.EXECUTOR_TYPE_VIRTUAL + "), " +
+          "maxThreads, queueDepth and schemaCacheDir");
       System.exit(1);
     }
 
     int port = new Integer(args[0]);
     int maxDriverCacheSize = new Integer(args[1]);
+    String executorType = args.length > 2 ? args[2] : Constants.EXECUTOR_TYPE_POOL;
+    int maxThreads = args.length > 3 ? new Integer(args[3]) : RequestExecutor.DEFAULT_MAX_THREADS;
+    int queueDepth = args.length > 4 ? new Integer(args[4]) : RequestExecutor.DEFAULT_QUEUE_DEPTH;
+
+    RequestExecutor executor = null;
+    try {
+      executor = RequestExecutor.create(executorType, maxThreads, queueDepth);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+
+    if (args.length > 5) {
+      try {
+        SchemaStore.open(new File(args[5]));
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+      }
+    }
 
-    new SocketServer().start(port, maxDriverCacheSize);
+    new SocketServer().start(port, maxDriverCacheSize, executor);
   }
 }
@@ -0,0 +1,218 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.validate.Option;
+import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.SchemaReaderFactory;
+import com.thaiopensource.validate.SchemaReaderLoader;
+import com.thaiopensource.validate.auto.AutoSchemaReader;
+import com.thaiopensource.validate.auto.SchemaReaderFactorySchemaReceiverFactory;
+import com.thaiopensource.validate.auto.SchemaReceiver;
+import com.thaiopensource.validate.auto.SchemaReceiverFactory;
+import com.thaiopensource.validate.auto.SchemaReceiverLoader;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide caches of compiled stylesheets for loading Schematron schemas.
+ *
+ * The stylesheets extracting Schematron rules from RELAX NG and XSD schemas are compiled once into
+ * thread-safe {@link Templates}; the results of applying them are kept in memory per schema content, so
+ * that recompiling a schema doesn't repeat the extraction as long as none of the files read has changed.
+ * Schemas whose Schematron rules are extracted are read by a shared {@link AutoSchemaReader} which reuses
+ * the Schematron schema readers, so that Jing compiles its Schematron skeleton stylesheet only once.
+ */
+final class Stylesheets {
+
+  public static final String[] EXTRACTION_STYLESHEETS = {
+      "ExtractSchFromRNG-2.xsl", "ExtractSchFromXSD-2.xsl", "RNG2Schtrn.xsl", "XSD2Schtrn.xsl"
+  };
+
+  public static final String SCHEMATRON_15_URI = "http://www.ascc.net/xml/schematron";
+  public static final String SCHEMATRON_ISO_URI = "http://purl.oclc.org/dsdl/schematron";
+
+  static final int MAX_CACHED_RESULTS = 64;
+
+  private static final AtomicBoolean precompiling = new AtomicBoolean(false);
+
+  private static final ConcurrentMap<String, Templates> templates = new ConcurrentHashMap<String, Templates>();
+
+  private static final Map<String, Result> results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+      return size() > MAX_CACHED_RESULTS;
+    }
+  };
+
+  private static final SchemaReader schemaReader = new AutoSchemaReader(new SchematronSchemaReceiverFactory());
+
+  private static class Result {
+    private final byte[] bytes;
+    private final List<String> dependencyUris;
+    private final SchemaDependencies dependencies;
+
+    private Result(byte[] bytes, List<String> dependencyUris, SchemaDependencies dependencies) {
+      this.bytes = bytes;
+      this.dependencyUris = dependencyUris;
+      this.dependencies = dependencies;
+    }
+  }
+
+  private Stylesheets() {
+  }
+
+  /**
+   * Returns the compiled form of a bundled stylesheet, compiling it on first use.
+   */
+  public static Templates getTemplates(String xsltPath) throws TransformerConfigurationException {
+    Templates compiled = templates.get(xsltPath);
+    if (compiled != null) {
+      return compiled;
+    }
+    synchronized (templates) {
+      compiled = templates.get(xsltPath);
+      if (compiled == null) {
+        URL url = Stylesheets.class.getClassLoader().getResource(xsltPath);
+        if (url == null) {
+          throw new TransformerConfigurationException("Stylesheet " + xsltPath + " not found");
+        }
+        compiled = TransformerFactory.newInstance().newTemplates(new StreamSource(url.toExternalForm()));
+        templates.put(xsltPath, compiled);
+      }
+      return compiled;
+    }
+  }
+
+  /**
+   * Compiles the bundled stylesheets on a background thread, so that the first Schematron schema loaded
+   * doesn't have to wait for them. Only the first call starts the thread, since the compiled stylesheets
+   * are kept for the lifetime of the process; later calls, e.g. by another server started in the same
+   * process, return false at once.
+   */
+  public static boolean precompile() {
+    if (!precompiling.compareAndSet(false, true)) {
+      return false;
+    }
+    Thread t = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (String xsltPath : EXTRACTION_STYLESHEETS) {
+          try {
+            getTemplates(xsltPath);
+          } catch (TransformerConfigurationException e) {
+            System.err.println("Could not compile " + xsltPath + ": " + e.getMessage());
+          }
+        }
+      }
+    }, "xml-tools-stylesheet-compiler");
+    t.setDaemon(true);
+    t.start();
+    return true;
+  }
+
+  /**
+   * Returns the result of transforming a schema with a stylesheet kept in memory, or null if there is
+   * none or if any of the files read by the transformation has changed.
+   */
+  public static SchemaStore.Transformation getResult(String key) {
+    Result result;
+    synchronized (results) {
+      result = results.get(key);
+    }
+    if (result == null) {
+      return null;
+    }
+    if (result.dependencies.isModified()) {
+      synchronized (results) {
+        results.remove(key);
+      }
+      return null;
+    }
+    return new SchemaStore.Transformation(ByteBuffer.wrap(result.bytes).asReadOnlyBuffer(), result.dependencyUris);
+  }
+
+  public static void putResult(String key, byte[] bytes, List<String> dependencyUris) {
+    Result result = new Result(bytes, dependencyUris, SchemaDependencies.create(dependencyUris));
+    synchronized (results) {
+      results.put(key, result);
+    }
+  }
+
+  public static void clearResults() {
+    synchronized (results) {
+      results.clear();
+    }
+  }
+
+  /**
+   * Returns the reader for schemas with extracted Schematron rules.
+   */
+  public static SchemaReader getSchemaReader() {
+    return schemaReader;
+  }
+
+  /**
+   * Reads Schematron schemas with schema readers created once per namespace and everything else with
+   * the readers found on the class path.
+   */
+  private static class SchematronSchemaReceiverFactory implements SchemaReceiverFactory {
+    private final SchemaReceiverFactory schematronFactory =
+        new SchemaReaderFactorySchemaReceiverFactory(new CachingSchemaReaderFactory());
+    private final SchemaReceiverFactory defaultFactory = new SchemaReceiverLoader();
+
+    @Override
+    public SchemaReceiver createSchemaReceiver(String namespaceUri, PropertyMap properties) {
+      if (SCHEMATRON_ISO_URI.equals(namespaceUri) || SCHEMATRON_15_URI.equals(namespaceUri)) {
+        SchemaReceiver receiver = schematronFactory.createSchemaReceiver(namespaceUri, properties);
+        if (receiver != null) {
+          return receiver;
+        }
+      }
+      return defaultFactory.createSchemaReceiver(namespaceUri, properties);
+    }
+
+    @Override
+    public Option getOption(String uri) {
+      return defaultFactory.getOption(uri);
+    }
+  }
+
+  private static class CachingSchemaReaderFactory implements SchemaReaderFactory {
+    private final SchemaReaderFactory loader = new SchemaReaderLoader();
+    private final ConcurrentMap<String, SchemaReader> readers = new ConcurrentHashMap<String, SchemaReader>();
+
+    @Override
+    public SchemaReader createSchemaReader(String namespaceUri) {
+      SchemaReader reader = readers.get(namespaceUri);
+      if (reader == null) {
+        synchronized (readers) {
+          reader = readers.get(namespaceUri);
+          if (reader == null) {
+            reader = loader.createSchemaReader(namespaceUri);
+            if (reader == null) {
+              return null;
+            }
+            readers.put(namespaceUri, reader);
+          }
+        }
+      }
+      return reader;
+    }
+
+    @Override
+    public Option getOption(String uri) {
+      return loader.getOption(uri);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.thaiopensource.suggest.ElementSuggestion;
+import com.thaiopensource.suggest.Suggestion;
+import com.thaiopensource.suggest.schemaless.impl.SuggesterImpl;
+import com.thaiopensource.xml.sax.Sax2XMLReaderCreator;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+class SuggesterTask implements Runnable {
+
+  private final SchemaProperties schemaProperties;
+  private final ErrorPrintHandler eh;
+  private byte[] bytes;
+  private final int headLength;
+  private final int length;
+  private final String xmlPath;
+  private List<? extends Suggestion> suggestions = null;
+
+  /**
+   * Creates a task suggesting at the end of the head, the first headLength bytes of the document; the
+   * document is the first length bytes of the array.
+   */
+  public SuggesterTask(SchemaProperties schemaProperties, ErrorPrintHandler eh,
+                       byte[] bytes, int headLength, int length, String xmlPath) {
+    this.schemaProperties = schemaProperties;
+    this.eh = eh;
+    this.bytes = bytes;
+    this.headLength = headLength;
+    this.length = length;
+    this.xmlPath = xmlPath;
+  }
+
+  public List<? extends Suggestion> getSuggestions() {
+    return suggestions;
+  }
+
+  @Override
+  public void run() {
+    Driver driver = null;
+
+    if (Constants.SCHEMA_TYPE_RNG.equals(schemaProperties.getType()) ||
+        Constants.SCHEMA_TYPE_RNC.equals(schemaProperties.getType()) ||
+        Constants.SCHEMA_TYPE_XSD.equals(schemaProperties.getType())) {
+      driver = getValidationDriver();
+    }
+
+    if (driver != null) {
+      suggestions = driver.runSuggester(bytes, headLength, length, eh, xmlPath, schemaProperties);
+      bytes = null;
+    } else if (Constants.SUGGESTION_TYPE_ELEMENT.equals(schemaProperties.getRequestProperties().getSuggestionType())) {
+      suggestClosingTag();
+    } else {
+      suggestions = Collections.<Suggestion>emptyList();
+    }
+  }
+
+  private void suggestClosingTag() {
+    ByteArrayInputStream bais = new ByteArrayInputStream(bytes, 0, headLength);
+    SuggesterImpl suggester = new SuggesterImpl();
+    long start = System.nanoTime();
+
+    try {
+      Sax2XMLReaderCreator xrc = new Sax2XMLReaderCreator();
+      XMLReader reader = xrc.createXMLReader();
+      reader.setFeature("http://xml.org/sax/features/namespaces", true);
+      reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+      reader.setFeature("http://xml.org/sax/features/validation", false);
+      reader.setFeature("http://apache.org/xml/features/validation/schema", false);
+      reader.setErrorHandler(eh);
+      reader.setContentHandler(suggester);
+
+      InputSource is = new InputSource(bais);
+
+      is.setSystemId(xmlPath);
+      is.setEncoding(schemaProperties.getRequestProperties().getEncoding());
+      reader.parse(is);
+
+    } catch (FileNotFoundException e) {
+    } catch (SAXException e) {
+    } catch (IOException e) {
+    } finally {
+      Metrics.PARSE.recordSince(start);
+      bytes = null;
+    }
+
+    String qName = suggester.suggestClosingTag();
+    if (qName != null) {
+      suggestions = Collections.singletonList(new ElementSuggestion(qName, null, null, false, true));
+    } else {
+      suggestions = Collections.<Suggestion>emptyList();
+    }
+  }
+
+  private Driver getValidationDriver() {
+    long start = System.nanoTime();
+    Driver driver = DriverCache.get(schemaProperties.getKey(), eh, SchemaFactory.createLoader(schemaProperties));
+    Metrics.SCHEMA.recordSince(start);
+    return driver;
+  }
+}
@@ -0,0 +1,167 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.suggest.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the suggestions returned to the client. Clients can narrow the result with the option
+ * parameters <code>query=&lt;text&gt;</code>, <code>match=fuzzy</code> and <code>limit=&lt;n&gt;</code>,
+ * e.g. <code>w query=di limit=20</code>.
+ *
+ * Suggestions match a query if their value starts with it, ignoring case, or if the local part of
+ * their value (the part following the prefix) does. With <code>match=fuzzy</code>, suggestions whose
+ * value contains the characters of the query in order match as well. Matches are ranked by the kind
+ * of match, exact-case prefix matches first, and then by value; without a query, suggestions are
+ * sorted by value. A limit keeps only the first n suggestions of that order, which are selected with a
+ * bounded heap instead of sorting all matches. The closing tag suggested along with element suggestions
+ * is one of the suggestions, so it is ranked by its value and counts against the limit.
+ */
+class SuggestionQuery {
+  public static final String PARAMETER_QUERY = "query";
+  public static final String PARAMETER_MATCH = "match";
+  public static final String PARAMETER_LIMIT = "limit";
+  public static final String MATCH_FUZZY = "fuzzy";
+
+  private static final int PREFIX = 0;
+  private static final int PREFIX_IGNORE_CASE = 1;
+  private static final int LOCAL_PREFIX = 2;
+  private static final int SUBSEQUENCE = 3;
+  private static final int NO_MATCH = 4;
+
+  private static final Comparator<Suggestion> BY_VALUE = new Comparator<Suggestion>() {
+    @Override
+    public int compare(Suggestion a, Suggestion b) {
+      return a.getValue().compareTo(b.getValue());
+    }
+  };
+
+  private final String query;
+  private final boolean fuzzy;
+  private final int limit;
+
+  public SuggestionQuery(String query, boolean fuzzy, int limit) {
+    this.query = query == null || query.isEmpty() ? null : query;
+    this.fuzzy = fuzzy;
+    this.limit = limit;
+  }
+
+  public static SuggestionQuery fromRequest(RequestProperties requestProperties) {
+    int limit = -1;
+    String limitString = requestProperties.getParameter(PARAMETER_LIMIT);
+    if (limitString != null) {
+      try {
+        limit = Integer.parseInt(limitString);
+      } catch (NumberFormatException e) {
+        limit = -1;
+      }
+    }
+    return new SuggestionQuery(requestProperties.getParameter(PARAMETER_QUERY),
+        MATCH_FUZZY.equals(requestProperties.getParameter(PARAMETER_MATCH)), limit);
+  }
+
+  public boolean matches(String value) {
+    return query == null || getMatchKind(value) != NO_MATCH;
+  }
+
+  /**
+   * Returns the matching suggestions in ranked order, limited to the requested number. The list
+   * passed in may be reordered.
+   */
+  public <T extends Suggestion> List<T> select(List<T> suggestions) {
+    if (query == null) {
+      if (limit < 0 || limit >= suggestions.size()) {
+        Collections.sort(suggestions, BY_VALUE);
+        return suggestions;
+      }
+      return selectTop(suggestions, BY_VALUE);
+    }
+
+    List<Match<T>> matches = new ArrayList<Match<T>>();
+    for (T suggestion : suggestions) {
+      int kind = getMatchKind(suggestion.getValue());
+      if (kind != NO_MATCH) {
+        matches.add(new Match<T>(suggestion, kind));
+      }
+    }
+    Comparator<Match<T>> byRank = new Comparator<Match<T>>() {
+      @Override
+      public int compare(Match<T> a, Match<T> b) {
+        return a.kind != b.kind ? a.kind - b.kind : BY_VALUE.compare(a.suggestion, b.suggestion);
+      }
+    };
+    if (limit >= 0 && limit < matches.size()) {
+      matches = selectTop(matches, byRank);
+    } else {
+      Collections.sort(matches, byRank);
+    }
+    List<T> result = new ArrayList<T>(matches.size());
+    for (Match<T> match : matches) {
+      result.add(match.suggestion);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the first limit items in the order of the comparator, keeping no more than limit items
+   * in the heap at a time.
+   */
+  private <T> List<T> selectTop(List<T> items, final Comparator<? super T> comparator) {
+    if (limit == 0) {
+      return new ArrayList<T>();
+    }
+    PriorityQueue<T> heap = new PriorityQueue<T>(limit, Collections.reverseOrder(comparator));
+    for (T item : items) {
+      if (heap.size() < limit) {
+        heap.add(item);
+      } else if (comparator.compare(item, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(item);
+      }
+    }
+    List<T> result = new ArrayList<T>(heap);
+    Collections.sort(result, comparator);
+    return result;
+  }
+
+  private int getMatchKind(String value) {
+    if (value.startsWith(query)) {
+      return PREFIX;
+    }
+    if (value.regionMatches(true, 0, query, 0, query.length())) {
+      return PREFIX_IGNORE_CASE;
+    }
+    int localStart = value.indexOf(':') + 1;
+    if (localStart > 0 && value.regionMatches(true, localStart, query, 0, query.length())) {
+      return LOCAL_PREFIX;
+    }
+    if (fuzzy && isSubsequence(value)) {
+      return SUBSEQUENCE;
+    }
+    return NO_MATCH;
+  }
+
+  private boolean isSubsequence(String value) {
+    int j = 0;
+    for (int i = 0; i < value.length() && j < query.length(); i++) {
+      if (Character.toLowerCase(value.charAt(i)) == Character.toLowerCase(query.charAt(j))) {
+        j++;
+      }
+    }
+    return j == query.length();
+  }
+
+  private static class Match<T> {
+    private final T suggestion;
+    private final int kind;
+
+    Match(T suggestion, int kind) {
+      this.suggestion = suggestion;
+      this.kind = kind;
+    }
+  }
+}
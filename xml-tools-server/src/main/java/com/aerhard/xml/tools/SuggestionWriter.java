@@ -0,0 +1,206 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.suggest.AttributeValueSuggestion;
+import com.thaiopensource.suggest.ElementSuggestion;
+import com.thaiopensource.suggest.Suggestion;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Writes suggestions to the response stream as they are serialized, without building an intermediate
+ * document.
+ *
+ * The default format is a JSON array of objects with the members <code>value</code>,
+ * <code>documentation</code> and <code>attributes</code> (arrays of strings, omitted if absent) and
+ * <code>empty</code>, <code>closing</code> and <code>listItem</code> (only present if true).
+ *
+ * Clients sending the option parameter <code>format=binary</code> get the compact encoding:
+ *
+ * <pre>
+ *   int    suggestion count
+ *   byte   flags ({@link #FLAG_EMPTY}, {@link #FLAG_CLOSING}, {@link #FLAG_LIST_ITEM})
+ *   string value
+ *   int    documentation count, followed by the documentation strings
+ *   int    attribute count, followed by the attribute strings
+ * </pre>
+ *
+ * with everything after the count repeated per suggestion. As in the framed protocol, ints are
+ * big-endian and strings are an int byte length followed by UTF-8 bytes.
+ */
+class SuggestionWriter {
+  public static final String PARAMETER_FORMAT = "format";
+  public static final String FORMAT_JSON = "json";
+  public static final String FORMAT_BINARY = "binary";
+
+  public static final int FLAG_EMPTY = 1;
+  public static final int FLAG_CLOSING = 2;
+  public static final int FLAG_LIST_ITEM = 4;
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final String CHARSET = "UTF-8";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private SuggestionWriter() {
+  }
+
+  /**
+   * Writes suggestions in the format requested by the client.
+   */
+  public static void write(List<? extends Suggestion> suggestions, RequestProperties requestProperties,
+                           OutputStream os) throws IOException {
+    if (FORMAT_BINARY.equals(requestProperties.getParameter(PARAMETER_FORMAT))) {
+      writeBinary(suggestions, os);
+    } else {
+      writeJson(suggestions, new OutputStreamWriter(os, CHARSET));
+    }
+  }
+
+  /**
+   * Writes suggestions as a JSON array and flushes the writer.
+   */
+  public static void writeJson(List<? extends Suggestion> suggestions, Writer writer) throws IOException {
+    Writer w = new BufferedWriter(writer, BUFFER_SIZE);
+    w.write('[');
+    for (int i = 0; i < suggestions.size(); i++) {
+      if (i > 0) {
+        w.write(',');
+      }
+      Suggestion s = suggestions.get(i);
+      w.write("{\"value\":");
+      writeJsonString(s.getValue(), w);
+      if (s.getDocumentation() != null) {
+        w.write(",\"documentation\":");
+        writeJsonArray(s.getDocumentation(), w);
+      }
+      if (s instanceof ElementSuggestion) {
+        ElementSuggestion es = (ElementSuggestion) s;
+        if (es.getAttributes() != null) {
+          w.write(",\"attributes\":");
+          writeJsonArray(es.getAttributes(), w);
+        }
+        if (es.isEmpty()) {
+          w.write(",\"empty\":true");
+        }
+        if (es.isClosing()) {
+          w.write(",\"closing\":true");
+        }
+      } else if (s instanceof AttributeValueSuggestion && ((AttributeValueSuggestion) s).isListItem()) {
+        w.write(",\"listItem\":true");
+      }
+      w.write('}');
+    }
+    w.write(']');
+    w.flush();
+  }
+
+  private static void writeJsonArray(List<String> values, Writer w) throws IOException {
+    w.write('[');
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        w.write(',');
+      }
+      writeJsonString(values.get(i), w);
+    }
+    w.write(']');
+  }
+
+  /**
+   * Writes a JSON string literal. Quotes, backslashes and control characters are escaped; so are the
+   * line and paragraph separators, which JavaScript doesn't allow in string literals.
+   */
+  static void writeJsonString(String value, Writer w) throws IOException {
+    if (value == null) {
+      w.write("null");
+      return;
+    }
+    w.write('"');
+    int start = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+        continue;
+      }
+      w.write(value, start, i - start);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          w.write("\\\"");
+          break;
+        case '\\':
+          w.write("\\\\");
+          break;
+        case '\n':
+          w.write("\\n");
+          break;
+        case '\r':
+          w.write("\\r");
+          break;
+        case '\t':
+          w.write("\\t");
+          break;
+        case '\b':
+          w.write("\\b");
+          break;
+        case '\f':
+          w.write("\\f");
+          break;
+        default:
+          w.write("\\u");
+          w.write(HEX_DIGITS[(c >> 12) & 0xf]);
+          w.write(HEX_DIGITS[(c >> 8) & 0xf]);
+          w.write(HEX_DIGITS[(c >> 4) & 0xf]);
+          w.write(HEX_DIGITS[c & 0xf]);
+      }
+    }
+    w.write(value, start, length - start);
+    w.write('"');
+  }
+
+  /**
+   * Writes suggestions in the compact binary encoding and flushes the stream.
+   */
+  public static void writeBinary(List<? extends Suggestion> suggestions, OutputStream os) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+    out.writeInt(suggestions.size());
+    for (Suggestion s : suggestions) {
+      int flags = 0;
+      List<String> attributes = null;
+      if (s instanceof ElementSuggestion) {
+        ElementSuggestion es = (ElementSuggestion) s;
+        attributes = es.getAttributes();
+        if (es.isEmpty()) {
+          flags |= FLAG_EMPTY;
+        }
+        if (es.isClosing()) {
+          flags |= FLAG_CLOSING;
+        }
+      } else if (s instanceof AttributeValueSuggestion && ((AttributeValueSuggestion) s).isListItem()) {
+        flags |= FLAG_LIST_ITEM;
+      }
+      out.writeByte(flags);
+      writeBinaryString(s.getValue(), out);
+      writeBinaryList(s.getDocumentation(), out);
+      writeBinaryList(attributes, out);
+    }
+    out.flush();
+  }
+
+  private static void writeBinaryList(List<String> values, DataOutputStream out) throws IOException {
+    if (values == null) {
+      out.writeInt(0);
+      return;
+    }
+    out.writeInt(values.size());
+    for (String value : values) {
+      writeBinaryString(value, out);
+    }
+  }
+
+  private static void writeBinaryString(String value, DataOutputStream out) throws IOException {
+    byte[] bytes = value.getBytes(CHARSET);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,157 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.ResolverFactory;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.xml.sax.Sax2XMLReaderCreator;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+class ValidationTask implements Runnable {
+
+  private final SchemaProperties schemaProperties;
+  private final ErrorPrintHandler veh;
+  private final ErrorPrintHandler reh;
+  private byte[] bytes;
+  private final int length;
+  private final String xmlPath;
+  private final boolean deferParsing;
+  private Driver deferredDriver;
+
+  public ValidationTask(SchemaProperties schemaProperties, ErrorPrintHandler veh, ErrorPrintHandler reh, byte[] bytes, String xmlPath) {
+    this(schemaProperties, veh, reh, bytes, bytes.length, xmlPath, false);
+  }
+
+  /**
+   * Creates a task validating the document in the first length bytes of the array. If deferParsing is
+   * true, the task only gets the schema's driver when run and leaves the validation of the complete
+   * document to {@link #runDeferred(List)}, so that the document can be parsed once for all schemas of a
+   * request.
+   */
+  public ValidationTask(SchemaProperties schemaProperties, ErrorPrintHandler veh, ErrorPrintHandler reh, byte[] bytes,
+                        int length, String xmlPath, boolean deferParsing) {
+    this.schemaProperties = schemaProperties;
+    this.veh = veh;
+    this.reh = reh;
+    this.bytes = bytes;
+    this.length = length;
+    this.xmlPath = xmlPath;
+    this.deferParsing = deferParsing;
+  }
+
+  @Override
+  public void run() {
+    String schemaPath = schemaProperties.getPath();
+
+    if (Constants.SCHEMA_TYPE_DTD.equals(schemaProperties.getType()) || Constants.SCHEMA_TYPE_NONE.equals(schemaProperties.getType())) {
+      validateWithInternalSchemata();
+      return;
+    }
+
+    Driver driver = getValidationDriver();
+    if (driver != null) {
+      RequestProperties requestProperties = schemaProperties.getRequestProperties();
+      int editStart = requestProperties.getEditStart();
+      if (editStart >= 0 && driver.isResumable() && Checkpoints.isResumable(bytes, length, requestProperties.getEncoding())) {
+        driver.runResumableValidator(bytes, length, editStart, veh, reh, xmlPath, schemaPath);
+        bytes = null;
+        return;
+      }
+
+      if (deferParsing) {
+        deferredDriver = driver;
+        return;
+      }
+
+      driver.runValidator(createInputSource(), veh, reh, schemaPath);
+    }
+
+    bytes = null;
+  }
+
+  /**
+   * Validates the document of tasks which have deferred parsing with a single parse feeding the
+   * validators of all their schemas. Well-formedness errors are reported to the handler of the first
+   * task only, so that they don't get reported once per schema. Must be called after the tasks have run.
+   */
+  public static void runDeferred(List<ValidationTask> tasks) {
+    List<ValidationTask> deferred = new ArrayList<ValidationTask>();
+    List<Driver> drivers = new ArrayList<Driver>();
+    List<ErrorPrintHandler> vehs = new ArrayList<ErrorPrintHandler>();
+    for (ValidationTask task : tasks) {
+      if (task.deferredDriver != null) {
+        deferred.add(task);
+        drivers.add(task.deferredDriver);
+        vehs.add(task.veh);
+      }
+    }
+    if (deferred.isEmpty()) {
+      return;
+    }
+
+    ValidationTask first = deferred.get(0);
+    Driver.runValidators(drivers, vehs, first.createInputSource(), first.reh, first.schemaProperties.getPath());
+
+    for (ValidationTask task : deferred) {
+      task.deferredDriver = null;
+      task.bytes = null;
+    }
+  }
+
+  private InputSource createInputSource() {
+    InputSource is = new InputSource(new ByteArrayInputStream(bytes, 0, length));
+    is.setEncoding(schemaProperties.getRequestProperties().getEncoding());
+    is.setSystemId(xmlPath);
+    return is;
+  }
+
+  private void validateWithInternalSchemata() {
+    ByteArrayInputStream bais = new ByteArrayInputStream(bytes, 0, length);
+    long start = System.nanoTime();
+
+    try {
+      boolean validateWithDTD = Constants.SCHEMA_TYPE_DTD.equals(schemaProperties.getType());
+
+      PropertyMapBuilder properties = new PropertyMapBuilder(SchemaFactory.createPropertyMap(schemaProperties, reh));
+
+      Sax2XMLReaderCreator xrc = new Sax2XMLReaderCreator();
+      properties.put(ValidateProperty.XML_READER_CREATOR, xrc);
+
+      XMLReader reader = ResolverFactory.createResolver(properties.toPropertyMap()).createXMLReader();
+      reader.setFeature("http://xml.org/sax/features/namespaces", true);
+      reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+      reader.setFeature("http://xml.org/sax/features/validation", validateWithDTD);
+      reader.setFeature("http://apache.org/xml/features/validation/schema", false);
+      reader.setErrorHandler(reh);
+
+      InputSource is = new InputSource(bais);
+      is.setEncoding(schemaProperties.getRequestProperties().getEncoding());
+      is.setSystemId(xmlPath);
+
+      reader.parse(is);
+
+    } catch (FileNotFoundException e) {
+      reh.printException(e);
+    } catch (SAXException e) {
+      reh.printException(e);
+    } catch (IOException e) {
+      reh.print(schemaProperties.getPath() + ": fatal: " + e.getMessage());
+    } finally {
+      Metrics.PARSE.recordSince(start);
+      bytes = null;
+    }
+  }
+
+  private Driver getValidationDriver() {
+    long start = System.nanoTime();
+    Driver driver = DriverCache.get(schemaProperties.getKey(), veh, SchemaFactory.createLoader(schemaProperties));
+    Metrics.SCHEMA.recordSince(start);
+    return driver;
+  }
+}
@@ -15,15 +15,32 @@ import java.util.HashSet;
 import java.util.ResourceBundle;
 import java.util.Set;
 
+/**
+ * Collects the distinct messages of a request. Each report is kept as a small record of its message
+ * text and location, which gets formatted only when the messages are requested, so the handler keeps
+ * neither the exceptions nor duplicate reports, however many errors a document has. With a limit, warnings and errors reported after the first maxErrors errors are dropped; validators check
+ * {@link #isLimitReached()} to stop early.
+ */
 public class AccumulatingErrorPrintHandler implements ErrorPrintHandler {
 
-  private final Set<String> messages = new HashSet<String>();
+  private final Set<Report> reports = new HashSet<Report>();
 
   private ResourceBundle bundle = null;
   private final String schemaType;
+  private final int maxErrors;
+  private int errorCount = 0;
+  private volatile boolean limitReached = false;
 
   public AccumulatingErrorPrintHandler(String schemaType) {
+    this(schemaType, -1);
+  }
+
+  /**
+   * Creates a handler keeping at most maxErrors errors, or any number of errors if maxErrors is -1.
+   */
+  public AccumulatingErrorPrintHandler(String schemaType, int maxErrors) {
     this.schemaType = schemaType;
+    this.maxErrors = maxErrors;
   }
 
   private String getString(String key) {
@@ -33,24 +50,46 @@ public class AccumulatingErrorPrintHandler implements ErrorPrintHandler {
     return bundle.getString(key);
   }
 
-  public Set<String> getMessages() {
+  /**
+   * Returns the distinct messages, each prefixed with the schema type.
+   */
+  public synchronized Set<String> getMessages() {
+    Set<String> messages = new HashSet<String>();
+    for (Report report : reports) {
+      if (report.key == null) {
+        messages.add(schemaType + ":" + report.message);
+      } else {
+        String loc = formatLocation(report.systemId, report.lineNumber >= 0 ? report.lineNumber : null,
+            report.columnNumber >= 0 ? report.columnNumber : null);
+        messages.add(schemaType + ":" + format(report.key, new Object[]{report.message, loc}));
+      }
+    }
     return messages;
   }
 
+  /**
+   * Returns true if the handler has got as many errors as it keeps.
+   */
+  public boolean isLimitReached() {
+    return limitReached;
+  }
+
+  public int getMaxErrors() {
+    return maxErrors;
+  }
+
   private String format(String key, Object[] args) {
     return MessageFormat.format(getString(key), args);
   }
 
   @Override
   public void warning(SAXParseException e) throws SAXParseException {
-    print(format("warning",
-        new Object[]{formatMessage(e), formatSaxParseLocation(e)}));
+    add("warning", e, false);
   }
 
   @Override
   public void error(SAXParseException e) {
-    print(format("error",
-        new Object[]{formatMessage(e), formatSaxParseLocation(e)}));
+    add("error", e, true);
   }
 
   @Override
@@ -59,34 +98,32 @@ public class AccumulatingErrorPrintHandler implements ErrorPrintHandler {
   }
 
   @Override
-  public void printException(Throwable e) {
-    String loc;
-    if (e instanceof SAXParseException)
-      loc = formatSaxParseLocation((SAXParseException) e);
-    else
-      loc = "";
-    String message;
-    if (e instanceof SAXException)
-      message = formatMessage((SAXException) e);
-    else
-      message = formatMessage(e);
-    print(format("fatal", new Object[]{message, loc}));
+  public synchronized void printException(Throwable e) {
+    if (e instanceof SAXParseException) {
+      SAXParseException pe = (SAXParseException) e;
+      reports.add(new Report("fatal", formatMessage(pe), pe.getSystemId(), pe.getLineNumber(),
+          pe.getColumnNumber()));
+    } else {
+      String message = e instanceof SAXException ? formatMessage((SAXException) e) : formatMessage(e);
+      reports.add(new Report("fatal", message, null, -1, -1));
+    }
   }
 
   @Override
   public synchronized void print(String message) {
     if (message.length() != 0) {
-      messages.add(schemaType + ":" + message);
+      reports.add(new Report(null, message, null, -1, -1));
     }
   }
 
-  private String formatSaxParseLocation(SAXParseException e) {
-    String systemId = e.getSystemId();
-    int n = e.getLineNumber();
-    Integer lineNumber = n >= 0 ? n : null;
-    n = e.getColumnNumber();
-    Integer columnNumber = n >= 0 ? n : null;
-    return formatLocation(systemId, lineNumber, columnNumber);
+  private synchronized void add(String key, SAXParseException e, boolean isError) {
+    if (limitReached) {
+      return;
+    }
+    reports.add(new Report(key, formatMessage(e), e.getSystemId(), e.getLineNumber(), e.getColumnNumber()));
+    if (isError && ++errorCount == maxErrors) {
+      limitReached = true;
+    }
   }
 
   private String formatLocation(String systemId, Integer lineNumber, Integer columnNumber) {
@@ -145,4 +182,46 @@ public class AccumulatingErrorPrintHandler implements ErrorPrintHandler {
     return format("exception",
         new Object[]{e.getClass().getName(), detail});
   }
+
+  /**
+   * An unformatted report; the key of the message format is null for messages printed as they are.
+   */
+  private static final class Report {
+    private final String key;
+    private final String message;
+    private final String systemId;
+    private final int lineNumber;
+    private final int columnNumber;
+
+    private Report(String key, String message, String systemId, int lineNumber, int columnNumber) {
+      this.key = key;
+      this.message = message;
+      this.systemId = systemId;
+      this.lineNumber = lineNumber;
+      this.columnNumber = columnNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Report)) {
+        return false;
+      }
+      Report other = (Report) o;
+      return lineNumber == other.lineNumber && columnNumber == other.columnNumber
+          && equals(key, other.key) && message.equals(other.message) && equals(systemId, other.systemId);
+    }
+
+    private static boolean equals(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = key == null ? 0 : key.hashCode();
+      result = 31 * result + message.hashCode();
+      result = 31 * result + (systemId == null ? 0 : systemId.hashCode());
+      result = 31 * result + lineNumber;
+      return 31 * result + columnNumber;
+    }
+  }
 }
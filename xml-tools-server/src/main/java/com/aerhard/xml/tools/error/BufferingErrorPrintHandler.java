@@ -0,0 +1,87 @@
+package com.aerhard.xml.tools.error;
+
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers all reported problems so that they can be passed on to any number of other ErrorPrintHandlers,
+ * e.g. the errors of a schema compiled once on behalf of several requests. Like
+ * {@link AccumulatingErrorPrintHandler}, the handler rethrows fatal errors.
+ */
+public class BufferingErrorPrintHandler implements ErrorPrintHandler {
+
+  private interface Event {
+    void replay(ErrorPrintHandler eh) throws SAXParseException;
+  }
+
+  private final List<Event> events = new ArrayList<Event>();
+
+  /**
+   * Reports the buffered problems to another handler in the order they were reported.
+   */
+  public void replay(ErrorPrintHandler eh) {
+    List<Event> events;
+    synchronized (this) {
+      events = new ArrayList<Event>(this.events);
+    }
+    for (Event event : events) {
+      try {
+        event.replay(eh);
+      } catch (SAXParseException e) {
+        // the handler rethrows fatal errors
+      }
+    }
+  }
+
+  private synchronized void add(Event event) {
+    events.add(event);
+  }
+
+  @Override
+  public void warning(final SAXParseException e) {
+    add(new Event() {
+      public void replay(ErrorPrintHandler eh) throws SAXParseException {
+        eh.warning(e);
+      }
+    });
+  }
+
+  @Override
+  public void error(final SAXParseException e) {
+    add(new Event() {
+      public void replay(ErrorPrintHandler eh) {
+        eh.error(e);
+      }
+    });
+  }
+
+  @Override
+  public void fatalError(final SAXParseException e) throws SAXParseException {
+    add(new Event() {
+      public void replay(ErrorPrintHandler eh) throws SAXParseException {
+        eh.fatalError(e);
+      }
+    });
+    throw e;
+  }
+
+  @Override
+  public void printException(final Throwable e) {
+    add(new Event() {
+      public void replay(ErrorPrintHandler eh) {
+        eh.printException(e);
+      }
+    });
+  }
+
+  @Override
+  public void print(final String message) {
+    add(new Event() {
+      public void replay(ErrorPrintHandler eh) {
+        eh.print(message);
+      }
+    });
+  }
+}
@@ -0,0 +1,43 @@
+package com.aerhard.xml.tools.error;
+
+import org.xml.sax.SAXParseException;
+
+/**
+ * ErrorPrintHandler forwarding to a handler that can be replaced, so that objects which take their error
+ * handler at construction time can be reused for requests with different error handlers.
+ */
+public class DelegatingErrorPrintHandler implements ErrorPrintHandler {
+
+  private static final ErrorPrintHandler SILENT = new SilentErrorPrintHandler();
+
+  private volatile ErrorPrintHandler eh = SILENT;
+
+  public void setDelegate(ErrorPrintHandler eh) {
+    this.eh = eh == null ? SILENT : eh;
+  }
+
+  @Override
+  public void warning(SAXParseException e) throws SAXParseException {
+    eh.warning(e);
+  }
+
+  @Override
+  public void error(SAXParseException e) {
+    eh.error(e);
+  }
+
+  @Override
+  public void fatalError(SAXParseException e) throws SAXParseException {
+    eh.fatalError(e);
+  }
+
+  @Override
+  public void printException(Throwable e) {
+    eh.printException(e);
+  }
+
+  @Override
+  public void print(String message) {
+    eh.print(message);
+  }
+}
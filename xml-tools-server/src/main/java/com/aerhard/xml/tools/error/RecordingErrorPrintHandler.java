@@ -0,0 +1,97 @@
+package com.aerhard.xml.tools.error;
+
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Forwards to another ErrorPrintHandler and records the warnings, errors, exceptions and messages
+ * passed to it in the order they were reported, so that a resumed run can report them again. Fatal
+ * errors aren't recorded, since they end the run; the caller of the parser reports them again with
+ * {@link #printException(Throwable)}.
+ */
+public class RecordingErrorPrintHandler implements ErrorPrintHandler {
+
+  public interface Diagnostic {
+    void replay(ErrorPrintHandler eh) throws SAXParseException;
+  }
+
+  private final ErrorPrintHandler eh;
+  private final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+
+  public RecordingErrorPrintHandler(ErrorPrintHandler eh) {
+    this.eh = eh;
+  }
+
+  public synchronized List<Diagnostic> getDiagnostics() {
+    return Collections.unmodifiableList(new ArrayList<Diagnostic>(diagnostics));
+  }
+
+  public synchronized int getDiagnosticCount() {
+    return diagnostics.size();
+  }
+
+  /**
+   * Reports diagnostics recorded in an earlier run again.
+   */
+  public void replay(List<Diagnostic> diagnostics) {
+    for (Diagnostic diagnostic : diagnostics) {
+      try {
+        diagnostic.replay(this);
+      } catch (SAXParseException e) {
+        // the handler rethrows warnings it treats as fatal
+      }
+    }
+  }
+
+  private synchronized void add(Diagnostic diagnostic) {
+    diagnostics.add(diagnostic);
+  }
+
+  @Override
+  public void warning(final SAXParseException e) throws SAXParseException {
+    add(new Diagnostic() {
+      public void replay(ErrorPrintHandler eh) throws SAXParseException {
+        eh.warning(e);
+      }
+    });
+    eh.warning(e);
+  }
+
+  @Override
+  public void error(final SAXParseException e) {
+    add(new Diagnostic() {
+      public void replay(ErrorPrintHandler eh) {
+        eh.error(e);
+      }
+    });
+    eh.error(e);
+  }
+
+  @Override
+  public void fatalError(SAXParseException e) throws SAXParseException {
+    eh.fatalError(e);
+  }
+
+  @Override
+  public void printException(final Throwable e) {
+    add(new Diagnostic() {
+      public void replay(ErrorPrintHandler eh) {
+        eh.printException(e);
+      }
+    });
+    eh.printException(e);
+  }
+
+  @Override
+  public void print(final String message) {
+    add(new Diagnostic() {
+      public void replay(ErrorPrintHandler eh) {
+        eh.print(message);
+      }
+    });
+    eh.print(message);
+  }
+}
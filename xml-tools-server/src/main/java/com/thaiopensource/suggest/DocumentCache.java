@@ -0,0 +1,96 @@
+package com.thaiopensource.suggest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small cache of values computed from a whole document, kept per document version.
+ *
+ * Versions are identified by the length and a fingerprint (64 bit FNV-1a) of the document, so that
+ * repeated suggestions in an unchanged document get the value without parsing the document again.
+ * Computing the fingerprint is a single pass over the bytes.
+ */
+public class DocumentCache<T> {
+
+  public static final int DEFAULT_MAX_ENTRIES = 4;
+
+  private static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+  private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
+  private final Map<Key, T> entries;
+
+  public DocumentCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  public DocumentCache(final int maxEntries) {
+    entries = new LinkedHashMap<Key, T>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, T> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the key of the document in the first length bytes of the array.
+   */
+  public static Key getKey(byte[] bytes, int length) {
+    return new Key(length, fingerprint(FINGERPRINT_SEED, bytes, 0, length));
+  }
+
+  /**
+   * Returns the key of the document in the first length bytes of the array, leaving out the bytes from
+   * excludeStart (inclusive) to excludeEnd (exclusive). Documents differing only in that range, such
+   * as the value of an attribute being edited, get the same key.
+   */
+  public static Key getKey(byte[] bytes, int length, int excludeStart, int excludeEnd) {
+    long fingerprint = fingerprint(FINGERPRINT_SEED, bytes, 0, excludeStart);
+    fingerprint = fingerprint(fingerprint, bytes, excludeEnd, length);
+    return new Key(length - (excludeEnd - excludeStart), fingerprint);
+  }
+
+  private static long fingerprint(long fingerprint, byte[] bytes, int start, int end) {
+    for (int i = start; i < end; i++) {
+      fingerprint ^= bytes[i] & 0xff;
+      fingerprint *= FINGERPRINT_PRIME;
+    }
+    return fingerprint;
+  }
+
+  public synchronized T get(Key key) {
+    return entries.get(key);
+  }
+
+  public synchronized void put(Key key, T value) {
+    entries.put(key, value);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public static final class Key {
+    private final int length;
+    private final long fingerprint;
+
+    private Key(int length, long fingerprint) {
+      this.length = length;
+      this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return length == other.length && fingerprint == other.fingerprint;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * length + (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.thaiopensource.suggest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The normalized documentation strings of the annotated components of a schema, keyed by component
+ * identity.
+ *
+ * Schemas fill the table with {@link #add(Object)} when they are loaded; components not added then
+ * are serialized on their first lookup. Equal strings and equal lists are stored only once, and the
+ * returned lists are unmodifiable, so suggestions can share them.
+ */
+public abstract class DocumentationTable<K> {
+
+  private final Map<K, List<String>> table = new IdentityHashMap<K, List<String>>();
+  private final Map<String, String> strings = new HashMap<String, String>();
+  private final Map<List<String>, List<String>> lists = new HashMap<List<String>, List<String>>();
+
+  /**
+   * Returns the documentation strings of a component, or null if the component has no documentation.
+   */
+  protected abstract List<String> createDocumentation(K component);
+
+  public synchronized void add(K component) {
+    if (!table.containsKey(component)) {
+      table.put(component, intern(createDocumentation(component)));
+    }
+  }
+
+  /**
+   * Returns the documentation of a component as an unmodifiable list, or null if it has none.
+   */
+  public synchronized List<String> get(K component) {
+    List<String> documentation = table.get(component);
+    if (documentation == null && !table.containsKey(component)) {
+      documentation = intern(createDocumentation(component));
+      table.put(component, documentation);
+    }
+    return documentation;
+  }
+
+  private List<String> intern(List<String> documentation) {
+    if (documentation == null) {
+      return null;
+    }
+    List<String> result = lists.get(documentation);
+    if (result == null) {
+      List<String> copy = new ArrayList<String>(documentation.size());
+      for (String s : documentation) {
+        String interned = strings.get(s);
+        if (interned == null) {
+          interned = s;
+          strings.put(s, s);
+        }
+        copy.add(interned);
+      }
+      result = Collections.unmodifiableList(copy);
+      lists.put(result, result);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,19 @@
+package com.thaiopensource.suggest;
+
+/**
+ * A content handler whose state can be saved directly after an end tag and restored later to continue
+ * with the rest of the document without processing the part before the end tag again.
+ */
+public interface Resumable {
+  /**
+   * Returns an immutable snapshot of the current state. Must only be called directly after an
+   * endElement event.
+   */
+  Object saveState();
+
+  /**
+   * Continues from a snapshot returned by {@link #saveState()}, which may have been taken by a
+   * different instance created from the same schema. A snapshot can be restored any number of times.
+   */
+  void restoreState(Object state);
+}
@@ -0,0 +1,8 @@
+package com.thaiopensource.suggest;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.validate.Schema;
+
+public interface ResumableSchema extends Schema {
+  ResumableValidator createResumableValidator(PropertyMap properties);
+}
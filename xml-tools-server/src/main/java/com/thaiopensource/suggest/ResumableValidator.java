@@ -0,0 +1,6 @@
+package com.thaiopensource.suggest;
+
+import com.thaiopensource.validate.Validator;
+
+public interface ResumableValidator extends Validator, Resumable {
+}
@@ -9,6 +9,10 @@ public interface Suggester extends ContentHandler, DTDHandler {
   List<ElementSuggestion> suggestElements(boolean suggestWildcards, boolean suggestNamespaceWildcard);
   String suggestClosingTag();
   List<AttributeNameSuggestion> suggestAttributeNames(boolean suggestWildcards, boolean suggestNamespaceWildcard);
-  List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes);
+  /**
+   * Suggests values of the attribute named in the fragment. The document is the first length bytes of
+   * the array; the suggester has been fed the events of its first headLength bytes.
+   */
+  List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes, int headLength, int length);
   void reset();
 }
@@ -0,0 +1,417 @@
+package com.thaiopensource.suggest;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lenient scanner reporting the start tags in the part of a document after the cursor, which the
+ * suggesters don't get to see as SAX events.
+ *
+ * The scanner works on the UTF-8 bytes of the document and reports each start tag with its attributes
+ * to {@link ContentHandler#startElement}; no other events are reported. Names are resolved against the
+ * namespace declarations found in the scanned part and, below them, against the namespace context at
+ * the cursor. Comments, CDATA sections, processing instructions and declarations are skipped. Scanning
+ * stops at the first malformed tag; the remaining tags are ignored.
+ */
+public final class TagScanner {
+
+  /**
+   * The namespace context at the start of the scanned part.
+   */
+  public interface NamespaceContext {
+    /**
+     * Returns the namespace URI bound to a prefix ("" for the default namespace), or null.
+     */
+    String resolveNamespacePrefix(String prefix);
+  }
+
+  private static final String CHARSET = "UTF-8";
+  private static final String XMLNS = "xmlns";
+  private static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+
+  private static final int TAG_MALFORMED = -1;
+  private static final int TAG_OPEN = 0;
+  private static final int TAG_EMPTY = 1;
+
+  private final byte[] bytes;
+  private final int length;
+  private final NamespaceContext context;
+  private final ContentHandler handler;
+
+  // prefixes and URIs declared in the scanned part, with the number of declarations per open element
+  private final List<String> prefixes = new ArrayList<String>();
+  private final List<String> uris = new ArrayList<String>();
+  private final List<Integer> declarationCounts = new ArrayList<Integer>();
+
+  private int pos;
+
+  private TagScanner(byte[] bytes, int length, NamespaceContext context, ContentHandler handler) {
+    this.bytes = bytes;
+    this.length = length;
+    this.context = context;
+    this.handler = handler;
+  }
+
+  /**
+   * Returns true if the document, the first length bytes of the array, is encoded in UTF-8 (or
+   * US-ASCII), which is what the scanner expects.
+   */
+  public static boolean isUtf8(byte[] bytes, int length) {
+    if (length >= 2 && ((bytes[0] & 0xff) == 0xfe || (bytes[0] & 0xff) == 0xff || bytes[0] == 0 || bytes[1] == 0)) {
+      return false;
+    }
+    int start = length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf ? 3 : 0;
+    if (!startsWith(bytes, length, start, "<?xml")) {
+      return true;
+    }
+    int end = indexOf(bytes, length, start, "?>");
+    if (end < 0) {
+      return true;
+    }
+    String declaration;
+    try {
+      declaration = new String(bytes, start, end - start, CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    int encodingIndex = declaration.indexOf("encoding");
+    if (encodingIndex < 0) {
+      return true;
+    }
+    String encoding = declaration.substring(encodingIndex + "encoding".length()).replaceAll("^[\\s=]*[\"']", "");
+    encoding = encoding.replaceAll("[\"'].*$", "").trim();
+    return "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding)
+        || "US-ASCII".equalsIgnoreCase(encoding) || "ASCII".equalsIgnoreCase(encoding);
+  }
+
+  /**
+   * Reports the start tags after the cursor at the byte offset cursor. If the cursor is inside a start
+   * tag, that tag gets reported as well, since a parser of the document up to the cursor wouldn't have
+   * reported it.
+   */
+  public static void scan(byte[] bytes, int cursor, int length, NamespaceContext context, ContentHandler handler)
+      throws SAXException {
+    TagScanner scanner = new TagScanner(bytes, length, context, handler);
+    scanner.pos = scanner.findStart(Math.min(cursor, length));
+    scanner.scan();
+  }
+
+  private int findStart(int cursor) {
+    int tagStart = cursor - 1;
+    while (tagStart >= 0 && bytes[tagStart] != '<') {
+      tagStart--;
+    }
+    if (tagStart < 0 || tagStart + 1 >= length || !isNameStart(bytes[tagStart + 1])) {
+      return cursor;
+    }
+    // the cursor is inside the start tag if the tag isn't closed before the cursor
+    byte quote = 0;
+    for (int i = tagStart + 1; i < cursor; i++) {
+      byte b = bytes[i];
+      if (quote != 0) {
+        if (b == quote) {
+          quote = 0;
+        }
+      } else if (b == '"' || b == '\'') {
+        quote = b;
+      } else if (b == '>') {
+        return cursor;
+      }
+    }
+    return tagStart;
+  }
+
+  private void scan() throws SAXException {
+    while (true) {
+      int tagStart = indexOf(bytes, length, pos, "<");
+      if (tagStart < 0 || tagStart + 1 >= length) {
+        return;
+      }
+      pos = tagStart;
+      if (startsWith(bytes, length, pos, "<!--")) {
+        pos = skipPast("-->");
+      } else if (startsWith(bytes, length, pos, "<![CDATA[")) {
+        pos = skipPast("]]>");
+      } else if (startsWith(bytes, length, pos, "<?")) {
+        pos = skipPast("?>");
+      } else if (startsWith(bytes, length, pos, "<!")) {
+        pos = skipPast(">");
+      } else if (startsWith(bytes, length, pos, "</")) {
+        pos = skipPast(">");
+        endElement();
+      } else if (isNameStart(bytes[pos + 1])) {
+        pos++;
+        if (!startTag()) {
+          return;
+        }
+      } else {
+        pos++;
+      }
+      if (pos < 0) {
+        return;
+      }
+    }
+  }
+
+  private int skipPast(String s) {
+    int index = indexOf(bytes, length, pos, s);
+    return index < 0 ? -1 : index + s.length();
+  }
+
+  /**
+   * Returns the start (inclusive) and end (exclusive) offset of the value of an attribute in the start
+   * tag containing the cursor or ending right before it, or null if there is no such attribute.
+   */
+  public static int[] findAttributeValue(byte[] bytes, int cursor, int length, String qName) {
+    TagScanner scanner = new TagScanner(bytes, length, null, null);
+    int tagStart = cursor - 1;
+    while (tagStart >= 0 && bytes[tagStart] != '<') {
+      tagStart--;
+    }
+    if (tagStart < 0 || tagStart + 1 >= length || !isNameStart(bytes[tagStart + 1])) {
+      return null;
+    }
+    scanner.pos = tagStart + 1;
+    scanner.readName();
+    List<String> names = new ArrayList<String>();
+    List<Integer> valueStarts = new ArrayList<Integer>();
+    List<Integer> valueEnds = new ArrayList<Integer>();
+    scanner.readAttributes(names, valueStarts, valueEnds);
+    int index = names.indexOf(qName);
+    return index < 0 ? null : new int[]{valueStarts.get(index), valueEnds.get(index)};
+  }
+
+  /**
+   * Reads the attributes of a start tag up to its end, recording their names and the offsets of their
+   * values. Returns TAG_OPEN or TAG_EMPTY if the tag is complete and TAG_MALFORMED otherwise; in that
+   * case, the attributes read before the error have been recorded.
+   */
+  private int readAttributes(List<String> names, List<Integer> valueStarts, List<Integer> valueEnds) {
+    while (true) {
+      skipWhitespace();
+      if (pos >= length) {
+        return TAG_MALFORMED;
+      }
+      if (bytes[pos] == '>') {
+        pos++;
+        return TAG_OPEN;
+      }
+      if (bytes[pos] == '/' && pos + 1 < length && bytes[pos + 1] == '>') {
+        pos += 2;
+        return TAG_EMPTY;
+      }
+      if (!isNameStart(bytes[pos])) {
+        return TAG_MALFORMED;
+      }
+      String name = readName();
+      skipWhitespace();
+      if (pos >= length || bytes[pos] != '=') {
+        return TAG_MALFORMED;
+      }
+      pos++;
+      skipWhitespace();
+      if (pos >= length || (bytes[pos] != '"' && bytes[pos] != '\'')) {
+        return TAG_MALFORMED;
+      }
+      byte quote = bytes[pos++];
+      int valueStart = pos;
+      while (pos < length && bytes[pos] != quote) {
+        if (bytes[pos] == '<') {
+          return TAG_MALFORMED;
+        }
+        pos++;
+      }
+      if (pos >= length) {
+        return TAG_MALFORMED;
+      }
+      names.add(name);
+      valueStarts.add(valueStart);
+      valueEnds.add(pos);
+      pos++;
+    }
+  }
+
+  /**
+   * Reads a start tag from its name on; returns false if the tag is malformed or incomplete.
+   */
+  private boolean startTag() throws SAXException {
+    String qName = readName();
+    List<String> attributeNames = new ArrayList<String>();
+    List<Integer> valueStarts = new ArrayList<Integer>();
+    List<Integer> valueEnds = new ArrayList<Integer>();
+    int tagType = readAttributes(attributeNames, valueStarts, valueEnds);
+    if (tagType == TAG_MALFORMED) {
+      return false;
+    }
+    List<String> attributeValues = new ArrayList<String>(attributeNames.size());
+    for (int i = 0; i < attributeNames.size(); i++) {
+      attributeValues.add(decodeValue(valueStarts.get(i), valueEnds.get(i)));
+    }
+
+    int declarationCount = 0;
+    for (int i = 0; i < attributeNames.size(); i++) {
+      String name = attributeNames.get(i);
+      if (XMLNS.equals(name) || name.startsWith(XMLNS + ":")) {
+        prefixes.add(XMLNS.equals(name) ? "" : name.substring(XMLNS.length() + 1));
+        uris.add(attributeValues.get(i));
+        declarationCount++;
+      }
+    }
+    declarationCounts.add(declarationCount);
+
+    AttributesImpl atts = new AttributesImpl();
+    for (int i = 0; i < attributeNames.size(); i++) {
+      String name = attributeNames.get(i);
+      if (XMLNS.equals(name) || name.startsWith(XMLNS + ":")) {
+        continue;
+      }
+      int colonIndex = name.indexOf(':');
+      String uri = colonIndex < 0 ? "" : resolve(name.substring(0, colonIndex));
+      String localName = colonIndex < 0 ? name : name.substring(colonIndex + 1);
+      atts.addAttribute(uri == null ? "" : uri, localName, name, "CDATA", attributeValues.get(i));
+    }
+
+    int colonIndex = qName.indexOf(':');
+    String uri = resolve(colonIndex < 0 ? "" : qName.substring(0, colonIndex));
+    String localName = colonIndex < 0 ? qName : qName.substring(colonIndex + 1);
+    handler.startElement(uri == null ? "" : uri, localName, qName, atts);
+
+    if (tagType == TAG_EMPTY) {
+      endElement();
+    }
+    return true;
+  }
+
+  private void endElement() {
+    // end tags of elements opened before the scanned part leave the context at the cursor unchanged
+    if (!declarationCounts.isEmpty()) {
+      int declarationCount = declarationCounts.remove(declarationCounts.size() - 1);
+      for (int i = 0; i < declarationCount; i++) {
+        prefixes.remove(prefixes.size() - 1);
+        uris.remove(uris.size() - 1);
+      }
+    }
+  }
+
+  private String resolve(String prefix) {
+    if ("xml".equals(prefix)) {
+      return "http://www.w3.org/XML/1998/namespace";
+    }
+    if (XMLNS.equals(prefix)) {
+      return XMLNS_URI;
+    }
+    for (int i = prefixes.size() - 1; i >= 0; i--) {
+      if (prefixes.get(i).equals(prefix)) {
+        String uri = uris.get(i);
+        return uri.isEmpty() ? null : uri;
+      }
+    }
+    return context == null ? null : context.resolveNamespacePrefix(prefix);
+  }
+
+  private String readName() {
+    int start = pos;
+    while (pos < length && isNameChar(bytes[pos])) {
+      pos++;
+    }
+    return decode(start, pos);
+  }
+
+  private void skipWhitespace() {
+    while (pos < length && (bytes[pos] == ' ' || bytes[pos] == '\t' || bytes[pos] == '\n' || bytes[pos] == '\r')) {
+      pos++;
+    }
+  }
+
+  /**
+   * Decodes an attribute value, replacing character and predefined entity references and normalizing
+   * whitespace as an XML parser would. References to other entities are kept as they are.
+   */
+  private String decodeValue(int start, int end) {
+    String raw = decode(start, end);
+    if (raw.indexOf('&') < 0 && raw.indexOf('\t') < 0 && raw.indexOf('\n') < 0 && raw.indexOf('\r') < 0) {
+      return raw;
+    }
+    StringBuilder sb = new StringBuilder(raw.length());
+    for (int i = 0; i < raw.length(); i++) {
+      char c = raw.charAt(i);
+      if (c == '\t' || c == '\n' || c == '\r') {
+        sb.append(' ');
+      } else if (c == '&') {
+        int semicolonIndex = raw.indexOf(';', i);
+        String replacement = semicolonIndex < 0 ? null : resolveReference(raw.substring(i + 1, semicolonIndex));
+        if (replacement == null) {
+          sb.append(c);
+        } else {
+          sb.append(replacement);
+          i = semicolonIndex;
+        }
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String resolveReference(String name) {
+    if ("lt".equals(name)) return "<";
+    if ("gt".equals(name)) return ">";
+    if ("amp".equals(name)) return "&";
+    if ("quot".equals(name)) return "\"";
+    if ("apos".equals(name)) return "'";
+    try {
+      if (name.startsWith("#x")) {
+        return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+      }
+      if (name.startsWith("#")) {
+        return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+      }
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return null;
+  }
+
+  private String decode(int start, int end) {
+    try {
+      return new String(bytes, start, end - start, CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static boolean isNameStart(byte b) {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == ':' || (b & 0x80) != 0;
+  }
+
+  private static boolean isNameChar(byte b) {
+    return isNameStart(b) || (b >= '0' && b <= '9') || b == '-' || b == '.';
+  }
+
+  private static boolean startsWith(byte[] bytes, int length, int offset, String prefix) {
+    if (offset + prefix.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (bytes[offset + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] bytes, int length, int from, String s) {
+    byte first = (byte) s.charAt(0);
+    for (int i = from; i <= length - s.length(); i++) {
+      if (bytes[i] == first && startsWith(bytes, length, i, s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
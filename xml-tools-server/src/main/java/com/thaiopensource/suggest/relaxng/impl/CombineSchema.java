@@ -2,6 +2,8 @@ package com.thaiopensource.suggest.relaxng.impl;
 
 // slightly extended version of com.thaiopensource.validate.CombineSchema
 
+import com.thaiopensource.suggest.ResumableSchema;
+import com.thaiopensource.suggest.ResumableValidator;
 import com.thaiopensource.suggest.Suggester;
 import com.thaiopensource.suggest.SuggesterSchema;
 import com.thaiopensource.suggest.relaxng.impl.IdTypeMapSchema;
@@ -13,7 +15,7 @@ import com.thaiopensource.validate.CombineValidator;
 import com.thaiopensource.validate.Schema;
 import com.thaiopensource.validate.Validator;
 
-public class CombineSchema extends AbstractSchema implements SuggesterSchema {
+public class CombineSchema extends AbstractSchema implements SuggesterSchema, ResumableSchema {
   private final PatternSchema schema1;
   private final IdTypeMapSchema schema2;
 
@@ -32,4 +34,9 @@ public class CombineSchema extends AbstractSchema implements SuggesterSchema {
         schema2.createValidator(properties));
   }
 
+  public ResumableValidator createResumableValidator(PropertyMap properties) {
+    return new ResumableCombineValidator(schema1.createValidator(properties),
+        schema2.createValidator(properties));
+  }
+
 }
@@ -1,5 +1,7 @@
 package com.thaiopensource.suggest.relaxng.impl;
 
+import com.thaiopensource.suggest.DocumentCache;
+import com.thaiopensource.suggest.TagScanner;
 import com.thaiopensource.suggest.relaxng.pattern.IdTypeMap;
 import com.thaiopensource.suggest.relaxng.pattern.SchemaBuilderImpl;
 import com.thaiopensource.xml.sax.Sax2XMLReaderCreator;
@@ -14,15 +16,26 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * Collects the IDs of a document. The suggester reports the attributes of the start tags before the
+ * cursor with {@link #maybeAddId}; the rest of the document is scanned only when IDs are requested, and
+ * the complete set of IDs is cached per document version.
+ */
 public class IdSuggester implements ContentHandler {
   private final IdTypeMap idTypeMap;
   private final ErrorHandler eh;
+  private final DocumentCache<Set<String>> cache;
 
-  private final Set ids = new HashSet<String>();
+  private Set<String> ids = new HashSet<String>();
 
   public IdSuggester(IdTypeMap idTypeMap, ErrorHandler eh) {
+    this(idTypeMap, eh, new DocumentCache<Set<String>>());
+  }
+
+  public IdSuggester(IdTypeMap idTypeMap, ErrorHandler eh, DocumentCache<Set<String>> cache) {
     this.idTypeMap = idTypeMap;
     this.eh = eh;
+    this.cache = cache;
   }
 
   @Override
@@ -72,8 +85,48 @@ public class IdSuggester implements ContentHandler {
     ids.clear();
   }
 
-  public Set<String> getIds(byte[] bytes) {
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+  /**
+   * Returns a copy of the IDs collected so far, for saving the state of the suggester.
+   */
+  public Set<String> copyIds() {
+    return new HashSet<String>(ids);
+  }
+
+  public void restoreIds(Set<String> ids) {
+    this.ids = new HashSet<String>(ids);
+  }
+
+  /**
+   * Returns the IDs of the document in the first length bytes of the array, whose first headLength
+   * bytes have been reported to this object already. Names in the rest of the document are resolved
+   * against the namespace context at the cursor.
+   */
+  public Set<String> getIds(byte[] bytes, int headLength, int length, TagScanner.NamespaceContext context) {
+    DocumentCache.Key key = DocumentCache.getKey(bytes, length);
+    Set<String> cached = cache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    try {
+      if (TagScanner.isUtf8(bytes, length)) {
+        TagScanner.scan(bytes, headLength, length, context, this);
+      } else {
+        parse(bytes, length);
+      }
+    } catch (SAXException e) {
+      // keep the IDs found before the error
+    }
+    Set<String> result = Collections.unmodifiableSet(new HashSet<String>(ids));
+    cache.put(key, result);
+    return result;
+  }
+
+  /**
+   * Collects the IDs of the whole document with an XML parser; used for documents in encodings
+   * the tag scanner doesn't read.
+   */
+  private void parse(byte[] bytes, int length) {
+    ByteArrayInputStream bais = new ByteArrayInputStream(bytes, 0, length);
 
     try {
       Sax2XMLReaderCreator xrc = new Sax2XMLReaderCreator();
@@ -92,9 +145,6 @@ public class IdSuggester implements ContentHandler {
     } catch (FileNotFoundException e) {
     } catch (SAXException e) {
     } catch (IOException e) {
-    } finally {
-      bytes = null;
-      return ids;
     }
   }
 
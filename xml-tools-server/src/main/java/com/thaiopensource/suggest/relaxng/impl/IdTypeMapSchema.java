@@ -4,7 +4,6 @@ import com.thaiopensource.suggest.relaxng.pattern.IdTypeMap;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.AbstractSchema;
 import com.thaiopensource.validate.ValidateProperty;
-import com.thaiopensource.validate.Validator;
 import org.xml.sax.ErrorHandler;
 
 public class IdTypeMapSchema extends AbstractSchema {
@@ -19,7 +18,7 @@ public class IdTypeMapSchema extends AbstractSchema {
     return idTypeMap;
   }
 
-  public Validator createValidator(PropertyMap properties) {
+  public IdValidator createValidator(PropertyMap properties) {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
     return new IdValidator(idTypeMap, eh);
   }
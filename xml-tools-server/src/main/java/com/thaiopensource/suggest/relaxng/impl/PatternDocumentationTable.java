@@ -0,0 +1,32 @@
+package com.thaiopensource.suggest.relaxng.impl;
+
+import com.thaiopensource.relaxng.edit.Annotated;
+import com.thaiopensource.suggest.DocumentationTable;
+import com.thaiopensource.suggest.relaxng.pattern.AnnotationCollector;
+import com.thaiopensource.suggest.relaxng.pattern.Pattern;
+
+import java.util.List;
+
+/**
+ * The documentation of the annotated patterns and name classes of a schema.
+ */
+class PatternDocumentationTable extends DocumentationTable<Annotated> {
+
+  PatternDocumentationTable() {
+  }
+
+  /**
+   * Creates a table holding the documentation of all annotated patterns and name classes reachable
+   * from start.
+   */
+  PatternDocumentationTable(Pattern start) {
+    for (Annotated a : AnnotationCollector.collect(start)) {
+      add(a);
+    }
+  }
+
+  @Override
+  protected List<String> createDocumentation(Annotated component) {
+    return AnnotationSerializer.getAnnotationStrings(component);
+  }
+}
@@ -1,35 +1,42 @@
 package com.thaiopensource.suggest.relaxng.impl;
 
+import com.thaiopensource.suggest.DocumentCache;
 import com.thaiopensource.suggest.Suggester;
 import com.thaiopensource.suggest.SuggesterSchema;
 import com.thaiopensource.suggest.relaxng.pattern.IdTypeMap;
 import com.thaiopensource.suggest.relaxng.pattern.Pattern;
 import com.thaiopensource.suggest.relaxng.pattern.SchemaPatternBuilder;
-import com.thaiopensource.suggest.relaxng.pattern.ValidatorPatternBuilder;
+import com.thaiopensource.suggest.relaxng.pattern.ValidatorPatternBuilderPool;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.AbstractSchema;
 import com.thaiopensource.validate.ValidateProperty;
-import com.thaiopensource.validate.Validator;
 import org.xml.sax.ErrorHandler;
 
+import java.util.Set;
+
 public class PatternSchema extends AbstractSchema {
   private final SchemaPatternBuilder spb;
   private final Pattern start;
+  private final ValidatorPatternBuilderPool builderPool;
+  private final DocumentCache<Set<String>> idCache = new DocumentCache<Set<String>>();
+  private final PatternDocumentationTable documentation;
 
   public PatternSchema(SchemaPatternBuilder spb, Pattern start, PropertyMap properties) {
     super(properties);
     this.spb = spb;
     this.start = start;
+    this.builderPool = new ValidatorPatternBuilderPool(spb);
+    this.documentation = new PatternDocumentationTable(start);
   }
 
   public Suggester createSuggester(PropertyMap properties, IdTypeMap idTypeMap) {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
-    return new SuggesterImpl(start, new ValidatorPatternBuilder(spb), idTypeMap, eh);
+    return new SuggesterImpl(start, builderPool, idTypeMap, eh, idCache, documentation);
   }
 
-  public Validator createValidator(PropertyMap properties) {
+  public RngValidator createValidator(PropertyMap properties) {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
-    return new RngValidator(start, new ValidatorPatternBuilder(spb), eh);
+    return new RngValidator(start, builderPool, eh);
   }
 }
 
@@ -0,0 +1,100 @@
+package com.thaiopensource.suggest.relaxng.impl;
+
+import com.thaiopensource.suggest.ResumableValidator;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Combination of an RngValidator and an IdValidator like the validator returned by
+ * CombineSchema.createValidator whose state can be saved and restored.
+ */
+public class ResumableCombineValidator implements ResumableValidator, ContentHandler {
+  private final RngValidator rngValidator;
+  private final IdValidator idValidator;
+
+  public ResumableCombineValidator(RngValidator rngValidator, IdValidator idValidator) {
+    this.rngValidator = rngValidator;
+    this.idValidator = idValidator;
+  }
+
+  public ContentHandler getContentHandler() {
+    return this;
+  }
+
+  public DTDHandler getDTDHandler() {
+    return rngValidator;
+  }
+
+  public void reset() {
+    rngValidator.reset();
+    idValidator.reset();
+  }
+
+  public Object saveState() {
+    return new Object[]{rngValidator.saveState(), idValidator.saveState()};
+  }
+
+  public void restoreState(Object state) {
+    Object[] states = (Object[]) state;
+    rngValidator.restoreState(states[0]);
+    idValidator.restoreState(states[1]);
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    rngValidator.setDocumentLocator(locator);
+    idValidator.setDocumentLocator(locator);
+  }
+
+  public void startDocument() throws SAXException {
+    rngValidator.startDocument();
+    idValidator.startDocument();
+  }
+
+  public void endDocument() throws SAXException {
+    rngValidator.endDocument();
+    idValidator.endDocument();
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    rngValidator.startPrefixMapping(prefix, uri);
+    idValidator.startPrefixMapping(prefix, uri);
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    rngValidator.endPrefixMapping(prefix);
+    idValidator.endPrefixMapping(prefix);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    rngValidator.startElement(uri, localName, qName, atts);
+    idValidator.startElement(uri, localName, qName, atts);
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    rngValidator.endElement(uri, localName, qName);
+    idValidator.endElement(uri, localName, qName);
+  }
+
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    rngValidator.characters(ch, start, length);
+    idValidator.characters(ch, start, length);
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    rngValidator.ignorableWhitespace(ch, start, length);
+    idValidator.ignorableWhitespace(ch, start, length);
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    rngValidator.processingInstruction(target, data);
+    idValidator.processingInstruction(target, data);
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    rngValidator.skippedEntity(name);
+    idValidator.skippedEntity(name);
+  }
+}
@@ -2,15 +2,15 @@ package com.thaiopensource.suggest.relaxng.impl;
 
 import com.thaiopensource.suggest.relaxng.sax.PatternValidator;
 import com.thaiopensource.suggest.relaxng.pattern.Pattern;
-import com.thaiopensource.suggest.relaxng.pattern.ValidatorPatternBuilder;
+import com.thaiopensource.suggest.relaxng.pattern.ValidatorPatternBuilderPool;
 import com.thaiopensource.validate.Validator;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
 import org.xml.sax.ErrorHandler;
 
 public class RngValidator extends PatternValidator implements Validator {
-  public RngValidator(Pattern pattern, ValidatorPatternBuilder builder, ErrorHandler eh) {
-    super(pattern, builder, eh);
+  public RngValidator(Pattern pattern, ValidatorPatternBuilderPool builderPool, ErrorHandler eh) {
+    super(pattern, builderPool, eh);
   }
 
   public ContentHandler getContentHandler() {
@@ -16,11 +16,15 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
 
 import java.util.*;
 
-public class SuggesterImpl extends Context implements Suggester {
+public class SuggesterImpl extends Context implements Suggester, Resumable {
 
+  private final Pattern pattern;
+  private final ValidatorPatternBuilderPool builderPool;
+  private ValidatorPatternBuilder builder;
   private PatternMatcher matcher;
   private final ErrorHandler eh;
   private boolean bufferingCharacters = false;
@@ -32,11 +36,39 @@ public class SuggesterImpl extends Context implements Suggester {
   private Stack<String> qNames = new Stack<String>();
 
   private final IdSuggester idSuggester;
+  private final PatternDocumentationTable documentation;
 
-  public SuggesterImpl(Pattern pattern, ValidatorPatternBuilder builder, IdTypeMap idTypeMap, ErrorHandler eh) {
-    this.matcher = new PatternMatcher(pattern, builder);
-    this.idSuggester = new IdSuggester(idTypeMap, eh);
+  private final TagScanner.NamespaceContext namespaceContext = new TagScanner.NamespaceContext() {
+    @Override
+    public String resolveNamespacePrefix(String prefix) {
+      return SuggesterImpl.this.resolveNamespacePrefix(prefix);
+    }
+  };
+
+  private final StartTagSuggestion.DocumentationFunction documentationFunction
+      = new StartTagSuggestion.DocumentationFunction() {
+    @Override
+    public List<String> getDocumentation(Pattern pattern, NameClass nameClass) {
+      return createAnnotations(pattern, nameClass);
+    }
+  };
+
+  public SuggesterImpl(Pattern pattern, ValidatorPatternBuilderPool builderPool, IdTypeMap idTypeMap, ErrorHandler eh) {
+    this(pattern, builderPool, idTypeMap, eh, new DocumentCache<Set<String>>(), new PatternDocumentationTable());
+  }
+
+  /**
+   * Creates a suggester sharing the cache of document IDs and the documentation table with the other
+   * suggesters of a schema.
+   */
+  SuggesterImpl(Pattern pattern, ValidatorPatternBuilderPool builderPool, IdTypeMap idTypeMap, ErrorHandler eh,
+                DocumentCache<Set<String>> idCache, PatternDocumentationTable documentation) {
+    this.pattern = pattern;
+    this.builderPool = builderPool;
+    this.idSuggester = new IdSuggester(idTypeMap, eh, idCache);
+    this.documentation = documentation;
     this.eh = eh;
+    acquireMatcher();
   }
 
   public void startElement(String namespaceURI,
@@ -62,6 +94,7 @@ public class SuggesterImpl extends Context implements Suggester {
       String attValue = atts.getValue(i);
       check(matcher.matchAttributeName(attName, attQName, this));
       check(matcher.matchAttributeValue(attValue, attName, attQName, this));
+      idSuggester.maybeAddId(name, attName, attValue);
     }
     check(matcher.matchStartTagClose(name, qName, this));
     if (matcher.isTextTyped()) {
@@ -112,6 +145,8 @@ public class SuggesterImpl extends Context implements Suggester {
   }
 
   public void startDocument() throws SAXException {
+    if (matcher == null)
+      acquireMatcher();
     check(matcher.matchStartDocument());
   }
 
@@ -140,14 +175,77 @@ public class SuggesterImpl extends Context implements Suggester {
     return this;
   }
 
+  /**
+   * Resets the suggester and returns its pattern builder to the pool; a builder is acquired again
+   * with the start of the next document.
+   */
   public void reset() {
     super.reset();
     bufferingCharacters = false;
     locator = null;
-    matcher = (PatternMatcher) matcher.start();
+    lastName = null;
+    lastAtts = null;
+    qNames.clear();
+    releaseMatcher();
     idSuggester.reset();
   }
 
+  /**
+   * Returns the state after the last end tag, see {@link Resumable}.
+   */
+  public Object saveState() {
+    Stack<String> qNamesCopy = new Stack<String>();
+    qNamesCopy.addAll(qNames);
+    return new State(matcher.copy(builder), prefixMapping, qNamesCopy, lastName,
+        lastAtts == null ? null : new AttributesImpl(lastAtts), idSuggester.copyIds());
+  }
+
+  public void restoreState(Object state) {
+    State s = (State) state;
+    if (matcher == null)
+      acquireMatcher();
+    matcher = s.matcher.copy(builder);
+    prefixMapping = s.prefixMapping;
+    qNames = new Stack<String>();
+    qNames.addAll(s.qNames);
+    lastName = s.lastName;
+    lastAtts = s.lastAtts;
+    idSuggester.restoreIds(s.ids);
+    bufferingCharacters = false;
+  }
+
+  private static final class State {
+    private final PatternMatcher matcher;
+    private final PrefixMapping prefixMapping;
+    private final Stack<String> qNames;
+    private final Name lastName;
+    private final Attributes lastAtts;
+    private final Set<String> ids;
+
+    State(PatternMatcher matcher, PrefixMapping prefixMapping, Stack<String> qNames, Name lastName,
+          Attributes lastAtts, Set<String> ids) {
+      this.matcher = matcher;
+      this.prefixMapping = prefixMapping;
+      this.qNames = qNames;
+      this.lastName = lastName;
+      this.lastAtts = lastAtts;
+      this.ids = ids;
+    }
+  }
+
+  private void acquireMatcher() {
+    builder = builderPool.acquire();
+    matcher = new PatternMatcher(pattern, builder);
+  }
+
+  private void releaseMatcher() {
+    if (builder != null) {
+      builderPool.release(builder);
+      builder = null;
+      matcher = null;
+    }
+  }
+
   private void check(boolean ok) throws SAXException {
     if (!ok)
       eh.error(new SAXParseException(matcher.getErrorMessage(), locator));
@@ -207,32 +305,22 @@ public class SuggesterImpl extends Context implements Suggester {
     if (nss.hasNamedInclusions()) {
       Map<String, String> attributeNsPrefixMap = getAttributeNsPrefixMap();
 
-      Set<NameSuggestion> names = nss.getIncludedNames();
-
-      for (NameSuggestion mentionedName : names) {
-        Name name = mentionedName.getName();
+      for (StartTagSuggestion s : matcher.getStartTagSuggestions(documentationFunction)) {
+        Name name = s.getName();
         String value = createNameValue(name.getLocalName(), name.getNamespaceUri(), elementNsPrefixMap);
 
-        matcher.matchStartTagOpen(name, "", this);
-
-        Set<Name> allRequiredAttNames = matcher.requiredAttributeNames();
+        List<Name> requiredAttNames = s.getRequiredAttributeNames();
         List<String> attributes = null;
 
-        if (!allRequiredAttNames.isEmpty()) {
+        if (!requiredAttNames.isEmpty()) {
           attributes = new ArrayList<String>();
-          for (Name attName : allRequiredAttNames) {
+          for (Name attName : requiredAttNames) {
             attributes.add(createNameValue(attName.getLocalName(),
                 attName.getNamespaceUri(), attributeNsPrefixMap));
           }
         }
 
-        matcher.matchStartTagClose(name, "", this);
-
-        boolean isEmpty = matcher.hasEmptyContent();
-
-        List<String> annotations = createAnnotations(mentionedName.getPattern(), mentionedName.getNameClass());
-
-        suggestions.add(new ElementSuggestion(value, annotations, attributes, isEmpty, false));
+        suggestions.add(new ElementSuggestion(value, s.getDocumentation(), attributes, s.hasEmptyContent(), false));
       }
 
       if (suggestWildcards) {
@@ -251,18 +339,19 @@ public class SuggesterImpl extends Context implements Suggester {
   }
 
   private List<String> createAnnotations(Pattern pattern, NameClass nameClass) {
-    List<String> patternAnnotations = AnnotationSerializer.getAnnotationStrings(pattern);
-    List<String> nameClassAnnotations = AnnotationSerializer.getAnnotationStrings(nameClass);
+    List<String> patternAnnotations = documentation.get(pattern);
+    List<String> nameClassAnnotations = nameClass == null ? null : documentation.get(nameClass);
 
     boolean hasPatternAnnotations = patternAnnotations != null && !patternAnnotations.isEmpty();
     boolean hasNameClassAnnotations = nameClassAnnotations != null && !nameClassAnnotations.isEmpty();
 
-    if (hasPatternAnnotations || hasNameClassAnnotations) {
-      List<String> result = new ArrayList<String>();
-      if (hasPatternAnnotations) result.addAll(patternAnnotations);
-      if (hasNameClassAnnotations) result.addAll(nameClassAnnotations);
+    if (hasPatternAnnotations && hasNameClassAnnotations) {
+      List<String> result = new ArrayList<String>(patternAnnotations);
+      result.addAll(nameClassAnnotations);
       return result;
     }
+    if (hasPatternAnnotations) return patternAnnotations;
+    if (hasNameClassAnnotations) return nameClassAnnotations;
     return null;
   }
 
@@ -327,7 +416,8 @@ public class SuggesterImpl extends Context implements Suggester {
   }
 
   @Override
-  public List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes) {
+  public List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes, int headLength,
+                                                             int length) {
     List<AttributeValueSuggestion> suggestions = new ArrayList<AttributeValueSuggestion>();
 
     if (lastName == null) {
@@ -349,12 +439,12 @@ public class SuggesterImpl extends Context implements Suggester {
       int idType = idSuggester.getIdType(lastName, name);
 
       if (idType == Datatype.ID_TYPE_IDREF) {
-        Set<String> ids = idSuggester.getIds(bytes);
+        Set<String> ids = idSuggester.getIds(bytes, headLength, length, namespaceContext);
         for (String id : ids) {
           suggestions.add(new AttributeValueSuggestion(id, null, false));
         }
       } else if (idType == Datatype.ID_TYPE_IDREFS) {
-        Set<String> ids = idSuggester.getIds(bytes);
+        Set<String> ids = idSuggester.getIds(bytes, headLength, length, namespaceContext);
         for (String id : ids) {
           suggestions.add(new AttributeValueSuggestion(id, null, true));
         }
@@ -380,7 +470,7 @@ public class SuggesterImpl extends Context implements Suggester {
         }
 
         if (hasAnyUri) {
-          Set<String> ids = idSuggester.getIds(bytes);
+          Set<String> ids = idSuggester.getIds(bytes, headLength, length, namespaceContext);
           for (String id : ids) {
             suggestions.add(new AttributeValueSuggestion("#" + id, null, anyUriInList));
           }
@@ -0,0 +1,144 @@
+package com.thaiopensource.suggest.relaxng.pattern;
+
+import com.thaiopensource.relaxng.edit.Annotated;
+import com.thaiopensource.util.VoidValue;
+import com.thaiopensource.xml.util.Name;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * Collects the patterns and name classes reachable from a start pattern that carry element
+ * annotations, so that their documentation can be prepared when the schema is loaded.
+ */
+public class AnnotationCollector {
+  private final List<Annotated> annotated = new ArrayList<Annotated>();
+  private final Set<Pattern> patternsProcessed = new HashSet<Pattern>();
+  private final Stack<ElementPattern> elementsToProcess = new Stack<ElementPattern>();
+  private final PatternFunction<VoidValue> collectFunction = new CollectFunction();
+  private final NameClassVisitor nameClassVisitor = new CollectNameClassVisitor();
+
+  private AnnotationCollector() {
+  }
+
+  public static List<Annotated> collect(Pattern start) {
+    AnnotationCollector collector = new AnnotationCollector();
+    collector.visit(start);
+    while (!collector.elementsToProcess.empty()) {
+      ElementPattern p = collector.elementsToProcess.pop();
+      collector.visit(p.getNameClass());
+      collector.visit(p.getContent());
+    }
+    return collector.annotated;
+  }
+
+  private void visit(Pattern p) {
+    if (patternsProcessed.add(p)) {
+      note(p);
+      p.apply(collectFunction);
+    }
+  }
+
+  private void visit(NameClass nc) {
+    note(nc);
+    nc.accept(nameClassVisitor);
+  }
+
+  private void note(Annotated a) {
+    if (!a.getChildElementAnnotations().isEmpty() || !a.getFollowingElementAnnotations().isEmpty())
+      annotated.add(a);
+  }
+
+  private class CollectFunction extends AbstractPatternFunction<VoidValue> {
+    private VoidValue caseBinary(BinaryPattern p) {
+      visit(p.getOperand1());
+      visit(p.getOperand2());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseGroup(GroupPattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseInterleave(InterleavePattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseChoice(ChoicePattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseAfter(AfterPattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseOneOrMore(OneOrMorePattern p) {
+      visit(p.getOperand());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseList(ListPattern p) {
+      visit(p.getOperand());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseDataExcept(DataExceptPattern p) {
+      visit(p.getExcept());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseRef(RefPattern p) {
+      if (p.getPattern() != null)
+        visit(p.getPattern());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseElement(ElementPattern p) {
+      elementsToProcess.push(p);
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseAttribute(AttributePattern p) {
+      visit(p.getNameClass());
+      visit(p.getContent());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseOther(Pattern p) {
+      return VoidValue.VOID;
+    }
+  }
+
+  private class CollectNameClassVisitor implements NameClassVisitor {
+    public void visitChoice(NameClass nc1, NameClass nc2) {
+      visit(nc1);
+      visit(nc2);
+    }
+
+    public void visitNsNameExcept(String ns, NameClass nc) {
+      visit(nc);
+    }
+
+    public void visitAnyNameExcept(NameClass nc) {
+      visit(nc);
+    }
+
+    public void visitNsName(String ns) {
+    }
+
+    public void visitAnyName() {
+    }
+
+    public void visitName(Name name) {
+    }
+
+    public void visitNull() {
+    }
+
+    public void visitError() {
+    }
+  }
+}
@@ -23,6 +23,15 @@ public class IdSoundnessChecker {
     Locator idLoc;
     List<LocatorImpl> idrefLocs;
     boolean hadId;
+
+    Entry() {
+    }
+
+    Entry(Entry entry) {
+      idLoc = entry.idLoc;
+      idrefLocs = entry.idrefLocs == null ? null : new ArrayList<LocatorImpl>(entry.idrefLocs);
+      hadId = entry.hadId;
+    }
   }
 
   public IdSoundnessChecker(IdTypeMap idTypeMap, ErrorHandler eh) {
@@ -30,6 +39,21 @@ public class IdSoundnessChecker {
     this.eh = eh;
   }
 
+  /**
+   * Creates a checker which continues with the IDs and IDREFs seen by <code>checker</code> and reports
+   * errors to <code>eh</code>.
+   */
+  public IdSoundnessChecker(IdSoundnessChecker checker, ErrorHandler eh) {
+    this.idTypeMap = checker.idTypeMap;
+    this.eh = eh;
+    for (Map.Entry<String, Entry> e : checker.map.entrySet())
+      map.put(e.getKey(), new Entry(e.getValue()));
+  }
+
+  public ErrorHandler getErrorHandler() {
+    return eh;
+  }
+
   public void reset() {
     map.clear();
   }
@@ -10,6 +10,7 @@ import org.relaxng.datatype.Datatype;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -93,6 +94,22 @@ public class PatternMatcher implements Cloneable, Matcher {
     return (Matcher)clone();
   }
 
+  /**
+   * Returns a copy of this matcher which computes all further derivatives with the given builder.
+   * Used to continue from a saved state with a builder other than the one the state was computed with.
+   */
+  public PatternMatcher copy(ValidatorPatternBuilder builder) {
+    if (builder == shared.builder)
+      return (PatternMatcher)clone();
+    PatternMatcher copy = new PatternMatcher(builder.getPatternMemo(memo.getPattern()),
+                                             new Shared(shared.start, builder));
+    copy.textTyped = textTyped;
+    copy.hadError = hadError;
+    copy.ignoreNextEndTagOrAttributeValue = ignoreNextEndTagOrAttributeValue;
+    copy.errorMessage = errorMessage;
+    return copy;
+  }
+
   public boolean matchStartDocument() {
     if (memo.isNotAllowed())
       return error("schema_allows_nothing");
@@ -688,7 +705,55 @@ public class PatternMatcher implements Cloneable, Matcher {
 
 
   public NormalizedSuggestions getStartTagSuggestions() {
-    return new PossibleStartTagNameSuggestionsFunction().applyTo(memo.getPattern());
+    return memo.startTagNameSuggestions();
+  }
+
+  /**
+   * Returns the elements named in the start-tag suggestions of the current state, sorted by local
+   * name and namespace URI. The list is computed once per state and kept with its memo; it must not
+   * be modified.
+   */
+  public List<StartTagSuggestion> getStartTagSuggestions(StartTagSuggestion.DocumentationFunction f) {
+    List<StartTagSuggestion> result = memo.getStartTagSuggestions();
+    if (result == null) {
+      result = new ArrayList<StartTagSuggestion>();
+      for (NameSuggestion s : memo.startTagNameSuggestions().getIncludedNames()) {
+        Name name = s.getName();
+        PatternMemo open = startTagOpenMemo(name);
+        List<Name> requiredAttributeNames
+            = new ArrayList<Name>(open.getPattern().apply(shared.builder.getRequiredAttributesFunction()));
+        PatternMemo close = open.endAttributes();
+        if (close.isNotAllowed())
+          close = open.ignoreMissingAttributes();
+        boolean emptyContent = new HasEmptyContentFunction().applyTo(close.getPattern());
+        result.add(new StartTagSuggestion(name, f.getDocumentation(s.getPattern(), s.getNameClass()),
+                                          requiredAttributeNames, emptyContent));
+      }
+      Collections.sort(result, new Comparator<StartTagSuggestion>() {
+        public int compare(StartTagSuggestion a, StartTagSuggestion b) {
+          int c = a.getName().getLocalName().compareTo(b.getName().getLocalName());
+          return c != 0 ? c : a.getName().getNamespaceUri().compareTo(b.getName().getNamespaceUri());
+        }
+      });
+      result = Collections.unmodifiableList(result);
+      memo.setStartTagSuggestions(result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the memo that matchStartTagOpen would move to for an element with the given name,
+   * without reporting errors.
+   */
+  private PatternMemo startTagOpenMemo(Name name) {
+    PatternMemo next = memo.startTagOpenDeriv(name);
+    if (!next.isNotAllowed())
+      return next;
+    next = memo.startTagOpenRecoverDeriv(name);
+    if (!next.isNotAllowed())
+      return next;
+    final ValidatorPatternBuilder builder = shared.builder;
+    return builder.getPatternMemo(builder.makeAfter(shared.findElement(name), memo.getPattern()));
   }
 
   public NormalizedSuggestions getAttributeNameSuggestions() {
@@ -24,6 +24,8 @@ public final class PatternMemo {
   private PatternMemo memoEmptyAfter;
   private NormalizedNameClass memoPossibleAttributeNames;
   private NormalizedNameClass memoPossibleStartTagNames;
+  private NormalizedSuggestions memoStartTagNameSuggestions;
+  private List<StartTagSuggestion> memoStartTagSuggestions;
 
   PatternMemo(Pattern pattern, ValidatorPatternBuilder builder) {
     this.pattern = pattern;
@@ -218,6 +220,20 @@ public final class PatternMemo {
     return memoPossibleStartTagNames;
   }
 
+  NormalizedSuggestions startTagNameSuggestions() {
+    if (memoStartTagNameSuggestions == null)
+      memoStartTagNameSuggestions = new PossibleStartTagNameSuggestionsFunction().applyTo(pattern);
+    return memoStartTagNameSuggestions;
+  }
+
+  List<StartTagSuggestion> getStartTagSuggestions() {
+    return memoStartTagSuggestions;
+  }
+
+  void setStartTagSuggestions(List<StartTagSuggestion> startTagSuggestions) {
+    memoStartTagSuggestions = startTagSuggestions;
+  }
+
   NormalizedNameClass possibleAttributeNames() {
     if (memoPossibleAttributeNames == null)
       memoPossibleAttributeNames = builder.getPossibleAttributeNamesFunction().applyTo(pattern);
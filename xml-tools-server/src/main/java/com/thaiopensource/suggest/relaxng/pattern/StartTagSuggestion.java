@@ -0,0 +1,50 @@
+package com.thaiopensource.suggest.relaxng.pattern;
+
+import com.thaiopensource.xml.util.Name;
+
+import java.util.List;
+
+/**
+ * An element allowed in a pattern state together with what a suggestion for it shows, independent of
+ * the namespace prefixes in scope: its documentation, the attributes it requires and whether its
+ * content must be empty.
+ */
+public class StartTagSuggestion {
+
+  /**
+   * Returns the documentation of an element suggestion from the annotations of its pattern and
+   * name class, or null if there is none.
+   */
+  public interface DocumentationFunction {
+    List<String> getDocumentation(Pattern pattern, NameClass nameClass);
+  }
+
+  private final Name name;
+  private final List<String> documentation;
+  private final List<Name> requiredAttributeNames;
+  private final boolean emptyContent;
+
+  public StartTagSuggestion(Name name, List<String> documentation, List<Name> requiredAttributeNames,
+                            boolean emptyContent) {
+    this.name = name;
+    this.documentation = documentation;
+    this.requiredAttributeNames = requiredAttributeNames;
+    this.emptyContent = emptyContent;
+  }
+
+  public Name getName() {
+    return name;
+  }
+
+  public List<String> getDocumentation() {
+    return documentation;
+  }
+
+  public List<Name> getRequiredAttributeNames() {
+    return requiredAttributeNames;
+  }
+
+  public boolean hasEmptyContent() {
+    return emptyContent;
+  }
+}
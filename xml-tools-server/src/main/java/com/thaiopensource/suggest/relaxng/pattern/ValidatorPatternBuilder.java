@@ -79,6 +79,10 @@ public class ValidatorPatternBuilder extends PatternBuilder {
     return memo;
   }
 
+  int getPatternMemoCount() {
+    return patternMemoMap.size();
+  }
+
   PatternFunction<Pattern> getEndAttributesFunction() {
     return endAttributesFunction;
   }
@@ -0,0 +1,61 @@
+package com.thaiopensource.suggest.relaxng.pattern;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the ValidatorPatternBuilders of a schema, and with them their memoized derivatives, alive
+ * between validation and suggestion runs.
+ *
+ * A ValidatorPatternBuilder isn't thread-safe, so each one is confined to a single validator or
+ * suggester between {@link #acquire()} and {@link #release(ValidatorPatternBuilder)}. Released builders
+ * are handed out again most recently used first, which keeps the warmest memo tables in use. At most
+ * <code>maxIdle</code> builders are kept; a builder whose memo table has grown beyond
+ * <code>maxMemoCount</code> entries is dropped on release instead of being kept.
+ */
+public class ValidatorPatternBuilderPool {
+  public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors();
+  public static final int DEFAULT_MAX_MEMO_COUNT = 100000;
+
+  private final PatternBuilder parent;
+  private final int maxIdle;
+  private final int maxMemoCount;
+  private final Deque<ValidatorPatternBuilder> idle = new ArrayDeque<ValidatorPatternBuilder>();
+
+  public ValidatorPatternBuilderPool(PatternBuilder parent) {
+    this(parent, DEFAULT_MAX_IDLE, DEFAULT_MAX_MEMO_COUNT);
+  }
+
+  public ValidatorPatternBuilderPool(PatternBuilder parent, int maxIdle, int maxMemoCount) {
+    this.parent = parent;
+    this.maxIdle = maxIdle;
+    this.maxMemoCount = maxMemoCount;
+  }
+
+  public ValidatorPatternBuilder acquire() {
+    synchronized (idle) {
+      ValidatorPatternBuilder builder = idle.pollFirst();
+      if (builder != null) {
+        return builder;
+      }
+    }
+    return new ValidatorPatternBuilder(parent);
+  }
+
+  public void release(ValidatorPatternBuilder builder) {
+    if (builder.getPatternMemoCount() > maxMemoCount) {
+      return;
+    }
+    synchronized (idle) {
+      if (idle.size() < maxIdle) {
+        idle.addFirst(builder);
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (idle) {
+      idle.clear();
+    }
+  }
+}
@@ -11,13 +11,24 @@ import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
 public class IdContentHandler implements ContentHandler {
-  private final IdSoundnessChecker checker;
+  private IdSoundnessChecker checker;
   private Locator locator;
 
   public IdContentHandler(IdTypeMap idTypeMap, ErrorHandler eh) {
     this.checker = new IdSoundnessChecker(idTypeMap, eh);
   }
 
+  /**
+   * Returns the IDs and IDREFs seen so far, see {@link com.thaiopensource.suggest.Resumable}.
+   */
+  public Object saveState() {
+    return new IdSoundnessChecker(checker, null);
+  }
+
+  public void restoreState(Object state) {
+    checker = new IdSoundnessChecker((IdSoundnessChecker) state, checker.getErrorHandler());
+  }
+
   public void reset() {
     checker.reset();
     locator = null;
@@ -4,7 +4,7 @@ import com.thaiopensource.relaxng.match.Matcher;
 import com.thaiopensource.suggest.relaxng.pattern.Pattern;
 import com.thaiopensource.suggest.relaxng.pattern.PatternMatcher;
 import com.thaiopensource.suggest.relaxng.pattern.ValidatorPatternBuilder;
-import com.thaiopensource.relaxng.sax.Context;
+import com.thaiopensource.suggest.relaxng.pattern.ValidatorPatternBuilderPool;
 import com.thaiopensource.xml.util.Name;
 
 import org.xml.sax.Attributes;
@@ -16,6 +16,9 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 public class PatternValidator extends Context implements ContentHandler, DTDHandler {
+  private final Pattern pattern;
+  private final ValidatorPatternBuilderPool builderPool;
+  private ValidatorPatternBuilder builder;
   private Matcher matcher;
   private final ErrorHandler eh;
   private boolean bufferingCharacters = false;
@@ -86,6 +89,8 @@ public class PatternValidator extends Context implements ContentHandler, DTDHand
   }
 
   public void startDocument() throws SAXException {
+    if (matcher == null)
+      acquireMatcher();
     check(matcher.matchStartDocument());
   }
 
@@ -101,16 +106,61 @@ public class PatternValidator extends Context implements ContentHandler, DTDHand
     super.startPrefixMapping(prefix, uri);
   }
 
-  public PatternValidator(Pattern pattern, ValidatorPatternBuilder builder, ErrorHandler eh) {
-    this.matcher = new PatternMatcher(pattern, builder);
+  public PatternValidator(Pattern pattern, ValidatorPatternBuilderPool builderPool, ErrorHandler eh) {
+    this.pattern = pattern;
+    this.builderPool = builderPool;
     this.eh = eh;
+    acquireMatcher();
   }
 
+  /**
+   * Resets the validator and returns its pattern builder to the pool; a builder is acquired again
+   * with the start of the next document.
+   */
   public void reset() {
     super.reset();
     bufferingCharacters = false;
     locator = null;
-    matcher = matcher.start();
+    releaseMatcher();
+  }
+
+  /**
+   * Returns the state after the last end tag, see {@link com.thaiopensource.suggest.Resumable}.
+   */
+  public Object saveState() {
+    return new State((PatternMatcher) matcher.copy(), prefixMapping);
+  }
+
+  public void restoreState(Object state) {
+    State s = (State) state;
+    if (matcher == null)
+      acquireMatcher();
+    matcher = s.matcher.copy(builder);
+    prefixMapping = s.prefixMapping;
+    bufferingCharacters = false;
+  }
+
+  private static final class State {
+    private final PatternMatcher matcher;
+    private final PrefixMapping prefixMapping;
+
+    State(PatternMatcher matcher, PrefixMapping prefixMapping) {
+      this.matcher = matcher;
+      this.prefixMapping = prefixMapping;
+    }
+  }
+
+  private void acquireMatcher() {
+    builder = builderPool.acquire();
+    matcher = new PatternMatcher(pattern, builder);
+  }
+
+  private void releaseMatcher() {
+    if (builder != null) {
+      builderPool.release(builder);
+      builder = null;
+      matcher = null;
+    }
   }
 
   private void check(boolean ok) throws SAXException {
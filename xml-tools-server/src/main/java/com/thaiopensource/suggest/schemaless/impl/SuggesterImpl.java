@@ -29,7 +29,7 @@ public class SuggesterImpl implements Suggester {
     return null;
   }
   @Override
-  public List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes) {
+  public List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes, int headLength, int length) {
     return null;
   }
   @Override
@@ -1,7 +1,7 @@
 package com.thaiopensource.suggest.xsd.impl;
 
 import com.thaiopensource.suggest.xsd.xerces.XmlIdValidator;
-import com.thaiopensource.suggest.xsd.xerces.id.KeyRefInfo;
+import com.thaiopensource.suggest.xsd.xerces.id.DocumentIndex;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.ResolverFactory;
 import com.thaiopensource.validate.ValidateProperty;
@@ -20,6 +20,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * Builds the {@link DocumentIndex} of a document by validating it against the schema.
+ */
 public class IdSuggester extends ParserConfigurationSettings implements ContentHandler, DTDHandler, XMLLocator, XMLEntityResolver, EntityState {
 
   private final XmlIdValidator xmlIdValidator = new XmlIdValidator();
@@ -35,9 +38,6 @@ public class IdSuggester extends ParserConfigurationSettings implements ContentH
   private final Set<String> entities = new HashSet<String>();
   private boolean pushedContext = false;
 
-  private Set<String> ids = new HashSet<String>();
-  private Set<String> keys = new HashSet<String>();
-
   // XXX deal with baseURI
 
   static private final String[] recognizedFeatures = {
@@ -91,14 +91,12 @@ public class IdSuggester extends ParserConfigurationSettings implements ContentH
     reset();
   }
 
-  public void parse(byte[] bytes, Map<Integer, KeyRefInfo> keyRefInfos) {
-    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-
-    xmlIdValidator.setKeyRefInfos(keyRefInfos);
-//    xmlIdValidator.setKeyRefValueStoreIndex(keyRefValueStoreIndex);
-//    xmlIdValidator.setKeyRefFieldIndices(keyRefFieldIndices);
-//    xmlIdValidator.setValueScopesCount(valueScopesCount);
-//    xmlIdValidator.setElementIndex(elementIndex);
+  /**
+   * Returns the index of the document in the first length bytes of the array; the index is incomplete
+   * if the document isn't well-formed.
+   */
+  public DocumentIndex parse(byte[] bytes, int length) {
+    ByteArrayInputStream bais = new ByteArrayInputStream(bytes, 0, length);
 
     XMLReader xr;
 
@@ -111,29 +109,18 @@ public class IdSuggester extends ParserConfigurationSettings implements ContentH
 
       InputSource is = new InputSource(bais);
       xr.parse(is);
-
-      ids = xmlIdValidator.getIds();
-
-      keys = xmlIdValidator.getKeys();
     } catch (IOException e) {
     } catch (SAXException e) {
     } catch (Exception e) {
-    } finally {
-      bytes = null;
     }
+    return xmlIdValidator.getIndex();
   }
 
-  public Set<String> getIds() {
-    return ids;
-  }
-  public Set<String> getKeys() { return keys; }
-
   public void reset() {
     validationManager.reset();
     namespaceContext.reset();
     for (XMLComponent component : components) component.reset(this);
     validationManager.setEntityState(this);
-    ids.clear();
   }
 
   public void setDocumentLocator(Locator locator) {
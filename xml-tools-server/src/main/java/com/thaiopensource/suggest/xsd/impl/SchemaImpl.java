@@ -1,7 +1,9 @@
 package com.thaiopensource.suggest.xsd.impl;
 
+import com.thaiopensource.suggest.DocumentCache;
 import com.thaiopensource.suggest.Suggester;
 import com.thaiopensource.suggest.SuggesterSchema;
+import com.thaiopensource.suggest.xsd.xerces.id.DocumentIndex;
 import com.thaiopensource.util.PropertyId;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.AbstractSchema;
@@ -17,6 +19,8 @@ class SchemaImpl extends AbstractSchema implements SuggesterSchema {
   private final SymbolTable symbolTable;
   private final XMLGrammarPool grammarPool;
   private XSModel model = null;
+  private XsdDocumentationTable documentation = null;
+  private final DocumentCache<DocumentIndex> indexCache = new DocumentCache<DocumentIndex>();
 
   SchemaImpl(SymbolTable symbolTable,
              XMLGrammarPool grammarPool,
@@ -29,6 +33,24 @@ class SchemaImpl extends AbstractSchema implements SuggesterSchema {
   }
 
   public Suggester createSuggester(PropertyMap properties) {
+    return new SuggesterImpl(symbolTable, grammarPool, getModel(), properties, indexCache, getDocumentation());
+  }
+
+  /**
+   * Returns the indexes of documents shared by the suggesters of the schema.
+   */
+  DocumentCache<DocumentIndex> getIndexCache() {
+    return indexCache;
+  }
+
+  private synchronized XsdDocumentationTable getDocumentation() {
+    if (documentation == null) {
+      documentation = new XsdDocumentationTable(getModel());
+    }
+    return documentation;
+  }
+
+  private synchronized XSModel getModel() {
     if (model == null) {
       Grammar[] grammars = grammarPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
 
@@ -40,8 +62,7 @@ class SchemaImpl extends AbstractSchema implements SuggesterSchema {
         model = (schemaGrammars[0]).toXSModel(schemaGrammars);
       }
     }
-
-    return new SuggesterImpl(symbolTable, grammarPool, model, properties);
+    return model;
   }
 
   public Validator createValidator(PropertyMap properties) {
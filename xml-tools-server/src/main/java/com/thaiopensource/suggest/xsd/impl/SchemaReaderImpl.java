@@ -1,6 +1,6 @@
 package com.thaiopensource.suggest.xsd.impl;
 
-import com.thaiopensource.resolver.catalog.CatalogResolver;
+import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.resolver.xml.sax.SAX;
 import com.thaiopensource.util.PropertyId;
 import com.thaiopensource.util.PropertyMap;
@@ -50,8 +50,8 @@ public class SchemaReaderImpl extends AbstractSchemaReader {
 
     EntityResolver er = properties.get(ValidateProperty.ENTITY_RESOLVER);
     if (er == null && properties.contains(RESOLVER)) {
-      CatalogResolver cr = (CatalogResolver) properties.get(RESOLVER);
-      er = SAX.createEntityResolver(cr);
+      Resolver resolver = properties.get(RESOLVER);
+      er = SAX.createEntityResolver(resolver);
     }
 
     if (er != null)
@@ -2,6 +2,7 @@ package com.thaiopensource.suggest.xsd.impl;
 
 import com.thaiopensource.suggest.*;
 import com.thaiopensource.suggest.xsd.xerces.XmlSchemaValidator;
+import com.thaiopensource.suggest.xsd.xerces.id.DocumentIndex;
 import com.thaiopensource.suggest.xsd.xerces.id.KeyRefInfo;
 import com.thaiopensource.suggest.xsd.xerces.id.FieldWrapper;
 import com.thaiopensource.util.PropertyMap;
@@ -28,7 +29,6 @@ import javax.xml.XMLConstants;
 import java.io.IOException;
 import java.util.*;
 
-import static org.apache.xerces.xs.XSAnnotation.SAX_CONTENTHANDLER;
 import static org.apache.xerces.xs.XSSimpleTypeDefinition.*;
 
 public class SuggesterImpl extends ParserConfigurationSettings implements Suggester, XMLLocator, XMLEntityResolver, EntityState {
@@ -43,6 +43,8 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
   private final NamespaceContext namespaceContext = new NamespaceSupport();
   private final XMLGrammarPool grammarPool;
   private final PropertyMap properties;
+  private final DocumentCache<DocumentIndex> indexCache;
+  private final XsdDocumentationTable documentation;
 
   private Attributes originalAttributes = new AttributesImpl();
 
@@ -76,11 +78,14 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
   private int startElementStackSize = 0;
   private QName element;
 
-  SuggesterImpl(SymbolTable symbolTable, XMLGrammarPool grammarPool, XSModel model, PropertyMap properties) {
+  SuggesterImpl(SymbolTable symbolTable, XMLGrammarPool grammarPool, XSModel model, PropertyMap properties,
+                DocumentCache<DocumentIndex> indexCache, XsdDocumentationTable documentation) {
     this.symbolTable = symbolTable;
     this.grammarPool = grammarPool;
     this.model = model;
     this.properties = properties;
+    this.indexCache = indexCache;
+    this.documentation = documentation;
 
     XMLErrorHandler errorHandlerWrapper = new ErrorHandlerWrapper(properties.get(ValidateProperty.ERROR_HANDLER));
     XMLEntityManager entityManager = new XMLEntityManager();
@@ -115,6 +120,14 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
     namespaceContext.reset();
     for (XMLComponent component : components) component.reset(this);
     validationManager.setEntityState(this);
+    attributes.removeAllAttributes();
+    originalAttributes = new AttributesImpl();
+    entities.clear();
+    pushedContext = false;
+    qNames.clear();
+    startElementStackSize = 0;
+    element = null;
+    locator = null;
   }
 
   public void setDocumentLocator(Locator locator) {
@@ -357,8 +370,6 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
       return suggestions;
     }
 
-    AnnotationSerializer annotationSerializer = new AnnotationSerializer();
-
     Set<Object> expectedEls = new HashSet<Object>();
 
     if (schemaValidator.getElementDepth() == -1 && schemaValidator.getCurrentCM() == null) {
@@ -436,7 +447,7 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
               }
             }
 
-            List<String> annotations = getAnnotations(annotationSerializer, elDecl.getAnnotation());
+            List<String> annotations = getAnnotations(elDecl.getAnnotation());
 
             suggestions.add(new ElementSuggestion(value, annotations, attributes, isEmpty, false));
           }
@@ -468,14 +479,8 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
     return prefix + ":" + localName;
   }
 
-  private List<String> getAnnotations(AnnotationSerializer annotationSerializer, XSAnnotation annot) {
-    List<String> annotations = null;
-    if (annot != null) {
-      annot.writeAnnotation(annotationSerializer, SAX_CONTENTHANDLER);
-      annotations = annotationSerializer.getAnnotationStrings();
-      annotationSerializer.reset();
-    }
-    return annotations;
+  private List<String> getAnnotations(XSAnnotation annot) {
+    return annot == null ? null : documentation.get(annot);
   }
 
   @Override
@@ -504,8 +509,6 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
               attributeNsPrefixMap, suggestWildcards, suggestNamespaceWildcard);
         }
 
-        AnnotationSerializer annotationSerializer = new AnnotationSerializer();
-
         for (Object obj : attrDecls) {
           if (obj instanceof XSAttributeDecl) {
             XSAttributeDecl attrDecl = (XSAttributeDecl) obj;
@@ -514,7 +517,7 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
             if (originalAttributes.getIndex(nsUri, attrDecl.getName()) == -1) {
               String value = createNameValue(attrDecl.getName(),
                   attrDecl.getNamespace(), attributeNsPrefixMap);
-              List<String> annotations = getAnnotations(annotationSerializer, attrDecl.getAnnotation());
+              List<String> annotations = getAnnotations(attrDecl.getAnnotation());
               suggestions.add(new AttributeNameSuggestion(value, annotations));
             }
           }
@@ -531,7 +534,7 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
   }
 
   @Override
-  public List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes) {
+  public List<AttributeValueSuggestion> suggestAttributeValues(String fragment, byte[] bytes, int headLength, int length) {
     String[] tokens = fragment.split(" ", 2);
     String attrQName = tokens[0];
 
@@ -592,19 +595,18 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
             int refTypes = getRefTypes(type);
             Map<Integer, KeyRefInfo> keyRefInfos = buildKeyRefInfos(valueStoreToFieldIndices);
             if (refTypes != 0 || keyRefInfos.size() > 0) {
-              IdSuggester idSuggester = new IdSuggester(symbolTable, grammarPool, model, properties);
-              idSuggester.parse(bytes, keyRefInfos);
+              DocumentIndex index = getIndex(bytes, headLength, length, attrQName);
 
               if (keyRefInfos.size() > 0) {
 
-                Set<String> keys = idSuggester.getKeys();
+                Set<String> keys = index.getKeys(keyRefInfos);
                 for (String key : keys) {
                   valueSuggestions.add(new Object[]{key, null, false});
                 }
               }
 
               if (refTypes != 0) {
-                Set<String> ids = idSuggester.getIds();
+                Set<String> ids = index.getIds();
 
                 if ((refTypes & REF_TYPE_IDREF) != 0) {
                   for (String id : ids) {
@@ -626,12 +628,8 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
                   }
                 }
               }
-
-              idSuggester.reset();
             }
 
-            AnnotationSerializer annotationSerializer = new AnnotationSerializer();
-
             for (Object[] objs : valueSuggestions) {
               try {
                 type.validate(objs[0], null, null);
@@ -640,7 +638,7 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
                 List<String> annotations = null;
 
                 if (objs[1] != null) {
-                  annotations = getAnnotations(annotationSerializer, (XSAnnotation) objs[1]);
+                  annotations = getAnnotations((XSAnnotation) objs[1]);
                 }
                 suggestions.add(new AttributeValueSuggestion(value, annotations, (Boolean) objs[2]));
 
@@ -656,6 +654,24 @@ public class SuggesterImpl extends ParserConfigurationSettings implements Sugges
     return suggestions;
   }
 
+  /**
+   * Returns the index of the document, building it unless there is an index of the same version. The
+   * value of the attribute being completed doesn't count as a change: an index built while the value
+   * is edited serves all suggestions for it.
+   */
+  private DocumentIndex getIndex(byte[] bytes, int headLength, int length, String attrQName) {
+    int[] valueRange = TagScanner.findAttributeValue(bytes, headLength, length, attrQName);
+    DocumentCache.Key key = valueRange == null
+        ? DocumentCache.getKey(bytes, length)
+        : DocumentCache.getKey(bytes, length, valueRange[0], valueRange[1]);
+    DocumentIndex index = indexCache.get(key);
+    if (index == null) {
+      index = new IdSuggester(symbolTable, grammarPool, model, properties).parse(bytes, length);
+      indexCache.put(key, index);
+    }
+    return index;
+  }
+
   private Map<Integer, KeyRefInfo> buildKeyRefInfos(Map<XmlSchemaValidator.KeyRefValueStore, Set<Integer>> valueStoreToFieldIndices) {
     Map<Integer, KeyRefInfo> keyRefInfos = new HashMap<Integer, KeyRefInfo>();
     for (Map.Entry<XmlSchemaValidator.KeyRefValueStore, Set<Integer>> entry : valueStoreToFieldIndices.entrySet()) {
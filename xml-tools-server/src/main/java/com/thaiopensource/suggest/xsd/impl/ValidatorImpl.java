@@ -99,6 +99,10 @@ class ValidatorImpl extends ParserConfigurationSettings implements Validator, Co
     namespaceContext.reset();
     for (XMLComponent component : components) component.reset(this);
     validationManager.setEntityState(this);
+    attributes.removeAllAttributes();
+    entities.clear();
+    pushedContext = false;
+    locator = null;
   }
 
   public ContentHandler getContentHandler() {
@@ -0,0 +1,154 @@
+package com.thaiopensource.suggest.xsd.impl;
+
+import com.thaiopensource.suggest.DocumentationTable;
+import org.apache.xerces.impl.dv.xs.XSSimpleTypeDecl;
+import org.apache.xerces.xs.XSAnnotation;
+import org.apache.xerces.xs.XSAttributeDeclaration;
+import org.apache.xerces.xs.XSAttributeGroupDefinition;
+import org.apache.xerces.xs.XSAttributeUse;
+import org.apache.xerces.xs.XSComplexTypeDefinition;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.apache.xerces.xs.XSModel;
+import org.apache.xerces.xs.XSModelGroup;
+import org.apache.xerces.xs.XSModelGroupDefinition;
+import org.apache.xerces.xs.XSNamedMap;
+import org.apache.xerces.xs.XSObjectList;
+import org.apache.xerces.xs.XSParticle;
+import org.apache.xerces.xs.XSTerm;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.xerces.xs.XSAnnotation.SAX_CONTENTHANDLER;
+
+/**
+ * The documentation of the annotations of element and attribute declarations and enumeration values
+ * in a schema.
+ */
+class XsdDocumentationTable extends DocumentationTable<XSAnnotation> {
+
+  private final AnnotationSerializer annotationSerializer = new AnnotationSerializer();
+
+  /**
+   * Creates a table holding the documentation of the element and attribute declarations and the
+   * enumeration values in the components of a model.
+   */
+  XsdDocumentationTable(XSModel model) {
+    if (model != null) {
+      new Collector().collect(model);
+    }
+  }
+
+  @Override
+  protected List<String> createDocumentation(XSAnnotation annotation) {
+    annotation.writeAnnotation(annotationSerializer, SAX_CONTENTHANDLER);
+    List<String> documentation = annotationSerializer.getAnnotationStrings();
+    annotationSerializer.reset();
+    return documentation;
+  }
+
+  private void add(XSObjectList annotations) {
+    if (annotations != null) {
+      for (int i = 0; i < annotations.getLength(); i++) {
+        Object annotation = annotations.item(i);
+        if (annotation != null) {
+          add((XSAnnotation) annotation);
+        }
+      }
+    }
+  }
+
+  private class Collector {
+    private final Set<Object> visited = new HashSet<Object>();
+
+    void collect(XSModel model) {
+      XSNamedMap elements = model.getComponents(XSConstants.ELEMENT_DECLARATION);
+      for (int i = 0; i < elements.getLength(); i++) {
+        visitElement((XSElementDeclaration) elements.item(i));
+      }
+      XSNamedMap attributes = model.getComponents(XSConstants.ATTRIBUTE_DECLARATION);
+      for (int i = 0; i < attributes.getLength(); i++) {
+        visitAttribute((XSAttributeDeclaration) attributes.item(i));
+      }
+      XSNamedMap types = model.getComponents(XSConstants.TYPE_DEFINITION);
+      for (int i = 0; i < types.getLength(); i++) {
+        visitType((XSTypeDefinition) types.item(i));
+      }
+      XSNamedMap groups = model.getComponents(XSConstants.MODEL_GROUP_DEFINITION);
+      for (int i = 0; i < groups.getLength(); i++) {
+        visitTerm(((XSModelGroupDefinition) groups.item(i)).getModelGroup());
+      }
+      XSNamedMap attributeGroups = model.getComponents(XSConstants.ATTRIBUTE_GROUP);
+      for (int i = 0; i < attributeGroups.getLength(); i++) {
+        visitAttributeUses(((XSAttributeGroupDefinition) attributeGroups.item(i)).getAttributeUses());
+      }
+    }
+
+    private void visitElement(XSElementDeclaration element) {
+      if (!visited.add(element)) {
+        return;
+      }
+      if (element.getAnnotation() != null) {
+        add(element.getAnnotation());
+      }
+      visitType(element.getTypeDefinition());
+    }
+
+    private void visitAttribute(XSAttributeDeclaration attribute) {
+      if (!visited.add(attribute)) {
+        return;
+      }
+      if (attribute.getAnnotation() != null) {
+        add(attribute.getAnnotation());
+      }
+      visitType(attribute.getTypeDefinition());
+    }
+
+    private void visitAttributeUses(XSObjectList attributeUses) {
+      for (int i = 0; i < attributeUses.getLength(); i++) {
+        visitAttribute(((XSAttributeUse) attributeUses.item(i)).getAttrDeclaration());
+      }
+    }
+
+    private void visitType(XSTypeDefinition type) {
+      if (type == null || !visited.add(type)) {
+        return;
+      }
+      if (type instanceof XSComplexTypeDefinition) {
+        XSComplexTypeDefinition complexType = (XSComplexTypeDefinition) type;
+        visitAttributeUses(complexType.getAttributeUses());
+        visitType(complexType.getSimpleType());
+        XSParticle particle = complexType.getParticle();
+        if (particle != null) {
+          visitTerm(particle.getTerm());
+        }
+      } else if (type instanceof XSSimpleTypeDecl) {
+        XSSimpleTypeDecl simpleType = (XSSimpleTypeDecl) type;
+        add(simpleType.enumerationAnnotations);
+        visitType(simpleType.getItemType());
+        XSObjectList memberTypes = simpleType.getMemberTypes();
+        for (int i = 0; i < memberTypes.getLength(); i++) {
+          visitType((XSTypeDefinition) memberTypes.item(i));
+        }
+      }
+      visitType(type.getBaseType());
+    }
+
+    private void visitTerm(XSTerm term) {
+      if (term instanceof XSElementDeclaration) {
+        visitElement((XSElementDeclaration) term);
+      } else if (term instanceof XSModelGroup) {
+        if (!visited.add(term)) {
+          return;
+        }
+        XSObjectList particles = ((XSModelGroup) term).getParticles();
+        for (int i = 0; i < particles.getLength(); i++) {
+          visitTerm(((XSParticle) particles.item(i)).getTerm());
+        }
+      }
+    }
+  }
+}
@@ -17,7 +17,8 @@
 
 package com.thaiopensource.suggest.xsd.xerces;
 
-import com.thaiopensource.suggest.xsd.xerces.id.KeyRefInfo;
+import com.thaiopensource.suggest.xsd.xerces.id.DocumentIndex;
+import com.thaiopensource.suggest.xsd.xerces.id.ValueIndex;
 import org.apache.xerces.impl.Constants;
 import org.apache.xerces.impl.RevalidationHandler;
 import org.apache.xerces.impl.XMLEntityManager;
@@ -82,9 +83,7 @@ public class XmlIdValidator
 
     private int elementIndex = -1;
 
-    private Set<String> ids = new HashSet<String>();
-    private Set<String> keys = new HashSet<String>();
-    private Map<Integer, KeyRefInfo> keyRefInfos;
+    private DocumentIndex index = new DocumentIndex();
 
 
     //
@@ -1308,7 +1307,9 @@ public class XmlIdValidator
      */
     public void reset(XMLComponentManager componentManager) throws XMLConfigurationException {
 
-        ids.clear();
+        index = new DocumentIndex();
+
+        elementIndex = -1;
 
         fIdConstraint = false;
         //reset XSDDescription
@@ -2426,7 +2427,7 @@ public class XmlIdValidator
         // have we reached the end tag of the validation root?
         if (fElementDepth == 0) {
             // 7 If the element information item is the validation root, it must be valid per Validation Root Valid (ID/IDREF) (3.3.4).
-          ids.addAll(fValidationState.getIds());
+          index.addIds(fValidationState.getIds());
           String invIdRef = fValidationState.checkIDRefID();
             fValidationState.resetIDTables();
             if (invIdRef != null) {
@@ -3676,6 +3677,8 @@ public class XmlIdValidator
 
         /** global data */
         public final Vector fValues = new Vector();
+        /** hash index of the tuples in fValues */
+        protected final ValueIndex fValueIndex = new ValueIndex();
         public ShortVector fValueTypes = null;
         public Vector fItemValueTypes = null;
 
@@ -3722,6 +3725,7 @@ public class XmlIdValidator
             fItemValueTypesLength = 0;
             fItemValueType = null;
             fValues.setSize(0);
+            fValueIndex.clear();
             if (fValueTypes != null) {
                 fValueTypes.clear();
             }
@@ -3732,9 +3736,15 @@ public class XmlIdValidator
 
         // appends the contents of one ValueStore to those of us.
         public void append(ValueStoreBase newVal) {
+            final int start = fValues.size();
             for (int i = 0; i < newVal.fValues.size(); i++) {
                 fValues.addElement(newVal.fValues.elementAt(i));
             }
+            if (fFieldCount > 0) {
+                for (int i = 0; i + fFieldCount <= newVal.fValues.size(); i += fFieldCount) {
+                    fValueIndex.add(ValueIndex.hash(newVal.fValues, i, fFieldCount), start + i);
+                }
+            }
         } // append(ValueStoreBase)
 
         /** Start scope for value store. */
@@ -3847,6 +3857,7 @@ public class XmlIdValidator
             if (fValuesCount == fFieldCount) {
                 checkDuplicateValues();
                 // store values
+                fValueIndex.add(ValueIndex.hash(fLocalValues, fFieldCount), fValues.size());
                 for (i = 0; i < fFieldCount; i++) {
                     fValues.addElement(fLocalValues[i]);
                     addValueType(fLocalValueTypes[i]);
@@ -3859,12 +3870,13 @@ public class XmlIdValidator
          * Returns true if this value store contains the locally scoped value stores
          */
         public boolean contains() {
-            // REVISIT: we can improve performance by using hash codes, instead of
-            // traversing global vector that could be quite large.
-            int next = 0;
-            final int size = fValues.size();
-            LOOP : for (int i = 0; i < size; i = next) {
-                next = i + fFieldCount;
+            // only the tuples with the same hash can be equal
+            ValueIndex.Bucket bucket = fValueIndex.get(ValueIndex.hash(fLocalValues, fFieldCount));
+            if (bucket == null) {
+                return false;
+            }
+            LOOP : for (int b = 0; b < bucket.size(); b++) {
+                int i = bucket.get(b);
                 for (int j = 0; j < fFieldCount; j++) {
                     Object value1 = fLocalValues[j];
                     Object value2 = fValues.elementAt(i);
@@ -3900,7 +3912,7 @@ public class XmlIdValidator
             if (fFieldCount <= 1) {
                 for (int i = 0; i < size1; ++i) {
                     short val = vsb.getValueTypeAt(i);
-                    if (!valueTypeContains(val) || !fValues.contains(values.elementAt(i))) {
+                    if (!valueTypeContains(val) || !containsValue(values, i)) {
                         return i;
                     }
                     else if(val == XSConstants.LIST_DT || val == XSConstants.LISTOFUNION_DT) {
@@ -3913,11 +3925,13 @@ public class XmlIdValidator
             }
             /** Handle n-tuples. **/
             else {
-                final int size2 = fValues.size();
                 /** Iterate over each set of fields. **/
                 OUTER: for (int i = 0; i < size1; i += fFieldCount) {
                     /** Check whether this set is contained in the value store. **/
-                    INNER: for (int j = 0; j < size2; j += fFieldCount) {
+                    ValueIndex.Bucket bucket = fValueIndex.get(ValueIndex.hash(values, i, fFieldCount));
+                    final int size2 = bucket == null ? 0 : bucket.size();
+                    INNER: for (int b = 0; b < size2; b++) {
+                        final int j = bucket.get(b);
                         for (int k = 0; k < fFieldCount; ++k) {
                             final Object value1 = values.elementAt(i+k);
                             final Object value2 = fValues.elementAt(j+k);
@@ -3943,6 +3957,21 @@ public class XmlIdValidator
 
         } // contains(Vector):Object
 
+        /** Returns true if a single-field value store contains the specified value. */
+        private boolean containsValue(Vector values, int index) {
+            final Object value = values.elementAt(index);
+            ValueIndex.Bucket bucket = fValueIndex.get(ValueIndex.hash(values, index, 1));
+            if (bucket != null) {
+                for (int b = 0; b < bucket.size(); b++) {
+                    Object value2 = fValues.elementAt(bucket.get(b));
+                    if (value == null ? value2 == null : value.equals(value2)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
         //
         // Protected methods
         //
@@ -4230,10 +4259,7 @@ public class XmlIdValidator
                 }
 
                 for (int valueStoreIndex : indices) {
-                    KeyRefInfo keyRefInfo = keyRefInfos.get(valueStoreIndex);
-                    if (keyRefInfo != null && keyRefInfo.getElementIndex() == elementIndex) {
-                        addKeys(fKeyValueStore, fFieldCount, keyRefInfo.getFieldIndices());
-                    }
+                    addKeys(valueStoreIndex, elementIndex, fKeyValueStore, fFieldCount);
                 }
             }
         } // endDocumentFragment()
@@ -4587,26 +4613,23 @@ public class XmlIdValidator
         }
     }
 
-    public Set<String> getIds() {
-        return ids;
+    public DocumentIndex getIndex() {
+        return index;
     }
-    public Set<String> getKeys() { return keys; }
 
-    public void addKeys(ValueStoreBase keyValueStore, int fieldCount, Set<Integer> fieldIndices) {
+    /**
+     * Adds the values of a key value store to the index, for each field of the keyref value store at
+     * valueStoreIndex.
+     */
+    public void addKeys(int valueStoreIndex, int elementIndex, ValueStoreBase keyValueStore, int fieldCount) {
         final int size = keyValueStore.fValues.size();
 
-        for (Integer keyRefFieldIndex : fieldIndices) {
-            for (int i = keyRefFieldIndex; i < size; i += fieldCount) {
-                Object value2 = keyValueStore.fValues.elementAt(i);
-                if (value2 != null) {
-                    keys.add(value2.toString());
-                }
+        for (int i = 0; i < size; i++) {
+            Object value = keyValueStore.fValues.elementAt(i);
+            if (value != null) {
+                index.addKey(valueStoreIndex, elementIndex, i % fieldCount, value.toString());
             }
         }
     }
 
-    public void setKeyRefInfos(Map<Integer, KeyRefInfo> keyRefInfos) {
-        this.keyRefInfos = keyRefInfos;
-    }
-
 } // class SchemaValidator
@@ -23,6 +23,7 @@ import java.util.*;
 import javax.xml.XMLConstants;
 
 import com.thaiopensource.suggest.xsd.xerces.id.FieldWrapper;
+import com.thaiopensource.suggest.xsd.xerces.id.ValueIndex;
 import org.apache.xerces.impl.Constants;
 import org.apache.xerces.impl.RevalidationHandler;
 import org.apache.xerces.impl.XMLEntityManager;
@@ -1331,6 +1332,7 @@ public class XmlSchemaValidator
      */
     public void reset(XMLComponentManager componentManager) throws XMLConfigurationException {
 
+        elementIndex = -1;
 
         fIdConstraint = false;
         //reset XSDDescription
@@ -3697,6 +3699,8 @@ public class XmlSchemaValidator
 
         /** global data */
         public final Vector fValues = new Vector();
+        /** hash index of the tuples in fValues */
+        protected final ValueIndex fValueIndex = new ValueIndex();
         public ShortVector fValueTypes = null;
         public Vector fItemValueTypes = null;
 
@@ -3743,6 +3747,7 @@ public class XmlSchemaValidator
             fItemValueTypesLength = 0;
             fItemValueType = null;
             fValues.setSize(0);
+            fValueIndex.clear();
             if (fValueTypes != null) {
                 fValueTypes.clear();
             }
@@ -3753,9 +3758,15 @@ public class XmlSchemaValidator
 
         // appends the contents of one ValueStore to those of us.
         public void append(ValueStoreBase newVal) {
+            final int start = fValues.size();
             for (int i = 0; i < newVal.fValues.size(); i++) {
                 fValues.addElement(newVal.fValues.elementAt(i));
             }
+            if (fFieldCount > 0) {
+                for (int i = 0; i + fFieldCount <= newVal.fValues.size(); i += fFieldCount) {
+                    fValueIndex.add(ValueIndex.hash(newVal.fValues, i, fFieldCount), start + i);
+                }
+            }
         } // append(ValueStoreBase)
 
         /** Start scope for value store. */
@@ -3868,6 +3879,7 @@ public class XmlSchemaValidator
             if (fValuesCount == fFieldCount) {
                 checkDuplicateValues();
                 // store values
+                fValueIndex.add(ValueIndex.hash(fLocalValues, fFieldCount), fValues.size());
                 for (i = 0; i < fFieldCount; i++) {
                     fValues.addElement(fLocalValues[i]);
                     addValueType(fLocalValueTypes[i]);
@@ -3880,12 +3892,13 @@ public class XmlSchemaValidator
          * Returns true if this value store contains the locally scoped value stores
          */
         public boolean contains() {
-            // REVISIT: we can improve performance by using hash codes, instead of
-            // traversing global vector that could be quite large.
-            int next = 0;
-            final int size = fValues.size();
-            LOOP : for (int i = 0; i < size; i = next) {
-                next = i + fFieldCount;
+            // only the tuples with the same hash can be equal
+            ValueIndex.Bucket bucket = fValueIndex.get(ValueIndex.hash(fLocalValues, fFieldCount));
+            if (bucket == null) {
+                return false;
+            }
+            LOOP : for (int b = 0; b < bucket.size(); b++) {
+                int i = bucket.get(b);
                 for (int j = 0; j < fFieldCount; j++) {
                     Object value1 = fLocalValues[j];
                     Object value2 = fValues.elementAt(i);
@@ -3921,7 +3934,7 @@ public class XmlSchemaValidator
             if (fFieldCount <= 1) {
                 for (int i = 0; i < size1; ++i) {
                     short val = vsb.getValueTypeAt(i);
-                    if (!valueTypeContains(val) || !fValues.contains(values.elementAt(i))) {
+                    if (!valueTypeContains(val) || !containsValue(values, i)) {
                         return i;
                     }
                     else if(val == XSConstants.LIST_DT || val == XSConstants.LISTOFUNION_DT) {
@@ -3934,11 +3947,13 @@ public class XmlSchemaValidator
             }
             /** Handle n-tuples. **/
             else {
-                final int size2 = fValues.size();
                 /** Iterate over each set of fields. **/
                 OUTER: for (int i = 0; i < size1; i += fFieldCount) {
                     /** Check whether this set is contained in the value store. **/
-                    INNER: for (int j = 0; j < size2; j += fFieldCount) {
+                    ValueIndex.Bucket bucket = fValueIndex.get(ValueIndex.hash(values, i, fFieldCount));
+                    final int size2 = bucket == null ? 0 : bucket.size();
+                    INNER: for (int b = 0; b < size2; b++) {
+                        final int j = bucket.get(b);
                         for (int k = 0; k < fFieldCount; ++k) {
                             final Object value1 = values.elementAt(i+k);
                             final Object value2 = fValues.elementAt(j+k);
@@ -3964,6 +3979,21 @@ public class XmlSchemaValidator
 
         } // contains(Vector):Object
 
+        /** Returns true if a single-field value store contains the specified value. */
+        private boolean containsValue(Vector values, int index) {
+            final Object value = values.elementAt(index);
+            ValueIndex.Bucket bucket = fValueIndex.get(ValueIndex.hash(values, index, 1));
+            if (bucket != null) {
+                for (int b = 0; b < bucket.size(); b++) {
+                    Object value2 = fValues.elementAt(bucket.get(b));
+                    if (value == null ? value2 == null : value.equals(value2)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
         //
         // Protected methods
         //
@@ -0,0 +1,71 @@
+package com.thaiopensource.suggest.xsd.xerces.id;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ID values and identity-constraint key values of a document.
+ *
+ * Key values are stored per keyref value store (its index in the value store cache and the index of
+ * the element activating it) and per field, so that the values for a set of {@link KeyRefInfo}s can be
+ * looked up without revalidating the document.
+ */
+public class DocumentIndex {
+
+  private final Set<String> ids = new LinkedHashSet<String>();
+  private final Map<Long, List<Set<String>>> keys = new HashMap<Long, List<Set<String>>>();
+
+  private static long getSlot(int valueStoreIndex, int elementIndex) {
+    return ((long) valueStoreIndex << 32) | (elementIndex & 0xffffffffL);
+  }
+
+  public void addIds(Set<String> ids) {
+    this.ids.addAll(ids);
+  }
+
+  /**
+   * Adds a key value found by the keyref value store at valueStoreIndex, activated at the element at
+   * elementIndex, for its field at fieldIndex.
+   */
+  public void addKey(int valueStoreIndex, int elementIndex, int fieldIndex, String value) {
+    long slot = getSlot(valueStoreIndex, elementIndex);
+    List<Set<String>> fields = keys.get(slot);
+    if (fields == null) {
+      fields = new ArrayList<Set<String>>();
+      keys.put(slot, fields);
+    }
+    while (fields.size() <= fieldIndex) {
+      fields.add(new LinkedHashSet<String>());
+    }
+    fields.get(fieldIndex).add(value);
+  }
+
+  public Set<String> getIds() {
+    return Collections.unmodifiableSet(ids);
+  }
+
+  /**
+   * Returns the key values for keyref value stores, keyed by their index in the value store cache.
+   */
+  public Set<String> getKeys(Map<Integer, KeyRefInfo> keyRefInfos) {
+    Set<String> result = new LinkedHashSet<String>();
+    for (Map.Entry<Integer, KeyRefInfo> entry : keyRefInfos.entrySet()) {
+      KeyRefInfo keyRefInfo = entry.getValue();
+      List<Set<String>> fields = keys.get(getSlot(entry.getKey(), keyRefInfo.getElementIndex()));
+      if (fields == null) {
+        continue;
+      }
+      for (int fieldIndex : keyRefInfo.getFieldIndices()) {
+        if (fieldIndex < fields.size()) {
+          result.addAll(fields.get(fieldIndex));
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,134 @@
+package com.thaiopensource.suggest.xsd.xerces.id;
+
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xs.datatypes.ObjectList;
+import org.apache.xerces.xs.datatypes.XSDateTime;
+import org.apache.xerces.xs.datatypes.XSDecimal;
+import org.apache.xerces.xs.datatypes.XSDouble;
+import org.apache.xerces.xs.datatypes.XSFloat;
+import org.apache.xerces.xs.datatypes.XSQName;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index of the value tuples in an identity-constraint value store.
+ *
+ * Tuples are indexed by the start of their first field in the store's list of values, under a hash of
+ * their values. The hash is consistent with the equality of Xerces' actual values, several of which
+ * don't override {@link Object#hashCode}. Date, time and duration values are hashed on their fields
+ * normalized to UTC, durations on their total months and seconds; values of other such types fall
+ * into one bucket per type, so constraints on them are checked in quadratic time as before. Lookups
+ * return the candidate tuples, which the value store compares field by field as before, including the
+ * value types.
+ */
+public class ValueIndex {
+
+  public static final class Bucket {
+    private int[] starts = new int[1];
+    private int size = 0;
+
+    private void add(int start) {
+      if (size == starts.length) {
+        int[] grown = new int[size * 2];
+        System.arraycopy(starts, 0, grown, 0, size);
+        starts = grown;
+      }
+      starts[size++] = start;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Returns the start of the i-th tuple with the hash of this bucket.
+     */
+    public int get(int i) {
+      return starts[i];
+    }
+  }
+
+  private final Map<Integer, Bucket> buckets = new HashMap<Integer, Bucket>();
+
+  public void add(int hash, int start) {
+    Bucket bucket = buckets.get(hash);
+    if (bucket == null) {
+      bucket = new Bucket();
+      buckets.put(hash, bucket);
+    }
+    bucket.add(start);
+  }
+
+  /**
+   * Returns the tuples with the given hash, or null if there are none.
+   */
+  public Bucket get(int hash) {
+    return buckets.get(hash);
+  }
+
+  public void clear() {
+    buckets.clear();
+  }
+
+  public static int hash(Object[] values, int count) {
+    int hash = 1;
+    for (int i = 0; i < count; i++) {
+      hash = 31 * hash + hashValue(values[i]);
+    }
+    return hash;
+  }
+
+  public static int hash(List<?> values, int start, int count) {
+    int hash = 1;
+    for (int i = 0; i < count; i++) {
+      hash = 31 * hash + hashValue(values.get(start + i));
+    }
+    return hash;
+  }
+
+  /**
+   * Returns a hash code of an actual value which is equal for values that are equal.
+   */
+  public static int hashValue(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof XSDouble || value instanceof XSFloat) {
+      return value.hashCode();
+    }
+    if (value instanceof XSDecimal) {
+      BigDecimal decimal = ((XSDecimal) value).getBigDecimal();
+      return decimal.signum() == 0 ? 0 : decimal.stripTrailingZeros().hashCode();
+    }
+    if (value instanceof XSQName) {
+      QName qName = ((XSQName) value).getXNIQName();
+      return 31 * (qName.uri == null ? 0 : qName.uri.hashCode())
+          + (qName.localpart == null ? 0 : qName.localpart.hashCode());
+    }
+    if (value instanceof XSDateTime) {
+      // values with and without a time zone are never equal, and normalizing converts the former to UTC
+      XSDateTime dateTime = ((XSDateTime) value).normalize();
+      int hash = dateTime.hasTimeZone() ? 1 : 0;
+      hash = 31 * hash + dateTime.getYears();
+      hash = 31 * hash + dateTime.getMonths();
+      hash = 31 * hash + dateTime.getDays();
+      hash = 31 * hash + dateTime.getHours();
+      hash = 31 * hash + dateTime.getMinutes();
+      long seconds = Double.doubleToLongBits(dateTime.getSeconds() + 0.0);
+      return 31 * hash + (int) (seconds ^ (seconds >>> 32));
+    }
+    if (value instanceof ObjectList) {
+      ObjectList list = (ObjectList) value;
+      int hash = 1;
+      for (int i = 0; i < list.getLength(); i++) {
+        hash = 31 * hash + hashValue(list.item(i));
+      }
+      return hash;
+    }
+    return value.getClass().getName().hashCode();
+  }
+}
@@ -0,0 +1,111 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.util.ClientThread;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+
+import static com.aerhard.xml.tools.Constants.COMMAND_AUTO_COMPLETE;
+import static com.aerhard.xml.tools.Constants.COMMAND_VALIDATE;
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrencyTest {
+
+  private static final String host;
+  private static final int port = 9006;
+  private static final int clientCount = 32;
+  private static final Thread serverThread;
+
+  private static final String testDataPath;
+
+  static {
+    Properties properties = new Properties();
+
+    try {
+      properties.load(ConcurrencyTest.class.getResourceAsStream("/test.properties"));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    testDataPath = properties.getProperty("testDataPath");
+
+    String localhost;
+    try {
+      localhost = InetAddress.getByName(null).getHostAddress();
+    } catch (UnknownHostException e) {
+      localhost = null;
+      e.printStackTrace();
+    }
+    host = localhost;
+
+    serverThread = new Thread() {
+      @Override
+      public void run() {
+        SocketServer server = new SocketServer();
+        try {
+          server.start(port, 15, RequestExecutor.create(Constants.EXECUTOR_TYPE_POOL, 8, 2 * clientCount));
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+        System.out.println("CLIENT: Server ends");
+      }
+    };
+    serverThread.start();
+  }
+
+  @Test
+  public void run() throws InterruptedException {
+
+    String xmlFilePath = testDataPath + "/validation/xml/rng-invalid.xml";
+    String catalogFilePath = testDataPath + "/validation/catalog/catalog.xml";
+    String[] schemata = new String[] {
+        Constants.SCHEMA_TYPE_RNG +  " " + testDataPath + "/validation/schema/schema.rng",
+    };
+
+    List<String> expectedValidationResult = new ArrayList<String>();
+    ClientThread.validateSync(host, port, xmlFilePath, catalogFilePath, schemata, expectedValidationResult);
+    Collections.sort(expectedValidationResult);
+
+    List<String> expectedSuggestionResult = new ArrayList<String>();
+    ClientThread.suggestSync(host, port, xmlFilePath, catalogFilePath, schemata,
+        Constants.SUGGESTION_TYPE_ELEMENT, null, null, expectedSuggestionResult);
+
+    List<Thread> clients = new ArrayList<Thread>();
+    List<List<String>> validationResults = new ArrayList<List<String>>();
+    List<List<String>> suggestionResults = new ArrayList<List<String>>();
+
+    for (int i = 0; i < clientCount; i++) {
+      List<String> result = Collections.synchronizedList(new ArrayList<String>());
+      if (i % 2 == 0) {
+        validationResults.add(result);
+        clients.add(new ClientThread(host, port, xmlFilePath, catalogFilePath, schemata, COMMAND_VALIDATE, result));
+      } else {
+        suggestionResults.add(result);
+        clients.add(new ClientThread(host, port, xmlFilePath, catalogFilePath, schemata, COMMAND_AUTO_COMPLETE,
+            Constants.SUGGESTION_TYPE_ELEMENT, null, null, result));
+      }
+    }
+
+    for (Thread client : clients) {
+      client.start();
+    }
+    for (Thread client : clients) {
+      client.join();
+    }
+
+    serverThread.interrupt();
+
+    assertEquals(5, expectedValidationResult.size());
+    for (List<String> result : validationResults) {
+      List<String> sorted = new ArrayList<String>(result);
+      Collections.sort(sorted);
+      assertEquals(expectedValidationResult, sorted);
+    }
+    for (List<String> result : suggestionResults) {
+      assertEquals(expectedSuggestionResult, result);
+    }
+  }
+}
@@ -0,0 +1,308 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.aerhard.xml.tools.error.SilentErrorPrintHandler;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.Schema;
+import com.thaiopensource.validate.Validator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DriverCacheTest {
+
+  private int previousMaxSize;
+  private long previousWatchInterval;
+  private DriverCache.Stats initialStats;
+
+  @Before
+  public void setUp() {
+    initialStats = DriverCache.getStats();
+    previousMaxSize = initialStats.getMaxSize();
+    previousWatchInterval = DriverCache.getWatchInterval();
+    DriverCache.clear();
+  }
+
+  @After
+  public void tearDown() {
+    DriverCache.clear();
+    DriverCache.setMaxWeight(0);
+    DriverCache.setMaxIdleTime(0);
+    DriverCache.setRecompileInBackground(false);
+    DriverCache.setMaxSize(previousMaxSize);
+    DriverCache.setWatchInterval(previousWatchInterval);
+  }
+
+  private static SchemaKey key(int i) {
+    return new SchemaKey(Constants.SCHEMA_TYPE_RNG, "/schema-" + i + ".rng", null, false);
+  }
+
+  private static Driver createDriver(long weight) {
+    return createDriver(weight, SchemaDependencies.NONE);
+  }
+
+  private static Driver createDriver(long weight, SchemaDependencies dependencies) {
+    Schema schema = new Schema() {
+      @Override
+      public Validator createValidator(PropertyMap properties) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public PropertyMap getProperties() {
+        return PropertyMap.EMPTY;
+      }
+    };
+    return new Driver(schema, new PropertyMapBuilder().toPropertyMap(), dependencies, weight);
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    DriverCache.setMaxSize(2);
+    Driver a = createDriver(1);
+    Driver b = createDriver(1);
+    Driver c = createDriver(1);
+
+    DriverCache.put(key(1), a);
+    DriverCache.put(key(2), b);
+    assertSame(a, DriverCache.get(key(1)));
+    DriverCache.put(key(3), c);
+
+    assertSame(a, DriverCache.get(key(1)));
+    assertNull(DriverCache.get(key(2)));
+    assertSame(c, DriverCache.get(key(3)));
+
+    DriverCache.Stats stats = DriverCache.getStats();
+    assertEquals(2, stats.getSize());
+    assertEquals(1, stats.getEvictionCount() - initialStats.getEvictionCount());
+    assertEquals(3, stats.getHitCount() - initialStats.getHitCount());
+    assertEquals(1, stats.getMissCount() - initialStats.getMissCount());
+  }
+
+  @Test
+  public void evictsByWeight() {
+    DriverCache.setMaxSize(10);
+    DriverCache.setMaxWeight(100);
+
+    DriverCache.put(key(1), createDriver(40));
+    DriverCache.put(key(2), createDriver(40));
+    DriverCache.put(key(3), createDriver(40));
+
+    assertNull(DriverCache.get(key(1)));
+    assertEquals(80, DriverCache.getStats().getWeight());
+
+    // an entry heavier than the budget is kept until the next one gets added
+    Driver heavy = createDriver(500);
+    DriverCache.put(key(4), heavy);
+    assertSame(heavy, DriverCache.get(key(4)));
+    assertEquals(1, DriverCache.getStats().getSize());
+
+    DriverCache.put(key(5), createDriver(40));
+    assertNull(DriverCache.get(key(4)));
+    assertEquals(40, DriverCache.getStats().getWeight());
+  }
+
+  @Test
+  public void expiresIdleEntries() throws InterruptedException {
+    DriverCache.setMaxSize(10);
+    DriverCache.setMaxIdleTime(50);
+
+    DriverCache.put(key(1), createDriver(1));
+    Thread.sleep(100);
+    DriverCache.put(key(2), createDriver(1));
+    DriverCache.evictExpired();
+
+    DriverCache.Stats stats = DriverCache.getStats();
+    assertEquals(1, stats.getSize());
+    assertEquals(1, stats.getExpirationCount() - initialStats.getExpirationCount());
+    assertEquals(1, stats.getWeight());
+  }
+
+  @Test
+  public void loadsOncePerKey() throws InterruptedException {
+    DriverCache.setMaxSize(10);
+    final AtomicInteger loadCount = new AtomicInteger();
+    final Driver driver = createDriver(1);
+    final DriverCache.Loader loader = new DriverCache.Loader() {
+      @Override
+      public Driver load(ErrorPrintHandler eh) {
+        loadCount.incrementAndGet();
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return driver;
+      }
+    };
+
+    final List<Driver> results = new ArrayList<Driver>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 10; i++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          Driver result = DriverCache.get(key(1), new SilentErrorPrintHandler(), loader);
+          synchronized (results) {
+            results.add(result);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1, loadCount.get());
+    assertEquals(10, results.size());
+    for (Driver result : results) {
+      assertSame(driver, result);
+    }
+  }
+
+  @Test
+  public void remembersFailedLoads() {
+    DriverCache.setMaxSize(10);
+    final AtomicInteger loadCount = new AtomicInteger();
+    DriverCache.Loader loader = new DriverCache.Loader() {
+      @Override
+      public Driver load(ErrorPrintHandler eh) {
+        loadCount.incrementAndGet();
+        eh.print("schema.rng: fatal: broken");
+        return null;
+      }
+    };
+
+    AccumulatingErrorPrintHandler first = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNG);
+    AccumulatingErrorPrintHandler second = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNG);
+    assertNull(DriverCache.get(key(1), first, loader));
+    assertNull(DriverCache.get(key(1), second, loader));
+
+    assertEquals(1, loadCount.get());
+    assertEquals(1, first.getMessages().size());
+    assertEquals(first.getMessages(), second.getMessages());
+
+    DriverCache.clear();
+    assertNull(DriverCache.get(key(1), second, loader));
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void keysCompareAllProperties() {
+    assertEquals(key(1), key(1));
+    assertEquals(key(1).hashCode(), key(1).hashCode());
+    assertFalse(key(1).equals(key(2)));
+    assertFalse(key(1).equals(new SchemaKey(Constants.SCHEMA_TYPE_RNC, "/schema-1.rng", null, false)));
+    assertFalse(key(1).equals(new SchemaKey(Constants.SCHEMA_TYPE_RNG, "/schema-1.rng", "file:/catalog.xml", false)));
+    assertFalse(key(1).equals(new SchemaKey(Constants.SCHEMA_TYPE_RNG, "/schema-1.rng", null, true)));
+  }
+
+  @Test
+  public void createsKeysOfSchemaLinesOnce() throws IOException {
+    File file = File.createTempFile("schema", ".rng");
+    file.deleteOnExit();
+    RequestProperties requestProperties = new RequestProperties("", "", "UTF-8");
+    SchemaKey key = SchemaKey.create(new SchemaProperties(Constants.SCHEMA_TYPE_RNG + " " + file.getPath(),
+        requestProperties));
+    assertEquals(file.getCanonicalPath(), key.getPath());
+
+    // the same schema line doesn't get canonicalized again, not even after the file has changed
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    assertSame(key, SchemaKey.create(new SchemaProperties(Constants.SCHEMA_TYPE_RNG + " " + file.getPath(),
+        requestProperties)));
+
+    String otherPath = new File(file.getParentFile(), "." + File.separator + file.getName()).getPath();
+    SchemaKey other = SchemaKey.create(new SchemaProperties(Constants.SCHEMA_TYPE_RNG + " " + otherPath,
+        requestProperties));
+    assertEquals(key, other);
+
+    DriverCache.clear();
+    assertEquals(key, SchemaKey.create(new SchemaProperties(Constants.SCHEMA_TYPE_RNG + " " + file.getPath(),
+        requestProperties)));
+  }
+
+  @Test
+  public void dropsEntriesWithModifiedFiles() throws IOException {
+    DriverCache.setMaxSize(10);
+    File file = File.createTempFile("schema", ".rng");
+    file.deleteOnExit();
+    SchemaDependencies dependencies = SchemaDependencies.create(Collections.singletonList(file.toURI().toString()));
+
+    Driver a = createDriver(1, dependencies);
+    DriverCache.put(key(1), a);
+    DriverCache.put(key(2), createDriver(1));
+
+    DriverCache.checkDependencies();
+    assertSame(a, DriverCache.get(key(1)));
+
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    DriverCache.checkDependencies();
+
+    assertNull(DriverCache.get(key(1)));
+    assertEquals(1, DriverCache.getStats().getSize());
+    assertEquals(1, DriverCache.getStats().getInvalidationCount() - initialStats.getInvalidationCount());
+  }
+
+  @Test
+  public void checksFilesOnLookupWithoutPolling() throws IOException {
+    DriverCache.setMaxSize(10);
+    DriverCache.setWatchInterval(0);
+    File file = File.createTempFile("schema", ".rng");
+    file.deleteOnExit();
+    SchemaDependencies dependencies = SchemaDependencies.create(Collections.singletonList(file.toURI().toString()));
+
+    Driver a = createDriver(1, dependencies);
+    DriverCache.put(key(1), a);
+    assertSame(a, DriverCache.get(key(1)));
+
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    assertNull(DriverCache.get(key(1)));
+    assertEquals(0, DriverCache.getStats().getSize());
+    assertEquals(1, DriverCache.getStats().getInvalidationCount() - initialStats.getInvalidationCount());
+  }
+
+  @Test
+  public void recompilesInBackground() throws IOException {
+    DriverCache.setMaxSize(10);
+    DriverCache.setRecompileInBackground(true);
+    File file = File.createTempFile("schema", ".rng");
+    file.deleteOnExit();
+    final SchemaDependencies dependencies = SchemaDependencies.create(Collections.singletonList(file.toURI().toString()));
+
+    final AtomicInteger loadCount = new AtomicInteger();
+    DriverCache.Loader loader = new DriverCache.Loader() {
+      @Override
+      public Driver load(ErrorPrintHandler eh) {
+        loadCount.incrementAndGet();
+        return createDriver(1, SchemaDependencies.create(Collections.singletonList(
+            dependencies.getFiles().get(0).toURI().toString())));
+      }
+    };
+
+    Driver first = DriverCache.get(key(1), new SilentErrorPrintHandler(), loader);
+    assertTrue(file.setLastModified(file.lastModified() - 10000));
+    DriverCache.checkDependencies();
+
+    assertEquals(2, loadCount.get());
+    Driver second = DriverCache.get(key(1));
+    assertTrue(second != null && second != first);
+  }
+}
@@ -0,0 +1,128 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorLimitTest {
+
+  private static final int ERROR_COUNT = 200;
+
+  private File schemaFile;
+  private RequestProcessor processor;
+
+  @Before
+  public void setUp() throws IOException {
+    schemaFile = File.createTempFile("schema", ".rnc");
+    schemaFile.deleteOnExit();
+    OutputStream os = new FileOutputStream(schemaFile);
+    os.write("element doc { element a { empty }* }".getBytes("UTF-8"));
+    os.close();
+    processor = new RequestProcessor(RequestExecutor.create(Constants.EXECUTOR_TYPE_POOL, 2, 4));
+  }
+
+  @After
+  public void tearDown() {
+    DriverCache.clear();
+  }
+
+  private List<String> validate(String options) throws Exception {
+    StringBuilder sb = new StringBuilder("<doc>");
+    for (int i = 0; i < ERROR_COUNT; i++) {
+      sb.append("<b/>\n");
+    }
+    sb.append("</doc>");
+
+    List<String> headerLines = new ArrayList<String>(Arrays.asList(options, "UTF-8", "/doc.xml", "",
+        Constants.SCHEMA_TYPE_RNC + " " + schemaFile.getPath()));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    processor.process(Constants.COMMAND_VALIDATE, headerLines,
+        RequestBody.wrap(sb.toString().getBytes("UTF-8")), os);
+    String response = os.toString("UTF-8");
+    return response.isEmpty() ? new ArrayList<String>() : Arrays.asList(response.split("\r?\n"));
+  }
+
+  private static int count(List<String> messages, String level) {
+    int n = 0;
+    for (String message : messages) {
+      if (message.contains(": " + level + ": ")) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  @Test
+  public void reportsAllErrorsWithoutLimit() throws Exception {
+    List<String> messages = validate("");
+    assertEquals(ERROR_COUNT, count(messages, "error"));
+    assertEquals(0, count(messages, "warning"));
+  }
+
+  @Test
+  public void stopsValidationAtLimit() throws Exception {
+    List<String> messages = validate("maxErrors=10");
+    assertEquals(10, count(messages, "error"));
+    assertEquals(1, count(messages, "warning"));
+    assertTrue(messages.contains(Constants.SCHEMA_TYPE_RNC + ":/doc.xml: warning: validation stopped after 10 errors"));
+  }
+
+  @Test
+  public void stopsResumableValidationAtLimit() throws Exception {
+    List<String> messages = validate("edit=0 maxErrors=10");
+    assertEquals(10, count(messages, "error"));
+    assertEquals(1, count(messages, "warning"));
+
+    messages = validate("edit=0");
+    assertEquals(ERROR_COUNT, count(messages, "error"));
+  }
+
+  @Test
+  public void ignoresInvalidLimits() throws Exception {
+    assertEquals(ERROR_COUNT, count(validate("maxErrors=0"), "error"));
+    assertEquals(ERROR_COUNT, count(validate("maxErrors=x"), "error"));
+  }
+
+  @Test
+  public void keepsDistinctMessages() {
+    AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC, 3);
+    eh.error(new SAXParseException("duplicate", null, "/doc.xml", 1, 1));
+    eh.error(new SAXParseException("duplicate", null, "/doc.xml", 1, 1));
+    assertEquals(1, eh.getMessages().size());
+    assertFalse(eh.isLimitReached());
+
+    // duplicates count against the limit like any other error
+    eh.error(new SAXParseException("other", null, "/doc.xml", 2, 1));
+    assertTrue(eh.isLimitReached());
+    eh.error(new SAXParseException("dropped", null, "/doc.xml", 3, 1));
+    eh.print("/doc.xml: warning: message");
+    eh.print("/doc.xml: warning: message");
+    assertEquals(3, eh.getMessages().size());
+    assertTrue(eh.getMessages().contains(Constants.SCHEMA_TYPE_RNC + ":/doc.xml: warning: message"));
+  }
+
+  @Test
+  public void formatsReportsWithTheirLocations() throws SAXParseException {
+    AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC);
+    eh.error(new SAXParseException("message", null, "/doc.xml", 1, 1));
+    eh.error(new SAXParseException("message", null, "/doc.xml", 1, 2));
+    eh.warning(new SAXParseException("message", null, "/doc.xml", 1, 1));
+    assertEquals(3, eh.getMessages().size());
+    assertTrue(eh.getMessages().contains(Constants.SCHEMA_TYPE_RNC + ":/doc.xml:1:2: error: message"));
+  }
+}
@@ -0,0 +1,138 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.util.ClientThread;
+import com.aerhard.xml.tools.util.FramedClient;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FramedProtocolTest {
+
+  private static final String host;
+  private static final int port = 9005;
+  private static final Thread serverThread;
+
+  private static final String testDataPath;
+
+  static {
+    Properties properties = new Properties();
+
+    try {
+      properties.load(FramedProtocolTest.class.getResourceAsStream("/test.properties"));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    testDataPath = properties.getProperty("testDataPath");
+
+    String localhost;
+    try {
+      localhost = InetAddress.getByName(null).getHostAddress();
+    } catch (UnknownHostException e) {
+      localhost = null;
+      e.printStackTrace();
+    }
+    host = localhost;
+
+    serverThread = new Thread() {
+      @Override
+      public void run() {
+        SocketServer server = new SocketServer();
+        try {
+          server.start(port, 15);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+        System.out.println("CLIENT: Server ends");
+      }
+    };
+    serverThread.start();
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    serverThread.interrupt();
+  }
+
+  @Test
+  public void run() throws IOException, InterruptedException {
+    String xmlFilePath = testDataPath + "/validation/xml/rng-invalid.xml";
+    String catalogFilePath = testDataPath + "/validation/catalog/catalog.xml";
+    String schema = Constants.SCHEMA_TYPE_RNG + " " + testDataPath + "/validation/schema/schema.rng";
+
+    List<String> headers = Arrays.asList("r", "UTF-8", xmlFilePath, catalogFilePath, schema);
+    byte[] body = readFile(xmlFilePath);
+
+    int requestCount = 3;
+
+    FramedClient client = new FramedClient(host, port);
+    for (int i = 1; i <= requestCount; i++) {
+      client.send(i, Constants.COMMAND_VALIDATE, headers, body);
+    }
+
+    Set<Integer> requestIds = new HashSet<Integer>();
+    for (int i = 0; i < requestCount; i++) {
+      FramedClient.Response response = client.receive();
+      requestIds.add(response.requestId);
+      assertEquals(0, response.status);
+      assertEquals(5, countLines(response.getPayloadString()));
+    }
+    client.close();
+
+    assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3)), requestIds);
+
+    // legacy clients keep working on the same port
+    List<String> result = new ArrayList<String>();
+    ClientThread.validateSync(host, port, xmlFilePath, catalogFilePath, new String[]{schema}, result);
+
+    assertEquals(5, result.size());
+  }
+
+  @Test
+  public void reportsErrorsAsStrings() throws IOException {
+    FramedClient client = new FramedClient(host, port);
+    // a validation request without headers fails while being processed
+    client.send(7, Constants.COMMAND_VALIDATE, Collections.<String>emptyList(), new byte[]{'x'});
+    FramedClient.Response response = client.receive();
+    client.close();
+
+    assertEquals(7, response.requestId);
+    assertEquals(FramedConnection.STATUS_ERROR, response.status);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(response.payload));
+    byte[] message = new byte[in.readInt()];
+    in.readFully(message);
+    assertEquals(-1, in.read());
+    assertTrue(new String(message, "UTF-8").length() > 0);
+  }
+
+  private static int countLines(String s) throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader(s));
+    int count = 0;
+    while (reader.readLine() != null) {
+      count++;
+    }
+    return count;
+  }
+
+  private static byte[] readFile(String path) throws IOException {
+    InputStream is = new FileInputStream(path);
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      byte[] data = new byte[1024];
+      int nRead;
+      while ((nRead = is.read(data)) != -1) {
+        baos.write(data, 0, nRead);
+      }
+      return baos.toByteArray();
+    } finally {
+      is.close();
+    }
+  }
+}
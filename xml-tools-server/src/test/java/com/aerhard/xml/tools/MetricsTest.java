@@ -0,0 +1,72 @@
+package com.aerhard.xml.tools;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+  @Test
+  public void bucketsBoundValues() {
+    for (long value = 0; value < 100000; value++) {
+      int bucket = LatencyHistogram.getBucket(value);
+      assertTrue(value <= LatencyHistogram.getUpperBound(bucket));
+      assertTrue(bucket == 0 || value > LatencyHistogram.getUpperBound(bucket - 1));
+      assertTrue(LatencyHistogram.getUpperBound(bucket) <= value + value / 4);
+    }
+  }
+
+  @Test
+  public void reportsPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(0.5));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 100);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(5050, histogram.getMean());
+    assertEquals(10000, histogram.getMax());
+    assertInRange(5000, histogram.getPercentile(0.5));
+    assertInRange(9500, histogram.getPercentile(0.95));
+    assertInRange(9900, histogram.getPercentile(0.99));
+    assertEquals(10000, histogram.getPercentile(1));
+  }
+
+  private static void assertInRange(long expected, long actual) {
+    assertTrue(actual + " < " + expected, actual >= expected);
+    assertTrue(actual + " > " + expected, actual <= expected + expected / 4);
+  }
+
+  @Test
+  public void boundsRequestKeys() {
+    assertEquals("T", Metrics.getRequestKey(Constants.COMMAND_CACHE_STATS, null));
+    assertEquals(Metrics.OTHER, Metrics.getRequestKey("X", null));
+    assertEquals(Metrics.OTHER, Metrics.getRequestKey("V rng", Arrays.asList("rng")));
+    assertEquals("V rng+sch.iso", Metrics.getRequestKey(Constants.COMMAND_VALIDATE,
+        Arrays.asList("sch.iso", "rng", "sch.iso")));
+    assertEquals("A xsd+other", Metrics.getRequestKey(Constants.COMMAND_AUTO_COMPLETE,
+        Arrays.asList("foo", "xsd", "bar")));
+  }
+
+  @Test
+  public void writesMetrics() throws Exception {
+    RequestProcessor processor = new RequestProcessor(RequestExecutor.create(Constants.EXECUTOR_TYPE_POOL, 2, 4));
+    processor.process(Constants.COMMAND_CACHE_STATS, new ArrayList<String>(), null, new ByteArrayOutputStream());
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    processor.process(Constants.COMMAND_METRICS, new ArrayList<String>(), null, os);
+    JSONObject json = new JSONObject(os.toString("UTF-8"));
+
+    assertTrue(json.getJSONObject("requests").getJSONObject(Constants.COMMAND_CACHE_STATS).getLong("count") > 0);
+    assertTrue(json.getJSONObject("phases").has("parse"));
+    assertTrue(json.getJSONObject("cache").has("hits"));
+    assertTrue(json.has("schemas"));
+    assertEquals(2, json.getJSONObject("executor").getInt("maxThreads"));
+  }
+}
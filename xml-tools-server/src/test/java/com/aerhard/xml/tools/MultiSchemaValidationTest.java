@@ -0,0 +1,123 @@
+package com.aerhard.xml.tools;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiSchemaValidationTest {
+
+  private static final String RNC_SCHEMA = "element doc { (element a { empty } | element c { empty })* }";
+
+  private static final String RNG_SCHEMA =
+      "<element name=\"doc\" xmlns=\"http://relaxng.org/ns/structure/1.0\">\n" +
+      "  <zeroOrMore><choice><element name=\"a\"><empty/></element>\n" +
+      "  <element name=\"b\"><empty/></element></choice></zeroOrMore>\n" +
+      "</element>\n";
+
+  private static final String XSD_SCHEMA =
+      "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+      "  <xs:element name=\"doc\"><xs:complexType><xs:sequence>\n" +
+      "    <xs:element name=\"a\" minOccurs=\"0\" maxOccurs=\"unbounded\"><xs:complexType>\n" +
+      "      <xs:attribute name=\"n\" type=\"xs:int\"/>\n" +
+      "    </xs:complexType></xs:element>\n" +
+      "  </xs:sequence></xs:complexType></xs:element>\n" +
+      "</xs:schema>\n";
+
+  private static final String DOCUMENT = "<doc><a/><b/><a n=\"x\"/>\n<c/><a n=\"1\"/><d/></doc>";
+
+  private List<String> schemaLines;
+  private RequestProcessor processor;
+
+  @Before
+  public void setUp() throws IOException {
+    schemaLines = Arrays.asList(
+        Constants.SCHEMA_TYPE_RNC + " " + createSchemaFile(".rnc", RNC_SCHEMA),
+        Constants.SCHEMA_TYPE_RNG + " " + createSchemaFile(".rng", RNG_SCHEMA),
+        Constants.SCHEMA_TYPE_XSD + " " + createSchemaFile(".xsd", XSD_SCHEMA));
+    processor = new RequestProcessor(RequestExecutor.create(Constants.EXECUTOR_TYPE_POOL, 4, 8));
+  }
+
+  @After
+  public void tearDown() {
+    DriverCache.clear();
+  }
+
+  private static String createSchemaFile(String suffix, String content) throws IOException {
+    File file = File.createTempFile("schema", suffix);
+    file.deleteOnExit();
+    OutputStream os = new FileOutputStream(file);
+    os.write(content.getBytes("UTF-8"));
+    os.close();
+    return file.getPath();
+  }
+
+  private Set<String> validate(String options, List<String> schemaLines, String document) throws Exception {
+    List<String> headerLines = new ArrayList<String>(Arrays.asList(options, "UTF-8", "/doc.xml", ""));
+    headerLines.addAll(schemaLines);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    processor.process(Constants.COMMAND_VALIDATE, headerLines, RequestBody.wrap(document.getBytes("UTF-8")), os);
+    String response = os.toString("UTF-8");
+    return response.isEmpty() ? new HashSet<String>() : new HashSet<String>(Arrays.asList(response.split("\r?\n")));
+  }
+
+  /**
+   * Validates the document against each schema with a request of its own and returns all messages.
+   */
+  private Set<String> validateSeparately(String options, String document) throws Exception {
+    Set<String> messages = new HashSet<String>();
+    for (String schemaLine : schemaLines) {
+      Set<String> schemaMessages = validate(options, Arrays.asList(schemaLine), document);
+      assertTrue(schemaMessages.toString(), !schemaMessages.isEmpty());
+      messages.addAll(schemaMessages);
+    }
+    return messages;
+  }
+
+  private static int count(Set<String> messages, String prefix) {
+    int n = 0;
+    for (String message : messages) {
+      if (message.startsWith(prefix)) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  @Test
+  public void reportsErrorsOfEachSchema() throws Exception {
+    Set<String> expected = validateSeparately("", DOCUMENT);
+    assertTrue(count(expected, Constants.SCHEMA_TYPE_RNC + ":") > 0);
+    assertTrue(count(expected, Constants.SCHEMA_TYPE_RNG + ":") > 0);
+    assertTrue(count(expected, Constants.SCHEMA_TYPE_XSD + ":") > 0);
+    assertEquals(expected, validate("", schemaLines, DOCUMENT));
+  }
+
+  @Test
+  public void reportsWellFormednessErrorsOnce() throws Exception {
+    String document = DOCUMENT.substring(0, DOCUMENT.length() - "</doc>".length());
+    Set<String> expected = validateSeparately("", document);
+    assertEquals(1, count(expected, Constants.SCHEMA_TYPE_NONE + ":"));
+    assertEquals(expected, validate("", schemaLines, document));
+  }
+
+  @Test
+  public void appliesErrorLimitPerSchema() throws Exception {
+    Set<String> expected = validateSeparately("maxErrors=1", DOCUMENT);
+    assertEquals(expected, validate("maxErrors=1", schemaLines, DOCUMENT));
+    assertEquals(2, count(expected, Constants.SCHEMA_TYPE_RNC + ":"));
+  }
+}
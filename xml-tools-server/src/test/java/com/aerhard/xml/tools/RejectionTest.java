@@ -0,0 +1,142 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.util.FramedClient;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RejectionTest {
+
+  private static final int SILENT_CLIENT_COUNT = 32;
+
+  private static RequestExecutor startServer(final int port, int maxThreads, int queueDepth) throws Exception {
+    final RequestExecutor executor = RequestExecutor.create(Constants.EXECUTOR_TYPE_POOL, maxThreads, queueDepth, 1);
+    Thread serverThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          new SocketServer().start(port, 15, executor);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    };
+    serverThread.setDaemon(true);
+    serverThread.start();
+
+    // wait until the server answers requests and has finished the probing one
+    for (int i = 0; i < 100; i++) {
+      try {
+        request(port, "-" + Constants.COMMAND_CACHE_STATS + "\n\n");
+        while (executor.getActiveRequestCount() > 0) {
+          Thread.sleep(10);
+        }
+        return executor;
+      } catch (IOException e) {
+        Thread.sleep(50);
+      }
+    }
+    throw new IOException("Server didn't start");
+  }
+
+  private static List<String> request(int port, String request) throws IOException {
+    Socket socket = new Socket(InetAddress.getByName(null), port);
+    try {
+      Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+      out.write(request);
+      out.flush();
+      socket.shutdownOutput();
+
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+      List<String> lines = new ArrayList<String>();
+      String line;
+      while ((line = in.readLine()) != null) {
+        lines.add(line);
+      }
+      return lines;
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Opens a connection which sends nothing, so that the server thread reading it has to wait.
+   */
+  private static Socket openSilentConnection(int port) throws IOException {
+    return new Socket(InetAddress.getByName(null), port);
+  }
+
+  private static void occupyWorker(RequestExecutor executor, int port, List<Socket> sockets) throws Exception {
+    sockets.add(openSilentConnection(port));
+    for (int i = 0; executor.getActiveRequestCount() == 0; i++) {
+      if (i == 100) {
+        fail("Request didn't start");
+      }
+      Thread.sleep(50);
+    }
+  }
+
+  private static List<String> validate(int port) throws IOException {
+    return request(port, "-" + Constants.COMMAND_VALIDATE + "\n-r\n-UTF-8\n-/doc.xml\n-\n-" +
+        Constants.SCHEMA_TYPE_NONE + " \n\n<doc/>");
+  }
+
+  private static void closeAll(List<Socket> sockets) throws IOException {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void rejectsRequestsAndKeepsAccepting() throws Exception {
+    int port = 9007;
+    RequestExecutor executor = startServer(port, 1, 0);
+    List<Socket> sockets = new ArrayList<Socket>();
+    try {
+      occupyWorker(executor, port, sockets);
+
+      assertEquals(Collections.singletonList(Constants.SCHEMA_TYPE_NONE +
+          ":/doc.xml: fatal: XML Tools Server is busy, request rejected"), validate(port));
+
+      // clients which don't send their requests must not keep the server from accepting others
+      for (int i = 0; i < SILENT_CLIENT_COUNT; i++) {
+        sockets.add(openSilentConnection(port));
+      }
+      long start = System.currentTimeMillis();
+      List<String> result = validate(port);
+      assertTrue(System.currentTimeMillis() - start < 1000);
+      assertTrue(result.size() <= 1);
+    } finally {
+      closeAll(sockets);
+    }
+  }
+
+  @Test
+  public void limitsFramedConnections() throws Exception {
+    int port = 9008;
+    startServer(port, 2, 4);
+
+    FramedClient first = new FramedClient(InetAddress.getByName(null).getHostAddress(), port);
+    first.send(1, Constants.COMMAND_CACHE_STATS, Collections.<String>emptyList(), new byte[0]);
+    assertEquals(FramedConnection.STATUS_OK, first.receive().status);
+
+    FramedClient second = new FramedClient(InetAddress.getByName(null).getHostAddress(), port);
+    try {
+      second.send(1, Constants.COMMAND_CACHE_STATS, Collections.<String>emptyList(), new byte[0]);
+      second.receive();
+      fail("Connection beyond the limit has been served");
+    } catch (IOException e) {
+      // closed by the server
+    }
+    first.close();
+  }
+}
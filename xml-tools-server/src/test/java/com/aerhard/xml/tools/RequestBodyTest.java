@@ -0,0 +1,131 @@
+package com.aerhard.xml.tools;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestBodyTest {
+
+  private static byte[] createContent(int length) {
+    byte[] content = new byte[length];
+    for (int i = 0; i < length; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+
+  /**
+   * Stream returning at most a few bytes per read, like a socket.
+   */
+  private static InputStream createStream(byte[] content) {
+    return new ByteArrayInputStream(content) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 1000));
+      }
+    };
+  }
+
+  @Test
+  public void readsBodyOfKnownLength() throws IOException {
+    byte[] content = createContent(10000);
+    RequestBody body = RequestBody.read(createStream(content), content.length);
+
+    assertEquals(content.length, body.getLength());
+    assertTrue(body.getBytes().length >= content.length);
+    assertArrayEquals(content, Arrays.copyOf(body.getBytes(), body.getLength()));
+    body.release();
+  }
+
+  @Test
+  public void readsBodyToEndOfStream() throws IOException {
+    byte[] content = createContent(3 * BufferPool.MIN_POOLED_SIZE + 17);
+    RequestBody body = RequestBody.readToEnd(createStream(content));
+
+    assertEquals(content.length, body.getLength());
+    assertArrayEquals(content, Arrays.copyOf(body.getBytes(), body.getLength()));
+    body.release();
+  }
+
+  /**
+   * Stream of the given number of bytes which doesn't hold them in memory.
+   */
+  private static InputStream createLargeStream(final int length) {
+    return new InputStream() {
+      private int position = 0;
+
+      @Override
+      public int read() {
+        return position < length ? position++ & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (position == length) {
+          return -1;
+        }
+        int n = Math.min(Math.min(len, length - position), 64 * 1024);
+        for (int i = 0; i < n; i++) {
+          b[off + i] = (byte) position++;
+        }
+        return n;
+      }
+    };
+  }
+
+  @Test(timeout = 30000)
+  public void readsBodyLargerThanPooledBuffersToEnd() throws IOException {
+    int length = BufferPool.MAX_POOLED_SIZE + 200 * 1024;
+    RequestBody body = RequestBody.readToEnd(createLargeStream(length));
+
+    assertEquals(length, body.getLength());
+    byte[] bytes = body.getBytes();
+    for (int i = 0; i < length; i += 4099) {
+      assertEquals((byte) i, bytes[i]);
+    }
+    assertEquals((byte) (length - 1), bytes[length - 1]);
+    body.release();
+  }
+
+  @Test
+  public void limitsBodyReadToEnd() throws IOException {
+    byte[] content = createContent(5000);
+    assertEquals(content.length, RequestBody.readToEnd(createStream(content), content.length).getLength());
+    try {
+      RequestBody.readToEnd(createStream(content), content.length - 1);
+      fail("Body beyond the limit has been read");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsDeclaredLengthBeyondLimit() throws IOException {
+    RequestBody.read(createLargeStream(10), RequestBody.MAX_LENGTH + 1);
+  }
+
+  @Test(expected = IOException.class)
+  public void failsOnPrematureEndOfBody() throws IOException {
+    RequestBody.read(createStream(createContent(100)), 200);
+  }
+
+  @Test
+  public void reusesReleasedBuffers() throws IOException {
+    RequestBody first = RequestBody.read(createStream(createContent(5000)), 5000);
+    byte[] buffer = first.getBytes();
+    first.release();
+
+    RequestBody second = RequestBody.read(createStream(createContent(6000)), 6000);
+    assertSame(buffer, second.getBytes());
+    second.release();
+  }
+}
@@ -0,0 +1,175 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.thaiopensource.suggest.AttributeValueSuggestion;
+import com.thaiopensource.suggest.ElementSuggestion;
+import com.thaiopensource.suggest.Suggestion;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.prop.rng.RngProperty;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResumableSuggestionTest {
+
+  private static final String XML_PATH = "/doc.xml";
+  private static final int SECTION_COUNT = 40;
+
+  private static final String SCHEMA =
+      "default namespace = \"urn:test\"\n" +
+      "namespace t = \"urn:other\"\n" +
+      "start = element doc { section+ }\n" +
+      "section = element section { attribute id { xsd:ID }, attribute type { \"a\" | \"b\" }?, (item | note)* }\n" +
+      "item = element item { attribute ref { xsd:IDREF }, attribute t:n { text }?, (text | element b { text })* }\n" +
+      "note = element note { attribute id { xsd:ID }?, empty }\n";
+
+  private String schemaPath;
+
+  @Before
+  public void setUp() throws IOException {
+    File schemaFile = File.createTempFile("schema", ".rnc");
+    schemaFile.deleteOnExit();
+    OutputStream os = new FileOutputStream(schemaFile);
+    os.write(SCHEMA.getBytes("UTF-8"));
+    os.close();
+    schemaPath = schemaFile.getPath();
+  }
+
+  private SchemaProperties createSchemaProperties(String suggestionType, String fragment) {
+    return new SchemaProperties(Constants.SCHEMA_TYPE_RNC + " " + schemaPath,
+        new RequestProperties("", "", "UTF-8", suggestionType, fragment));
+  }
+
+  /**
+   * Creates a driver with the properties SuggesterTask uses.
+   */
+  private Driver createDriver() {
+    ErrorPrintHandler eh = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC);
+    PropertyMapBuilder builder = new PropertyMapBuilder();
+    builder.put(ValidateProperty.ERROR_HANDLER, eh);
+    RngProperty.CHECK_ID_IDREF.add(builder);
+    PropertyMap properties = builder.toPropertyMap();
+    Driver driver = SchemaFactory.createDriver(properties, createSchemaProperties(null, null));
+    assertTrue(driver.isResumable());
+    return driver;
+  }
+
+  /**
+   * Returns a document of several checkpoint intervals. The sections declare the prefix of the
+   * attributes of their items, and the notes of the first sections define IDs, which can only be
+   * suggested after resuming if they have been restored with the suggester's state.
+   */
+  private static String createDocument() {
+    StringBuilder sb = new StringBuilder("<doc xmlns=\"urn:test\">\n");
+    for (int i = 0; i < SECTION_COUNT; i++) {
+      sb.append("<section id=\"s").append(i).append("\" xmlns:t=\"urn:other\">\n");
+      if (i < 3) {
+        sb.append("<note id=\"n").append(i).append("\"/>\n");
+      }
+      for (int j = 0; j < 10; j++) {
+        for (int k = 0; k < 5; k++) {
+          sb.append("<item ref=\"s").append((i + k) % SECTION_COUNT).append("\" t:n=\"").append(k)
+              .append("\">text <b>x</b></item>");
+        }
+        sb.append('\n');
+      }
+      sb.append("</section>\n");
+    }
+    sb.append("</doc>\n");
+    return sb.toString();
+  }
+
+  private static String describe(Suggestion suggestion) {
+    StringBuilder sb = new StringBuilder(suggestion.getValue());
+    if (suggestion instanceof ElementSuggestion) {
+      ElementSuggestion elementSuggestion = (ElementSuggestion) suggestion;
+      sb.append(' ').append(elementSuggestion.getAttributes()).append(' ').append(elementSuggestion.isEmpty())
+          .append(' ').append(elementSuggestion.isClosing());
+    } else if (suggestion instanceof AttributeValueSuggestion) {
+      sb.append(' ').append(((AttributeValueSuggestion) suggestion).isListItem());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Requests suggestions at the end of the head, which is the document up to the offset followed by
+   * the given tag.
+   */
+  private static List<String> suggest(Driver driver, SchemaProperties schemaProperties, String document,
+                                      int offset, String tag) throws IOException {
+    byte[] head = (document.substring(0, offset) + tag).getBytes("UTF-8");
+    byte[] bytes = (document.substring(0, offset) + tag + document.substring(offset)).getBytes("UTF-8");
+    List<String> suggestions = new ArrayList<String>();
+    for (Suggestion suggestion : driver.runSuggester(bytes, head.length, bytes.length,
+        new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC), XML_PATH, schemaProperties)) {
+      suggestions.add(describe(suggestion));
+    }
+    return suggestions;
+  }
+
+  /**
+   * Requests suggestions from a driver which has recorded checkpoints at an earlier request and from a
+   * new driver, asserting that the first one resumes and that both suggest the same.
+   */
+  private List<String> assertResumedLikeFullParse(Driver driver, SchemaProperties schemaProperties,
+                                                  String document, int offset, String tag) throws IOException {
+    byte[] head = (document.substring(0, offset) + tag).getBytes("UTF-8");
+    Checkpoints checkpoints = driver.getSuggestionCheckpoints(XML_PATH);
+    assertNotNull(checkpoints);
+    assertNotNull(checkpoints.find(head, head.length, head.length));
+
+    List<String> resumed = suggest(driver, schemaProperties, document, offset, tag);
+    assertEquals(suggest(createDriver(), schemaProperties, document, offset, tag), resumed);
+    return resumed;
+  }
+
+  @Test
+  public void suggestsAfterResumeLikeAfterFullParse() throws Exception {
+    String document = createDocument();
+    Driver driver = createDriver();
+
+    // records the checkpoints
+    SchemaProperties elements = createSchemaProperties(Constants.SUGGESTION_TYPE_ELEMENT, null);
+    suggest(driver, elements, document, document.lastIndexOf("</section>"), "");
+
+    List<String> suggestions = assertResumedLikeFullParse(driver, elements, document,
+        document.lastIndexOf("<item "), "");
+    assertEquals(Arrays.asList("item [ref] false false", "note null true false", "section null false true"),
+        suggestions);
+
+    // the prefixes in scope and the attributes of the last start tag are part of the state as well
+    suggestions = assertResumedLikeFullParse(driver, createSchemaProperties(Constants.SUGGESTION_TYPE_ATT_NAME,
+        null), document, document.lastIndexOf("<item "), "<item ref=\"s1\">");
+    assertEquals(1, suggestions.size());
+    assertTrue(suggestions.get(0).startsWith("t:n"));
+  }
+
+  @Test
+  public void suggestsIdsDefinedBeforeCheckpoint() throws Exception {
+    String document = createDocument();
+    Driver driver = createDriver();
+
+    SchemaProperties values = createSchemaProperties(Constants.SUGGESTION_TYPE_ATT_VALUE, "ref");
+    suggest(driver, values, document, document.lastIndexOf("<item "), "<item ref=\"\">");
+
+    int offset = document.lastIndexOf("<item ", document.lastIndexOf("<item ") - 1);
+    List<String> suggestions = assertResumedLikeFullParse(driver, values, document, offset, "<item ref=\"\">");
+    assertTrue(suggestions.contains("n0 false"));
+    assertTrue(suggestions.contains("s0 false"));
+    assertTrue(suggestions.contains("s39 false"));
+  }
+}
@@ -0,0 +1,244 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import com.aerhard.xml.tools.error.ErrorPrintHandler;
+import com.aerhard.xml.tools.error.RecordingErrorPrintHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResumableValidationTest {
+
+  private static final String XML_PATH = "/doc.xml";
+  private static final int SECTION_COUNT = 40;
+
+  private static final String SCHEMA =
+      "default namespace = \"urn:test\"\n" +
+      "start = element doc { section+ }\n" +
+      "section = element section { attribute id { xsd:ID }?, item* }\n" +
+      "item = element item { attribute ref { xsd:IDREF }?, (text | element b { text })* }\n";
+
+  private String schemaPath;
+  private Driver driver;
+
+  @Before
+  public void setUp() throws IOException {
+    File schemaFile = File.createTempFile("schema", ".rnc");
+    schemaFile.deleteOnExit();
+    OutputStream os = new FileOutputStream(schemaFile);
+    os.write(SCHEMA.getBytes("UTF-8"));
+    os.close();
+    schemaPath = schemaFile.getPath();
+
+    SchemaProperties schemaProperties = new SchemaProperties(Constants.SCHEMA_TYPE_RNC + " " + schemaPath,
+        new RequestProperties("", "", "UTF-8"));
+    driver = SchemaFactory.createDriver(SchemaFactory.createPropertyMap(schemaProperties,
+        new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC)), schemaProperties);
+    assertTrue(driver.isResumable());
+  }
+
+  /**
+   * Returns a document of several checkpoint intervals with a validation error near the start, a
+   * duplicate ID in the middle and a reference to a missing ID, which is only reported at its end.
+   */
+  private static String createDocument() {
+    StringBuilder sb = new StringBuilder("<doc xmlns=\"urn:test\">\n");
+    for (int i = 0; i < SECTION_COUNT; i++) {
+      sb.append("<section id=\"").append(i == 20 ? "s10" : "s" + i).append("\">\n");
+      for (int j = 0; j < 10; j++) {
+        for (int k = 0; k < 5; k++) {
+          // the IDs of the first 20 sections are all defined
+          sb.append("<item ref=\"").append(i == 5 && j == 3 && k == 2 ? "missing" : "s" + (i + k) % 20)
+              .append("\">text <b>x</b></item>");
+        }
+        if (i == 3 && j == 7) {
+          sb.append("<x/>");
+        }
+        sb.append('\n');
+      }
+      sb.append("</section>\n");
+    }
+    sb.append("</doc>\n");
+    return sb.toString();
+  }
+
+  private static byte[] bytes(String document) throws IOException {
+    return document.getBytes("UTF-8");
+  }
+
+  private Set<String> validate(String document) throws IOException {
+    AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC);
+    InputSource in = new InputSource(new ByteArrayInputStream(bytes(document)));
+    in.setEncoding("UTF-8");
+    in.setSystemId(XML_PATH);
+    driver.runValidator(in, eh, eh, schemaPath);
+    return eh.getMessages();
+  }
+
+  private Set<String> validateResumable(String document, int editStart) throws IOException {
+    AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC);
+    byte[] bytes = bytes(document);
+    driver.runResumableValidator(bytes, bytes.length, editStart, eh, eh, XML_PATH, schemaPath);
+    return eh.getMessages();
+  }
+
+  private Checkpoint findCheckpoint(String document, int editStart) throws IOException {
+    Checkpoints checkpoints = driver.getValidationCheckpoints(XML_PATH);
+    assertNotNull(checkpoints);
+    assertTrue(checkpoints.size() > 2);
+    byte[] bytes = bytes(document);
+    return checkpoints.find(bytes, bytes.length, editStart);
+  }
+
+  /**
+   * Inserts a string at an offset; the documents are ASCII, so character and byte offsets are the same.
+   */
+  private static String insert(String document, int offset, String s) {
+    return document.substring(0, offset) + s + document.substring(offset);
+  }
+
+  @Test
+  public void reportsErrorsOfFirstRunLikeFullValidation() throws Exception {
+    String document = createDocument();
+    Set<String> expected = validate(document);
+    assertEquals(4, expected.size());
+    assertEquals(expected, validateResumable(document, 0));
+  }
+
+  @Test
+  public void reportsErrorsBeforeCheckpointWhenResuming() throws Exception {
+    String document = createDocument();
+    validateResumable(document, 0);
+
+    int index = document.lastIndexOf("<item ");
+    String edited = insert(document, index, "<y/>");
+    int editStart = index;
+    assertNotNull(findCheckpoint(edited, editStart));
+
+    Set<String> expected = validate(edited);
+    assertEquals(5, expected.size());
+    assertEquals(expected, validateResumable(edited, editStart));
+
+    // a second edit resumes from the checkpoints recorded when resuming
+    String reverted = document;
+    assertNotNull(findCheckpoint(reverted, editStart));
+    assertEquals(validate(reverted), validateResumable(reverted, editStart));
+  }
+
+  @Test
+  public void validatesWholeDocumentAfterEditBeforeCheckpoints() throws Exception {
+    String document = createDocument();
+    validateResumable(document, 0);
+
+    int index = document.indexOf("<item ");
+    String edited = insert(document, index, "<y/>");
+    int editStart = index;
+    assertNull(findCheckpoint(edited, editStart));
+
+    assertEquals(validate(edited), validateResumable(edited, editStart));
+  }
+
+  @Test
+  public void translatesPositionsAfterCheckpoint() throws Exception {
+    String document = createDocument();
+    validateResumable(document, 0);
+
+    // an edit directly at a checkpoint in the middle of a line, so that the errors of its line only
+    // get their positions right with the column of the checkpoint added
+    Checkpoint checkpoint = findCheckpoint(document, document.length());
+    assertTrue(checkpoint.getColumn() > 1);
+    int editStart = checkpoint.getOffset();
+    String edited = insert(document, editStart, "<y/>\n<z/>");
+    assertNotNull(findCheckpoint(edited, editStart));
+
+    assertEquals(validate(edited), validateResumable(edited, editStart));
+  }
+
+  @Test
+  public void translatesPositionsOfParserErrors() throws Exception {
+    String document = createDocument();
+    validateResumable(document, 0);
+
+    int index = document.lastIndexOf("<b>");
+    String edited = insert(document, index, "\n<b></item>");
+    int editStart = index;
+    assertNotNull(findCheckpoint(edited, editStart));
+
+    Set<String> expected = validate(edited);
+    boolean fatal = false;
+    for (String message : expected) {
+      fatal |= message.contains(": fatal: ");
+    }
+    assertTrue(fatal);
+    assertEquals(expected, validateResumable(edited, editStart));
+  }
+
+  @Test
+  public void detectsDocumentsThatCannotBeResumed() throws Exception {
+    byte[] plain = bytes("<?xml version=\"1.0\"?>\n<!-- <!DOCTYPE doc> -->\n<doc/>");
+    assertTrue(Checkpoints.isResumable(plain, plain.length, "UTF-8"));
+    assertFalse(Checkpoints.isResumable(plain, plain.length, "ISO-8859-1"));
+
+    byte[] bom = bytes("\ufeff<doc/>");
+    assertFalse(Checkpoints.isResumable(bom, bom.length, "UTF-8"));
+
+    byte[] doctype = bytes("<?xml version=\"1.0\"?>\n<!DOCTYPE doc [<!ENTITY e \"x\">]>\n<doc>&e;</doc>");
+    assertFalse(Checkpoints.isResumable(doctype, doctype.length, "UTF-8"));
+  }
+
+  @Test
+  public void replaysAllRecordedDiagnosticsInOrder() throws Exception {
+    final List<String> reported = new ArrayList<String>();
+    ErrorPrintHandler listing = new ErrorPrintHandler() {
+      public void warning(SAXParseException e) {
+        reported.add("warning: " + e.getMessage());
+      }
+
+      public void error(SAXParseException e) {
+        reported.add("error: " + e.getMessage());
+      }
+
+      public void fatalError(SAXParseException e) throws SAXParseException {
+        throw e;
+      }
+
+      public void printException(Throwable e) {
+        reported.add("exception: " + e.getMessage());
+      }
+
+      public void print(String message) {
+        reported.add(message);
+      }
+    };
+
+    RecordingErrorPrintHandler recording = new RecordingErrorPrintHandler(listing);
+    recording.warning(new SAXParseException("w", null));
+    recording.error(new SAXParseException("e", null));
+    recording.print("m");
+    recording.printException(new IOException("x"));
+    List<String> expected = new ArrayList<String>(reported);
+    assertEquals(4, recording.getDiagnosticCount());
+
+    reported.clear();
+    RecordingErrorPrintHandler replaying = new RecordingErrorPrintHandler(listing);
+    replaying.replay(recording.getDiagnostics());
+    assertEquals(expected, reported);
+    assertEquals(4, replaying.getDiagnosticCount());
+  }
+}
@@ -0,0 +1,122 @@
+package com.aerhard.xml.tools;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaStoreTest {
+
+  private File directory;
+  private File schemaFile;
+  private File includedFile;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("schema-store", "");
+    assertTrue(directory.delete() && directory.mkdir());
+    schemaFile = new File(directory, "schema.rng");
+    includedFile = new File(directory, "included.rng");
+    write(schemaFile, "<grammar/>");
+    write(includedFile, "<grammar/>");
+  }
+
+  @After
+  public void tearDown() {
+    SchemaStore.close();
+    delete(directory);
+  }
+
+  private static void write(File file, String content) throws IOException {
+    FileOutputStream fos = new FileOutputStream(file);
+    try {
+      fos.write(content.getBytes("UTF-8"));
+    } finally {
+      fos.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static String read(InputStream in) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1) {
+      sb.append((char) c);
+    }
+    return sb.toString();
+  }
+
+  private String putTransformation(SchemaStore store) throws IOException {
+    String systemId = schemaFile.toURI().toString();
+    store.putTransformation("extract.xsl", systemId, SchemaStore.readFile(schemaFile),
+        Arrays.asList(systemId, includedFile.toURI().toString()), "<schema/>".getBytes("UTF-8"));
+    return systemId;
+  }
+
+  @Test
+  public void returnsStoredTransformations() throws IOException {
+    SchemaStore store = SchemaStore.open(new File(directory, "store"));
+    String systemId = putTransformation(store);
+
+    SchemaStore reopened = SchemaStore.open(new File(directory, "store"));
+    SchemaStore.Transformation transformation = reopened.getTransformation("extract.xsl", systemId,
+        SchemaStore.readFile(schemaFile));
+
+    assertNotNull(transformation);
+    assertEquals("<schema/>", read(transformation.getResult()));
+    assertEquals("<schema/>", read(transformation.getResult()));
+    assertEquals(2, transformation.getDependencies().size());
+    assertNull(reopened.getTransformation("other.xsl", systemId, SchemaStore.readFile(schemaFile)));
+  }
+
+  @Test
+  public void ignoresTransformationsWithModifiedDependencies() throws IOException {
+    SchemaStore store = SchemaStore.open(new File(directory, "store"));
+    String systemId = putTransformation(store);
+
+    assertTrue(includedFile.setLastModified(includedFile.lastModified() - 10000));
+    assertNotNull(store.getTransformation("extract.xsl", systemId, SchemaStore.readFile(schemaFile)));
+
+    write(includedFile, "<grammar><start/></grammar>");
+    assertNull(store.getTransformation("extract.xsl", systemId, SchemaStore.readFile(schemaFile)));
+  }
+
+  @Test
+  public void recordsRecentSchemas() throws IOException {
+    SchemaStore store = SchemaStore.open(new File(directory, "store"));
+    for (int i = 0; i < SchemaStore.MAX_RECORDED_SCHEMAS + 2; i++) {
+      RequestProperties requestProperties = new RequestProperties("", "-", "UTF-8");
+      store.recordSchema(new SchemaProperties(Constants.SCHEMA_TYPE_RNG + " " + schemaFile.getPath(), requestProperties));
+      store.recordSchema(new SchemaProperties(Constants.SCHEMA_TYPE_RNC + " " + schemaFile.getPath(), requestProperties));
+    }
+    store.recordSchema(new SchemaProperties(Constants.SCHEMA_TYPE_RNG + " " + new File(directory, "missing.rng").getPath(),
+        new RequestProperties("", "-", "UTF-8")));
+
+    List<SchemaProperties> schemas = SchemaStore.open(new File(directory, "store")).getRecordedSchemas();
+
+    assertEquals(2, schemas.size());
+    assertEquals(Constants.SCHEMA_TYPE_RNC, schemas.get(0).getType());
+    assertEquals(Constants.SCHEMA_TYPE_RNG, schemas.get(1).getType());
+    assertEquals(schemaFile.getPath(), schemas.get(0).getPath());
+  }
+}
@@ -0,0 +1,156 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StylesheetsTest {
+
+  private static final String MAIN_SCHEMA =
+      "<grammar xmlns=\"http://relaxng.org/ns/structure/1.0\">\n" +
+      "  <include href=\"rules.rng\"/>\n" +
+      "  <start><element name=\"doc\"><text/></element></start>\n" +
+      "</grammar>\n";
+
+  private File dir;
+
+  @Before
+  public void setUp() {
+    Stylesheets.clearResults();
+    dir = new File(System.getProperty("java.io.tmpdir"), "stylesheets-test-" + System.nanoTime());
+    assertTrue(dir.mkdir());
+  }
+
+  @After
+  public void tearDown() {
+    Stylesheets.clearResults();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  private static void write(File file, String content) throws IOException {
+    OutputStream os = new FileOutputStream(file);
+    try {
+      os.write(content.getBytes("UTF-8"));
+    } finally {
+      os.close();
+    }
+  }
+
+  private static String rules(String message) {
+    return "<grammar xmlns=\"http://relaxng.org/ns/structure/1.0\"\n" +
+        "    xmlns:sch=\"" + Stylesheets.SCHEMATRON_ISO_URI + "\">\n" +
+        "  <sch:pattern><sch:rule context=\"doc\">\n" +
+        "    <sch:assert test=\"string-length(.) &lt; 3\">" + message + "</sch:assert>\n" +
+        "  </sch:rule></sch:pattern>\n" +
+        "  <define name=\"unused\"><empty/></define>\n" +
+        "</grammar>\n";
+  }
+
+  private static Set<String> validate(File schemaFile) throws IOException {
+    SchemaProperties schemaProperties = new SchemaProperties(Constants.SCHEMA_TYPE_SCH_ISO + " " +
+        schemaFile.getPath(), new RequestProperties("", "", "UTF-8"));
+    AccumulatingErrorPrintHandler eh = new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_SCH_ISO);
+    Driver driver = SchemaFactory.createDriver(SchemaFactory.createPropertyMap(schemaProperties, eh),
+        schemaProperties);
+    assertNotNull(eh.getMessages().toString(), driver);
+
+    InputSource in = new InputSource(new ByteArrayInputStream("<doc>text</doc>".getBytes("UTF-8")));
+    in.setSystemId("/doc.xml");
+    driver.runValidator(in, eh, eh, schemaFile.getPath());
+    return eh.getMessages();
+  }
+
+  private static boolean contains(Set<String> messages, String message) {
+    for (String m : messages) {
+      if (m.endsWith(message)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void compilesEachStylesheetOnce() throws Exception {
+    Templates templates = Stylesheets.getTemplates(Stylesheets.EXTRACTION_STYLESHEETS[0]);
+    assertSame(templates, Stylesheets.getTemplates(Stylesheets.EXTRACTION_STYLESHEETS[0]));
+    try {
+      Stylesheets.getTemplates("missing.xsl");
+      fail("Missing stylesheet has been compiled");
+    } catch (TransformerConfigurationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void precompilesOnlyOnce() {
+    Stylesheets.precompile();
+    assertFalse(Stylesheets.precompile());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedResults() throws Exception {
+    for (int i = 0; i < Stylesheets.MAX_CACHED_RESULTS; i++) {
+      Stylesheets.putResult("key" + i, new byte[]{(byte) i}, Collections.<String>emptyList());
+    }
+    assertNotNull(Stylesheets.getResult("key0"));
+
+    Stylesheets.putResult("key" + Stylesheets.MAX_CACHED_RESULTS, new byte[0], Collections.<String>emptyList());
+    assertNotNull(Stylesheets.getResult("key0"));
+    assertNull(Stylesheets.getResult("key1"));
+    assertEquals(2, Stylesheets.getResult("key2").getResult().read());
+  }
+
+  @Test
+  public void dropsResultWhenDependencyChanges() throws Exception {
+    File file = new File(dir, "rules.rng");
+    write(file, "a");
+    Stylesheets.putResult("key", new byte[0], Collections.singletonList(file.toURI().toString()));
+    assertNotNull(Stylesheets.getResult("key"));
+
+    write(file, "ab");
+    assertNull(Stylesheets.getResult("key"));
+    write(file, "a");
+    assertNull(Stylesheets.getResult("key"));
+  }
+
+  @Test
+  public void extractsRulesAgainWhenIncludedSchemaChanges() throws Exception {
+    File schemaFile = new File(dir, "main.rng");
+    write(schemaFile, MAIN_SCHEMA);
+    File rulesFile = new File(dir, "rules.rng");
+    write(rulesFile, rules("too long"));
+
+    assertTrue(contains(validate(schemaFile), "too long"));
+    // the extraction is reused while no file has changed
+    assertTrue(contains(validate(schemaFile), "too long"));
+
+    write(rulesFile, rules("much too long"));
+    assertTrue(contains(validate(schemaFile), "much too long"));
+  }
+}
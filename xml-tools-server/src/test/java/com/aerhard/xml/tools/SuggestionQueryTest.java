@@ -0,0 +1,104 @@
+package com.aerhard.xml.tools;
+
+import com.aerhard.xml.tools.error.AccumulatingErrorPrintHandler;
+import com.thaiopensource.suggest.AttributeNameSuggestion;
+import com.thaiopensource.suggest.ElementSuggestion;
+import com.thaiopensource.suggest.Suggestion;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SuggestionQueryTest {
+
+  private static List<AttributeNameSuggestion> createSuggestions(String... values) {
+    List<AttributeNameSuggestion> suggestions = new ArrayList<AttributeNameSuggestion>();
+    for (String value : values) {
+      suggestions.add(new AttributeNameSuggestion(value, null));
+    }
+    return suggestions;
+  }
+
+  private static List<String> values(List<AttributeNameSuggestion> suggestions) {
+    List<String> values = new ArrayList<String>();
+    for (AttributeNameSuggestion suggestion : suggestions) {
+      values.add(suggestion.getValue());
+    }
+    return values;
+  }
+
+  private static List<String> select(String query, boolean fuzzy, int limit, String... values) {
+    return values(new SuggestionQuery(query, fuzzy, limit).select(createSuggestions(values)));
+  }
+
+  @Test
+  public void sortsByValueWithoutQuery() {
+    assertEquals(Arrays.asList("a", "b", "c"), select(null, false, -1, "c", "a", "b"));
+    assertEquals(Arrays.asList("a", "b"), select("", false, 2, "c", "a", "d", "b"));
+  }
+
+  @Test
+  public void ranksPrefixMatches() {
+    assertEquals(Arrays.asList("div", "Dialog", "tei:dim"),
+        select("di", false, -1, "tei:dim", "span", "Dialog", "div", "radio"));
+  }
+
+  @Test
+  public void matchesSubsequencesIfFuzzy() {
+    assertEquals(Arrays.asList("drop", "dir", "header"), select("dr", true, -1, "header", "span", "dir", "drop"));
+    assertEquals(Arrays.asList("drop"), select("dr", false, -1, "header", "span", "dir", "drop"));
+  }
+
+  @Test
+  public void limitsResults() {
+    assertEquals(Arrays.asList("da", "db"), select("d", false, 2, "dd", "db", "x", "dc", "da"));
+    assertEquals(new ArrayList<String>(), select("d", false, 0, "dd", "db"));
+    assertEquals(Arrays.asList("da", "db"), select("d", false, 5, "db", "da"));
+  }
+
+  @Test
+  public void matchesSingleValues() {
+    SuggestionQuery query = new SuggestionQuery("p", false, 1);
+    assertTrue(query.matches("tei:p"));
+    assertFalse(query.matches("div"));
+    assertTrue(new SuggestionQuery(null, false, 1).matches("div"));
+  }
+
+  private static List<String> suggestElements(String schemaPath, String options) throws Exception {
+    SchemaProperties schemaProperties = new SchemaProperties(Constants.SCHEMA_TYPE_RNC + " " + schemaPath,
+        new RequestProperties("", options, "UTF-8", Constants.SUGGESTION_TYPE_ELEMENT, null));
+    Driver driver = SchemaFactory.createDriver(SchemaFactory.createPropertyMap(schemaProperties,
+        new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC)), schemaProperties);
+    byte[] bytes = "<doc><a/>".getBytes("UTF-8");
+    List<String> values = new ArrayList<String>();
+    for (Suggestion suggestion : driver.runSuggester(bytes, bytes.length, bytes.length,
+        new AccumulatingErrorPrintHandler(Constants.SCHEMA_TYPE_RNC), "/doc.xml", schemaProperties)) {
+      values.add(((ElementSuggestion) suggestion).isClosing() ? "/" + suggestion.getValue() : suggestion.getValue());
+    }
+    return values;
+  }
+
+  @Test
+  public void ranksClosingTagWithElements() throws Exception {
+    File schemaFile = File.createTempFile("schema", ".rnc");
+    schemaFile.deleteOnExit();
+    OutputStream os = new FileOutputStream(schemaFile);
+    os.write("element doc { element a { empty }*, element b { empty }*, element z { empty }* }".getBytes("UTF-8"));
+    os.close();
+    String schemaPath = schemaFile.getPath();
+
+    assertEquals(Arrays.asList("a", "b", "/doc", "z"), suggestElements(schemaPath, ""));
+    assertEquals(Arrays.asList("a", "b"), suggestElements(schemaPath, "limit=2"));
+    assertEquals(Arrays.asList("a", "b", "/doc"), suggestElements(schemaPath, "limit=3"));
+    assertEquals(Arrays.asList("/doc"), suggestElements(schemaPath, "query=d limit=1"));
+    assertEquals(Arrays.asList("z"), suggestElements(schemaPath, "query=z"));
+  }
+}
@@ -0,0 +1,97 @@
+package com.aerhard.xml.tools;
+
+import com.thaiopensource.suggest.AttributeValueSuggestion;
+import com.thaiopensource.suggest.ElementSuggestion;
+import com.thaiopensource.suggest.Suggestion;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SuggestionWriterTest {
+
+  private static final String ESCAPED = "a\"b\\c\nd\te\u0001f\u2028g</h>\u00e4";
+
+  private static List<Suggestion> createSuggestions() {
+    List<Suggestion> suggestions = new ArrayList<Suggestion>();
+    suggestions.add(new ElementSuggestion("p", Arrays.asList(ESCAPED, "two"), Arrays.asList("id"), true, false));
+    suggestions.add(new ElementSuggestion("div", null, null, false, true));
+    suggestions.add(new AttributeValueSuggestion("x", null, true));
+    return suggestions;
+  }
+
+  @Test
+  public void writesJson() throws Exception {
+    StringWriter sw = new StringWriter();
+    SuggestionWriter.writeJson(createSuggestions(), sw);
+    JSONArray json = new JSONArray(sw.toString());
+
+    assertEquals(3, json.length());
+    JSONObject p = json.getJSONObject(0);
+    assertEquals("p", p.getString("value"));
+    assertEquals(ESCAPED, p.getJSONArray("documentation").getString(0));
+    assertEquals("id", p.getJSONArray("attributes").getString(0));
+    assertTrue(p.getBoolean("empty"));
+    assertFalse(p.has("closing"));
+
+    JSONObject div = json.getJSONObject(1);
+    assertTrue(div.getBoolean("closing"));
+    assertFalse(div.has("documentation"));
+    assertFalse(div.has("attributes"));
+
+    assertTrue(json.getJSONObject(2).getBoolean("listItem"));
+    assertEquals("[]", writeJson(new ArrayList<Suggestion>()));
+  }
+
+  private static String writeJson(List<Suggestion> suggestions) throws Exception {
+    StringWriter sw = new StringWriter();
+    SuggestionWriter.writeJson(suggestions, sw);
+    return sw.toString();
+  }
+
+  @Test
+  public void writesBinary() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    SuggestionWriter.writeBinary(createSuggestions(), os);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+
+    assertEquals(3, in.readInt());
+
+    assertEquals(SuggestionWriter.FLAG_EMPTY, in.readByte());
+    assertEquals("p", readString(in));
+    assertEquals(2, in.readInt());
+    assertEquals(ESCAPED, readString(in));
+    assertEquals("two", readString(in));
+    assertEquals(1, in.readInt());
+    assertEquals("id", readString(in));
+
+    assertEquals(SuggestionWriter.FLAG_CLOSING, in.readByte());
+    assertEquals("div", readString(in));
+    assertEquals(0, in.readInt());
+    assertEquals(0, in.readInt());
+
+    assertEquals(SuggestionWriter.FLAG_LIST_ITEM, in.readByte());
+    assertEquals("x", readString(in));
+    assertEquals(0, in.readInt());
+    assertEquals(0, in.readInt());
+
+    assertEquals(-1, in.read());
+  }
+
+  private static String readString(DataInputStream in) throws Exception {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
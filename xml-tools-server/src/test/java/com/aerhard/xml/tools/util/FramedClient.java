@@ -0,0 +1,68 @@
+package com.aerhard.xml.tools.util;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.List;
+
+public class FramedClient {
+  private static final byte[] MAGIC = {'X', 'T', 'P', '1'};
+  private static final String CHARSET = "UTF-8";
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  public static class Response {
+    public final int requestId;
+    public final byte status;
+    public final byte[] payload;
+
+    Response(int requestId, byte status, byte[] payload) {
+      this.requestId = requestId;
+      this.status = status;
+      this.payload = payload;
+    }
+
+    public String getPayloadString() throws UnsupportedEncodingException {
+      return new String(payload, CHARSET);
+    }
+  }
+
+  public FramedClient(String host, int port) throws IOException {
+    socket = new Socket(host, port);
+    in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    out.write(MAGIC);
+  }
+
+  public void send(int requestId, String command, List<String> headers, byte[] body) throws IOException {
+    out.writeInt(requestId);
+    writeString(command);
+    out.writeInt(headers.size());
+    for (String header : headers) {
+      writeString(header);
+    }
+    out.writeInt(body.length);
+    out.write(body);
+    out.flush();
+  }
+
+  public Response receive() throws IOException {
+    int requestId = in.readInt();
+    byte status = in.readByte();
+    byte[] payload = new byte[in.readInt()];
+    in.readFully(payload);
+    return new Response(requestId, status, payload);
+  }
+
+  public void close() throws IOException {
+    socket.shutdownOutput();
+    socket.close();
+  }
+
+  private void writeString(String value) throws IOException {
+    byte[] bytes = value.getBytes(CHARSET);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,57 @@
+package com.thaiopensource.suggest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DocumentationTableTest {
+
+  private static class CountingTable extends DocumentationTable<String[]> {
+    private final List<String[]> created = new ArrayList<String[]>();
+
+    @Override
+    protected List<String> createDocumentation(String[] component) {
+      created.add(component);
+      return component.length == 0 ? null : new ArrayList<String>(Arrays.asList(component));
+    }
+  }
+
+  @Test
+  public void createsDocumentationOncePerComponent() {
+    CountingTable table = new CountingTable();
+    String[] added = {"a"};
+    String[] looked = {"b"};
+    String[] undocumented = {};
+
+    table.add(added);
+    assertEquals(Arrays.asList("a"), table.get(added));
+    assertEquals(Arrays.asList("b"), table.get(looked));
+    assertEquals(Arrays.asList("b"), table.get(looked));
+    assertNull(table.get(undocumented));
+    assertNull(table.get(undocumented));
+    assertEquals(3, table.created.size());
+  }
+
+  @Test
+  public void sharesEqualDocumentation() {
+    CountingTable table = new CountingTable();
+    String[] component1 = {"x", new String("y")};
+    String[] component2 = {"x", new String("y")};
+
+    List<String> documentation1 = table.get(component1);
+    List<String> documentation2 = table.get(component2);
+    assertSame(documentation1, documentation2);
+    assertSame(documentation1.get(1), table.get(new String[]{"z", new String("y")}).get(1));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void returnsUnmodifiableLists() {
+    new CountingTable().get(new String[]{"a"}).add("b");
+  }
+}
@@ -0,0 +1,88 @@
+package com.thaiopensource.suggest;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TagScannerTest {
+
+  private static final TagScanner.NamespaceContext CONTEXT = new TagScanner.NamespaceContext() {
+    @Override
+    public String resolveNamespacePrefix(String prefix) {
+      return "t".equals(prefix) ? "urn:t" : null;
+    }
+  };
+
+  private static List<String> scan(String document, int cursor) throws SAXException, UnsupportedEncodingException {
+    final List<String> tags = new ArrayList<String>();
+    byte[] bytes = document.getBytes("UTF-8");
+    TagScanner.scan(bytes, cursor, bytes.length, CONTEXT, new DefaultHandler() {
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes atts) {
+        StringBuilder sb = new StringBuilder("{" + uri + "}" + localName);
+        for (int i = 0; i < atts.getLength(); i++) {
+          sb.append(" {").append(atts.getURI(i)).append("}").append(atts.getLocalName(i))
+              .append("=").append(atts.getValue(i));
+        }
+        tags.add(sb.toString());
+      }
+    });
+    return tags;
+  }
+
+  @Test
+  public void resolvesNamesAgainstContextAndDeclarations() throws Exception {
+    String document = "<t:a><t:b id='1'/><u:c xmlns:u=\"urn:u\" u:id=\"2\"><d/></u:c><u:e/></t:a>";
+    assertEquals(Arrays.asList("{urn:t}b {}id=1", "{urn:u}c {urn:u}id=2", "{}d", "{}e"),
+        scan(document, "<t:a>".length()));
+  }
+
+  @Test
+  public void skipsCommentsAndCdataSections() throws Exception {
+    String document = "<t:a><!-- <b/> --><![CDATA[<c/>]]><?pi <d/>?><e v=\"&lt;&#x41;&#66;&amp;x\ty&#10;\"/></t:a>";
+    assertEquals(Arrays.asList("{}e {}v=<AB&x y\n"), scan(document, "<t:a>".length()));
+  }
+
+  @Test
+  public void includesTagAtCursor() throws Exception {
+    String document = "<t:a><t:b id=\"1\" ref=\"\"/><t:c/></t:a>";
+    assertEquals(Arrays.asList("{urn:t}b {}id=1 {}ref=", "{urn:t}c"), scan(document, document.indexOf("ref")));
+    assertEquals(Arrays.asList("{urn:t}c"), scan(document, document.indexOf("<t:c")));
+  }
+
+  @Test
+  public void findsAttributeValueAtCursor() throws Exception {
+    String document = "<a><b id=\"1\" ref='xy'/><c/></a>";
+    byte[] bytes = document.getBytes("UTF-8");
+    int cursor = document.indexOf("<c/>");
+    int[] range = TagScanner.findAttributeValue(bytes, cursor, bytes.length, "ref");
+    assertEquals("xy", document.substring(range[0], range[1]));
+    assertEquals(null, TagScanner.findAttributeValue(bytes, cursor, bytes.length, "other"));
+    assertEquals(null, TagScanner.findAttributeValue(bytes, document.indexOf("</a>") + 1, bytes.length, "ref"));
+  }
+
+  @Test
+  public void stopsAtMalformedTags() throws Exception {
+    assertEquals(Arrays.asList("{}b"), scan("<a><b/><c id=1/><d/></a>", 3));
+  }
+
+  @Test
+  public void detectsEncoding() throws Exception {
+    byte[] utf8 = "<?xml version=\"1.0\" encoding='utf-8'?><a/>".getBytes("UTF-8");
+    byte[] latin1 = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a/>".getBytes("UTF-8");
+    byte[] utf16 = "<a/>".getBytes("UTF-16");
+    assertTrue(TagScanner.isUtf8(utf8, utf8.length));
+    assertFalse(TagScanner.isUtf8(latin1, latin1.length));
+    assertFalse(TagScanner.isUtf8(utf16, utf16.length));
+  }
+}
@@ -0,0 +1,117 @@
+package com.thaiopensource.suggest.relaxng.pattern;
+
+import com.thaiopensource.suggest.relaxng.sax.Context;
+import com.thaiopensource.xml.util.Name;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StartTagSuggestionTest {
+
+  private static final String SCHEMA =
+      "start = element doc { (para | br | img | \\list)* }\n" +
+      "para = element para { attribute id { text }?, text }\n" +
+      "br = element br { empty }\n" +
+      "img = element img { attribute src { text }, attribute alt { text }, empty }\n" +
+      "\\list = element list { attribute type { \"ordered\" | \"bulleted\" }, element item { text }+ }\n";
+
+  private static final StartTagSuggestion.DocumentationFunction NO_DOCUMENTATION =
+      new StartTagSuggestion.DocumentationFunction() {
+        public List<String> getDocumentation(Pattern pattern, NameClass nameClass) {
+          return null;
+        }
+      };
+
+  private final Context context = new Context();
+  private ValidatorPatternBuilderPool pool;
+  private Pattern start;
+
+  @Before
+  public void setUp() throws Exception {
+    SchemaPatternBuilder spb = new SchemaPatternBuilder();
+    start = TestPatterns.parse(SCHEMA, spb);
+    pool = new ValidatorPatternBuilderPool(spb);
+  }
+
+  private PatternMatcher startDocument(ValidatorPatternBuilder builder) {
+    PatternMatcher matcher = new PatternMatcher(start, builder);
+    assertTrue(matcher.matchStartDocument());
+    return matcher;
+  }
+
+  private void startElement(PatternMatcher matcher, String localName, String... attributes) {
+    Name name = new Name("", localName);
+    assertTrue(matcher.matchStartTagOpen(name, localName, context));
+    for (int i = 0; i < attributes.length; i += 2) {
+      Name attributeName = new Name("", attributes[i]);
+      assertTrue(matcher.matchAttributeName(attributeName, attributes[i], context));
+      assertTrue(matcher.matchAttributeValue(attributes[i + 1], attributeName, attributes[i], context));
+    }
+    assertTrue(matcher.matchStartTagClose(name, localName, context));
+  }
+
+  /**
+   * Describes a suggestion as its name, its required attributes in alphabetical order and whether its
+   * content has to be empty.
+   */
+  private static List<String> describe(List<StartTagSuggestion> suggestions) {
+    List<String> descriptions = new ArrayList<String>();
+    for (StartTagSuggestion suggestion : suggestions) {
+      List<String> attributes = new ArrayList<String>();
+      for (Name name : suggestion.getRequiredAttributeNames()) {
+        attributes.add(name.getLocalName());
+      }
+      Collections.sort(attributes);
+      descriptions.add(suggestion.getName().getLocalName() + " " + attributes + " " + suggestion.hasEmptyContent());
+    }
+    return descriptions;
+  }
+
+  @Test
+  public void suggestsRequiredAttributesAndEmptyContent() {
+    PatternMatcher matcher = startDocument(pool.acquire());
+    startElement(matcher, "doc");
+    assertEquals(Arrays.asList("br [] true", "img [alt, src] true", "list [type] false", "para [] false"),
+        describe(matcher.getStartTagSuggestions(NO_DOCUMENTATION)));
+
+    // suggesting doesn't change the state the next start tag gets matched in
+    startElement(matcher, "list", "type", "ordered");
+    assertEquals(Arrays.asList("item [] false"), describe(matcher.getStartTagSuggestions(NO_DOCUMENTATION)));
+  }
+
+  @Test
+  public void suggestsSameElementsInEveryState() {
+    PatternMatcher matcher = startDocument(pool.acquire());
+    startElement(matcher, "doc");
+    List<String> expected = describe(matcher.getStartTagSuggestions(NO_DOCUMENTATION));
+
+    // after other elements the candidates are derived from the new state alone
+    startElement(matcher, "img", "src", "a.png", "alt", "a");
+    assertTrue(matcher.matchEndTag(new Name("", "img"), "img", context));
+    startElement(matcher, "br");
+    assertTrue(matcher.matchEndTag(new Name("", "br"), "br", context));
+    assertEquals(expected, describe(matcher.getStartTagSuggestions(NO_DOCUMENTATION)));
+  }
+
+  @Test
+  public void cachesSuggestionsWithState() {
+    ValidatorPatternBuilder builder = pool.acquire();
+    PatternMatcher matcher = startDocument(builder);
+    startElement(matcher, "doc");
+    List<StartTagSuggestion> suggestions = matcher.getStartTagSuggestions(NO_DOCUMENTATION);
+    assertSame(suggestions, matcher.getStartTagSuggestions(NO_DOCUMENTATION));
+
+    // another matcher reaching the same state with the same builder shares the memo and its suggestions
+    PatternMatcher other = startDocument(builder);
+    startElement(other, "doc");
+    assertSame(suggestions, other.getStartTagSuggestions(NO_DOCUMENTATION));
+  }
+}
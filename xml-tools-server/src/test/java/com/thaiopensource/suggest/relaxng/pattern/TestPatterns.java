@@ -0,0 +1,77 @@
+package com.thaiopensource.suggest.relaxng.pattern;
+
+import com.thaiopensource.datatype.DatatypeLibraryLoader;
+import com.thaiopensource.relaxng.edit.SourceLocation;
+import com.thaiopensource.relaxng.parse.IllegalSchemaException;
+import com.thaiopensource.relaxng.parse.compact.CompactParseable;
+import com.thaiopensource.resolver.xml.sax.SAX;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.validate.ResolverFactory;
+import com.thaiopensource.xml.sax.Sax2XMLReaderCreator;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles RELAX NG compact syntax schemas to patterns and feeds documents to content handlers, for
+ * tests of the pattern based validators and suggesters.
+ */
+public class TestPatterns {
+
+  private TestPatterns() {
+  }
+
+  public static Pattern parse(String rnc, SchemaPatternBuilder spb)
+      throws SAXException, IOException, IllegalSchemaException {
+    InputSource is = new InputSource(new StringReader(rnc));
+    is.setSystemId("file:/schema.rnc");
+    ErrorHandler eh = new ErrorCollector();
+    CompactParseable<Pattern, NameClass, SourceLocation, ElementAnnotationBuilderImpl, CommentListImpl, AnnotationsImpl>
+        parseable = new CompactParseable<Pattern, NameClass, SourceLocation, ElementAnnotationBuilderImpl,
+        CommentListImpl, AnnotationsImpl>(SAX.createInput(is),
+        ResolverFactory.createResolver(PropertyMap.EMPTY).getResolver(), eh);
+    return SchemaBuilderImpl.parse(parseable, eh, new DatatypeLibraryLoader(), spb, false);
+  }
+
+  public static void parseDocument(String xml, ContentHandler ch, ErrorHandler eh) throws SAXException, IOException {
+    XMLReader reader = new Sax2XMLReaderCreator().createXMLReader();
+    reader.setFeature("http://xml.org/sax/features/namespaces", true);
+    reader.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+    reader.setContentHandler(ch);
+    reader.setErrorHandler(eh);
+    InputSource is = new InputSource(new StringReader(xml));
+    is.setSystemId("file:/document.xml");
+    reader.parse(is);
+  }
+
+  /**
+   * Collects errors as <code>line:column: message</code>.
+   */
+  public static class ErrorCollector implements ErrorHandler {
+    private final List<String> errors = new ArrayList<String>();
+
+    public List<String> getErrors() {
+      return errors;
+    }
+
+    public void warning(SAXParseException e) {
+      errors.add(e.getLineNumber() + ":" + e.getColumnNumber() + ": warning: " + e.getMessage());
+    }
+
+    public void error(SAXParseException e) {
+      errors.add(e.getLineNumber() + ":" + e.getColumnNumber() + ": error: " + e.getMessage());
+    }
+
+    public void fatalError(SAXParseException e) throws SAXParseException {
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.thaiopensource.suggest.relaxng.pattern;
+
+import com.thaiopensource.suggest.relaxng.sax.PatternValidator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ValidatorPatternBuilderPoolTest {
+
+  private static final String SCHEMA =
+      "start = element doc { attribute version { \"1\" | \"2\" }?, (para | \\list)* }\n" +
+      "para = element para { (text | em)* }\n" +
+      "em = element em { text }\n" +
+      "\\list = element list { element item { para+ }+ }\n";
+
+  private static final String[] DOCUMENTS = {
+      "<doc version='1'><para>a <em>b</em></para><list><item><para/></item></list></doc>",
+      "<doc version='3'><para><list/></para>\n<em/></doc>",
+      "<doc><list><item/><item><para><para/></para></item></list>text</doc>",
+      "<doc><para>a</para><x><para/></x>\n<list><item><em/></item></list></doc>",
+  };
+
+  private SchemaPatternBuilder spb;
+  private Pattern start;
+
+  @Before
+  public void setUp() throws Exception {
+    spb = new SchemaPatternBuilder();
+    start = TestPatterns.parse(SCHEMA, spb);
+  }
+
+  private static List<String> validate(Pattern start, ValidatorPatternBuilderPool pool, String document)
+      throws Exception {
+    TestPatterns.ErrorCollector eh = new TestPatterns.ErrorCollector();
+    PatternValidator validator = new PatternValidator(start, pool, eh);
+    TestPatterns.parseDocument(document, validator, eh);
+    validator.reset();
+    return eh.getErrors();
+  }
+
+  @Test
+  public void reusesReleasedBuilders() {
+    ValidatorPatternBuilderPool pool = new ValidatorPatternBuilderPool(spb, 1, 1000);
+    ValidatorPatternBuilder first = pool.acquire();
+    ValidatorPatternBuilder second = pool.acquire();
+    assertNotSame(first, second);
+
+    pool.release(first);
+    pool.release(second);
+    assertSame(first, pool.acquire());
+    assertNotSame(second, pool.acquire());
+  }
+
+  @Test
+  public void keepsMemosOfReleasedBuilders() throws Exception {
+    ValidatorPatternBuilderPool pool = new ValidatorPatternBuilderPool(spb, 1, 100000);
+    validate(start, pool, DOCUMENTS[0]);
+    ValidatorPatternBuilder builder = pool.acquire();
+    assertTrue(builder.getPatternMemoCount() > 0);
+  }
+
+  @Test
+  public void dropsBuildersWithLargeMemos() throws Exception {
+    ValidatorPatternBuilderPool pool = new ValidatorPatternBuilderPool(spb, 1, 100000);
+    validate(start, pool, DOCUMENTS[0]);
+    int memoCount = pool.acquire().getPatternMemoCount();
+
+    pool = new ValidatorPatternBuilderPool(spb, 1, memoCount - 1);
+    validate(start, pool, DOCUMENTS[0]);
+    assertEquals(0, pool.acquire().getPatternMemoCount());
+  }
+
+  @Test
+  public void validatesConcurrentlyLikeUnpooled() throws Exception {
+    List<List<String>> expected = new ArrayList<List<String>>();
+    for (String document : DOCUMENTS) {
+      expected.add(validate(start, new ValidatorPatternBuilderPool(spb), document));
+    }
+    assertTrue(expected.get(0).isEmpty());
+    assertFalse(expected.get(1).isEmpty());
+
+    final ValidatorPatternBuilderPool pool = new ValidatorPatternBuilderPool(spb, 2, 100000);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+      for (int i = 0; i < 200; i++) {
+        final String document = DOCUMENTS[i % DOCUMENTS.length];
+        futures.add(executor.submit(new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws Exception {
+            return validate(start, pool, document);
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(expected.get(i % DOCUMENTS.length), futures.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(Collections.<String>emptyList(), validate(start, pool, DOCUMENTS[0]));
+  }
+}
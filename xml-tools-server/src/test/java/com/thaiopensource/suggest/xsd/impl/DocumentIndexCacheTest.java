@@ -0,0 +1,131 @@
+package com.thaiopensource.suggest.xsd.impl;
+
+import com.thaiopensource.suggest.AttributeValueSuggestion;
+import com.thaiopensource.suggest.Suggester;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.ResolverFactory;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.xml.util.WellKnownNamespaces;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.transform.sax.SAXSource;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DocumentIndexCacheTest {
+
+  private static final String SCHEMA =
+      "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+      "  <xs:element name=\"doc\">\n" +
+      "    <xs:complexType><xs:sequence>\n" +
+      "      <xs:element name=\"item\" minOccurs=\"0\" maxOccurs=\"unbounded\"><xs:complexType>\n" +
+      "        <xs:attribute name=\"id\" type=\"xs:ID\"/>\n" +
+      "        <xs:attribute name=\"code\" type=\"xs:string\"/>\n" +
+      "      </xs:complexType></xs:element>\n" +
+      "      <xs:element name=\"use\" minOccurs=\"0\" maxOccurs=\"unbounded\"><xs:complexType>\n" +
+      "        <xs:attribute name=\"ref\" type=\"xs:IDREF\"/>\n" +
+      "        <xs:attribute name=\"code\" type=\"xs:string\"/>\n" +
+      "      </xs:complexType></xs:element>\n" +
+      "    </xs:sequence></xs:complexType>\n" +
+      "    <xs:key name=\"code\"><xs:selector xpath=\"item\"/><xs:field xpath=\"@code\"/></xs:key>\n" +
+      "    <xs:keyref name=\"codeRef\" refer=\"code\"><xs:selector xpath=\"use\"/><xs:field xpath=\"@code\"/></xs:keyref>\n" +
+      "  </xs:element>\n" +
+      "</xs:schema>\n";
+
+  private static final String ITEMS = "<doc><item id=\"a\" code=\"x\"/><item id=\"b\" code=\"y\"/>";
+
+  private final ErrorHandler silent = new ErrorHandler() {
+    public void warning(SAXParseException e) {
+    }
+
+    public void error(SAXParseException e) {
+    }
+
+    public void fatalError(SAXParseException e) {
+    }
+  };
+
+  private PropertyMap properties;
+  private SchemaImpl schema;
+
+  @Before
+  public void setUp() throws Exception {
+    PropertyMapBuilder builder = new PropertyMapBuilder();
+    builder.put(ValidateProperty.ERROR_HANDLER, silent);
+    properties = builder.toPropertyMap();
+    InputSource in = new InputSource(new ByteArrayInputStream(SCHEMA.getBytes("UTF-8")));
+    in.setSystemId("/schema.xsd");
+    schema = (SchemaImpl) new XsdSchemaReaderFactory().createSchemaReader(WellKnownNamespaces.XML_SCHEMA)
+        .createSchema(new SAXSource(in), properties);
+  }
+
+  /**
+   * Returns the values suggested for an attribute of the start tag ending at the cursor, which is the
+   * position of the first "|" in the document; the "|" gets removed. The values are sorted.
+   */
+  private List<String> suggest(String document, String attributeName) throws Exception {
+    int cursor = document.indexOf('|');
+    byte[] bytes = (document.substring(0, cursor) + document.substring(cursor + 1)).getBytes("UTF-8");
+
+    Suggester suggester = schema.createSuggester(properties);
+    XMLReader xr = ResolverFactory.createResolver(properties).createXMLReader();
+    xr.setErrorHandler(silent);
+    xr.setContentHandler(suggester);
+    xr.setDTDHandler(suggester);
+    try {
+      xr.parse(new InputSource(new ByteArrayInputStream(bytes, 0, cursor)));
+    } catch (SAXParseException e) {
+      // the head ends inside the document
+    }
+
+    List<String> values = new ArrayList<String>();
+    for (AttributeValueSuggestion suggestion : suggester.suggestAttributeValues(attributeName, bytes, cursor,
+        bytes.length)) {
+      values.add(suggestion.getValue());
+    }
+    Collections.sort(values);
+    return values;
+  }
+
+  @Test
+  public void suggestsIdsAndKeysFromCachedIndex() throws Exception {
+    assertEquals(Arrays.asList("a", "b"), suggest(ITEMS + "<use ref=\"\">|</use></doc>", "ref"));
+    assertEquals(1, schema.getIndexCache().size());
+
+    // another suggestion in the same document version gets the index from the cache
+    assertEquals(Arrays.asList("x", "y"), suggest(ITEMS + "<use ref=\"\" code=\"\">|</use></doc>", "code"));
+    assertEquals(Arrays.asList("x", "y"), suggest(ITEMS + "<use ref=\"\" code=\"\">|</use></doc>", "code"));
+    assertEquals(2, schema.getIndexCache().size());
+  }
+
+  @Test
+  public void reusesIndexWhileCompletedValueIsEdited() throws Exception {
+    suggest(ITEMS + "<use ref=\"\">|</use></doc>", "ref");
+    suggest(ITEMS + "<use ref=\"a\">|</use></doc>", "ref");
+    assertEquals(Arrays.asList("a", "b"), suggest(ITEMS + "<use ref=\"ab\">|</use></doc>", "ref"));
+    assertEquals(1, schema.getIndexCache().size());
+  }
+
+  @Test
+  public void rebuildsIndexAfterOtherEdits() throws Exception {
+    suggest(ITEMS + "<use ref=\"\">|</use></doc>", "ref");
+
+    List<String> values = suggest(ITEMS + "<item id=\"c\" code=\"z\"/><use ref=\"\">|</use></doc>", "ref");
+    assertEquals(2, schema.getIndexCache().size());
+    assertEquals(Arrays.asList("a", "b", "c"), values);
+
+    assertEquals(Arrays.asList("x", "y", "z"),
+        suggest(ITEMS + "<item id=\"c\" code=\"z\"/><use ref=\"\" code=\"\">|</use></doc>", "code"));
+  }
+}
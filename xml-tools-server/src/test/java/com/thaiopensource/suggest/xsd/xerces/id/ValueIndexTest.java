@@ -0,0 +1,71 @@
+package com.thaiopensource.suggest.xsd.xerces.id;
+
+import org.apache.xerces.impl.dv.SchemaDVFactory;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.ValidationContext;
+import org.apache.xerces.impl.validation.ValidationState;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ValueIndexTest {
+
+  private static Object getActualValue(String type, String value) throws Exception {
+    ValidationState context = new ValidationState();
+    context.setNamespaceSupport(null);
+    ValidatedInfo info = new ValidatedInfo();
+    SchemaDVFactory.getInstance().getBuiltInType(type).validate(value, (ValidationContext) context, info);
+    return info.actualValue;
+  }
+
+  private static void assertEqualValuesHashEqually(String type, String value1, String value2) throws Exception {
+    Object actual1 = getActualValue(type, value1);
+    Object actual2 = getActualValue(type, value2);
+    assertEquals(actual1, actual2);
+    assertEquals(ValueIndex.hashValue(actual1), ValueIndex.hashValue(actual2));
+  }
+
+  @Test
+  public void hashesEqualValuesEqually() throws Exception {
+    assertEqualValuesHashEqually("decimal", "5.0", "5");
+    assertEqualValuesHashEqually("decimal", "-0.00", "0");
+    assertEqualValuesHashEqually("integer", "007", "7");
+    assertEqualValuesHashEqually("double", "1e1", "10");
+    assertEqualValuesHashEqually("dateTime", "2000-01-01T12:00:00Z", "2000-01-01T13:00:00+01:00");
+    assertEqualValuesHashEqually("dateTime", "2000-01-01T23:30:00-01:00", "2000-01-02T00:30:00.0Z");
+    assertEqualValuesHashEqually("date", "2000-01-01Z", "2000-01-01+00:00");
+    assertEqualValuesHashEqually("time", "12:00:00", "12:00:00.000");
+    assertEqualValuesHashEqually("duration", "P1Y", "P12M");
+  }
+
+  @Test
+  public void spreadsDatesOverBuckets() throws Exception {
+    Set<Integer> hashes = new HashSet<Integer>();
+    for (int i = 1; i <= 24; i++) {
+      hashes.add(ValueIndex.hashValue(getActualValue("date", String.format("2000-02-%02d", i))));
+      hashes.add(ValueIndex.hashValue(getActualValue("dateTime", String.format("2000-02-01T%02d:00:00Z", i - 1))));
+    }
+    assertEquals(48, hashes.size());
+  }
+
+  @Test
+  public void findsTuplesByHash() {
+    ValueIndex index = new ValueIndex();
+    index.add(ValueIndex.hash(new Object[]{"a", "b"}, 2), 0);
+    index.add(ValueIndex.hash(new Object[]{"c", "d"}, 2), 2);
+
+    ValueIndex.Bucket bucket = index.get(ValueIndex.hash(Arrays.asList("x", "c", "d"), 1, 2));
+    assertNotNull(bucket);
+    assertEquals(1, bucket.size());
+    assertEquals(2, bucket.get(0));
+
+    index.clear();
+    assertNull(index.get(ValueIndex.hash(new Object[]{"a", "b"}, 2)));
+  }
+}